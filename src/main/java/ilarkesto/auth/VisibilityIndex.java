@@ -0,0 +1,86 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.auth;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Entities grouped by visibility keys, so listing the entities visible for a user only touches the entities
+ * sharing a key with the user.
+ */
+public class VisibilityIndex<E, U extends AUser> {
+
+	private VisibilityKeys<E, U> visibilityKeys;
+	private Map<String, Set<E>> entitiesByKey = new HashMap<String, Set<E>>();
+	private Map<E, Collection<String>> keysByEntity = new HashMap<E, Collection<String>>();
+	private Set<E> unkeyedEntities = new HashSet<E>();
+
+	public VisibilityIndex(VisibilityKeys<E, U> visibilityKeys) {
+		this.visibilityKeys = visibilityKeys;
+	}
+
+	public synchronized void put(E entity) {
+		remove(entity);
+		Collection<String> keys = visibilityKeys.getEntityKeys(entity);
+		if (keys == null) {
+			unkeyedEntities.add(entity);
+			return;
+		}
+		keys = new HashSet<String>(keys);
+		keysByEntity.put(entity, keys);
+		for (String key : keys) {
+			Set<E> entities = entitiesByKey.get(key);
+			if (entities == null) {
+				entities = new HashSet<E>();
+				entitiesByKey.put(key, entities);
+			}
+			entities.add(entity);
+		}
+	}
+
+	public synchronized void remove(E entity) {
+		if (unkeyedEntities.remove(entity)) return;
+		Collection<String> keys = keysByEntity.remove(entity);
+		if (keys == null) return;
+		for (String key : keys) {
+			Set<E> entities = entitiesByKey.get(key);
+			if (entities == null) continue;
+			entities.remove(entity);
+			if (entities.isEmpty()) entitiesByKey.remove(key);
+		}
+	}
+
+	/**
+	 * Returns the entities which may be visible for the user. They still need to be checked with
+	 * <code>Auth.isVisible()</code>.
+	 */
+	public synchronized Set<E> getCandidates(U user) {
+		Set<E> ret = new HashSet<E>(unkeyedEntities);
+		for (String key : visibilityKeys.getUserKeys(user)) {
+			Set<E> entities = entitiesByKey.get(key);
+			if (entities != null) ret.addAll(entities);
+		}
+		return ret;
+	}
+
+	public synchronized int size() {
+		return keysByEntity.size() + unkeyedEntities.size();
+	}
+
+}
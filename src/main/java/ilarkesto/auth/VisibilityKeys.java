@@ -0,0 +1,32 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.auth;
+
+import java.util.Collection;
+
+/**
+ * Extracts keys for a <code>VisibilityIndex</code>. An entity is a candidate for a user if they share a key.
+ */
+public interface VisibilityKeys<E, U extends AUser> {
+
+	/**
+	 * Keys under which the entity is visible, for example the ids of its owners. <code>null</code> if the
+	 * visibility can not be expressed by keys, then the entity is checked for every user.
+	 */
+	Collection<String> getEntityKeys(E entity);
+
+	Collection<String> getUserKeys(U user);
+
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.base;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reflection metadata of a class: bean properties with their read and write methods, getters and setters
+ * resolved by name and annotated fields and methods. The metadata is computed once per class and shared, instances
+ * are thread safe. All returned methods and fields are made accessible, so invoking them skips the access checks.
+ */
+public final class BeanClassInfo {
+
+	/**
+	 * Weak keys, so classes of undeployed webapps and their class loaders can be collected. The values are soft
+	 * references, since each info references its class.
+	 */
+	private static final Map<Class, SoftReference<BeanClassInfo>> CACHE = Collections
+			.synchronizedMap(new WeakHashMap<Class, SoftReference<BeanClassInfo>>());
+
+	private static final Method NO_METHOD;
+
+	static {
+		try {
+			NO_METHOD = BeanClassInfo.class.getDeclaredMethod("noMethod");
+		} catch (NoSuchMethodException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	private final Class type;
+	private final Map<String, Method> readMethods;
+	private final Map<String, Method> writeMethods;
+	private final Map<String, Class> types;
+	private final ConcurrentMap<String, Method> getters = new ConcurrentHashMap<String, Method>();
+	private final ConcurrentMap<String, Method> setters = new ConcurrentHashMap<String, Method>();
+	private final ConcurrentMap<Class, List<Field>> annotatedFields = new ConcurrentHashMap<Class, List<Field>>();
+	private final ConcurrentMap<Class, List<Method>> annotatedMethods = new ConcurrentHashMap<Class, List<Method>>();
+
+	public static BeanClassInfo get(Class type) {
+		SoftReference<BeanClassInfo> reference = CACHE.get(type);
+		BeanClassInfo info = reference == null ? null : reference.get();
+		if (info == null) {
+			// computed outside of the lock, concurrent callers may create an equivalent info
+			info = new BeanClassInfo(type);
+			CACHE.put(type, new SoftReference<BeanClassInfo>(info));
+		}
+		return info;
+	}
+
+	private BeanClassInfo(Class type) {
+		this.type = type;
+		Map<String, Method> readMethods = new LinkedHashMap<String, Method>();
+		Map<String, Method> writeMethods = new LinkedHashMap<String, Method>();
+		Map<String, Class> types = new LinkedHashMap<String, Class>();
+		BeanInfo beanInfo;
+		try {
+			beanInfo = Introspector.getBeanInfo(type);
+		} catch (IntrospectionException ex) {
+			throw new RuntimeException(ex);
+		}
+		PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
+		if (propertyDescriptors != null) {
+			for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
+				if (propertyDescriptor == null) continue;
+				String name = propertyDescriptor.getName();
+				Method readMethod = propertyDescriptor.getReadMethod();
+				Method writeMethod = propertyDescriptor.getWriteMethod();
+				if (readMethod != null) readMethods.put(name, accessible(readMethod));
+				if (writeMethod != null) writeMethods.put(name, accessible(writeMethod));
+				types.put(name, propertyDescriptor.getPropertyType());
+			}
+		}
+		this.readMethods = Collections.unmodifiableMap(readMethods);
+		this.writeMethods = Collections.unmodifiableMap(writeMethods);
+		this.types = Collections.unmodifiableMap(types);
+	}
+
+	public Class getType() {
+		return type;
+	}
+
+	/**
+	 * Read methods of the bean properties, as found by the <code>Introspector</code>.
+	 */
+	public Map<String, Method> getReadMethods() {
+		return readMethods;
+	}
+
+	/**
+	 * Write methods of the bean properties, as found by the <code>Introspector</code>.
+	 */
+	public Map<String, Method> getWriteMethods() {
+		return writeMethods;
+	}
+
+	public Map<String, Class> getPropertyTypes() {
+		return types;
+	}
+
+	/**
+	 * Returns the declared <code>getX()</code> method, or the <code>isX()</code> method for booleans. Methods of
+	 * superclasses are included.
+	 */
+	public Method getGetter(String property) {
+		Method method = getters.get(property);
+		if (method == null) {
+			String methodSuffix = Str.uppercaseFirstLetter(property);
+			method = Reflect.getDeclaredMethod(type, "get" + methodSuffix);
+			if (method == null) {
+				method = Reflect.getDeclaredMethod(type, "is" + methodSuffix);
+				if (method != null) {
+					Class<?> returnType = method.getReturnType();
+					if (returnType != boolean.class && returnType != Boolean.class) method = null;
+				}
+			}
+			method = method == null ? NO_METHOD : accessible(method);
+			getters.put(property, method);
+		}
+		return method == NO_METHOD ? null : method;
+	}
+
+	/**
+	 * Returns the declared <code>setX(?)</code> method with one parameter. Methods of superclasses are included.
+	 */
+	public Method getSetter(String property) {
+		Method method = setters.get(property);
+		if (method == null) {
+			method = Reflect.getSetterMethod(type, property);
+			method = method == null ? NO_METHOD : accessible(method);
+			setters.put(property, method);
+		}
+		return method == NO_METHOD ? null : method;
+	}
+
+	/**
+	 * Returns the fields having the given annotation, in the order of
+	 * <code>Reflect.processAnnotations(Object, FieldAnnotationHandler)</code>.
+	 */
+	public List<Field> getAnnotatedFields(Class<? extends Annotation> annotationType) {
+		List<Field> fields = annotatedFields.get(annotationType);
+		if (fields == null) {
+			fields = new ArrayList<Field>();
+			collectAnnotatedFields(type, annotationType, fields);
+			fields = Collections.unmodifiableList(fields);
+			annotatedFields.put(annotationType, fields);
+		}
+		return fields;
+	}
+
+	/**
+	 * Returns the methods having the given annotation, in the order of
+	 * <code>Reflect.processAnnotations(Object, MethodAnnotationHandler)</code>.
+	 */
+	public List<Method> getAnnotatedMethods(Class<? extends Annotation> annotationType) {
+		List<Method> methods = annotatedMethods.get(annotationType);
+		if (methods == null) {
+			methods = new ArrayList<Method>();
+			collectAnnotatedMethods(type, annotationType, methods);
+			methods = Collections.unmodifiableList(methods);
+			annotatedMethods.put(annotationType, methods);
+		}
+		return methods;
+	}
+
+	private static void collectAnnotatedFields(Class<?> clazz, Class<? extends Annotation> annotationType,
+			List<Field> result) {
+		Field[] fields = clazz.getDeclaredFields();
+		for (int i = fields.length - 1; i >= 0; i--) {
+			if (fields[i].isAnnotationPresent(annotationType)) result.add(accessible(fields[i]));
+		}
+		for (Class<?> iface : clazz.getInterfaces()) {
+			collectAnnotatedFields(iface, annotationType, result);
+		}
+		Class<?> supa = clazz.getSuperclass();
+		if (supa != null && !supa.equals(Object.class)) collectAnnotatedFields(supa, annotationType, result);
+	}
+
+	private static void collectAnnotatedMethods(Class<?> clazz, Class<? extends Annotation> annotationType,
+			List<Method> result) {
+		Method[] methods = clazz.getDeclaredMethods();
+		for (int i = methods.length - 1; i >= 0; i--) {
+			if (methods[i].isAnnotationPresent(annotationType)) result.add(accessible(methods[i]));
+		}
+		for (Class<?> iface : clazz.getInterfaces()) {
+			collectAnnotatedMethods(iface, annotationType, result);
+		}
+		Class<?> supa = clazz.getSuperclass();
+		if (supa != null && !supa.equals(Object.class)) collectAnnotatedMethods(supa, annotationType, result);
+	}
+
+	private static <A extends AccessibleObject> A accessible(A member) {
+		try {
+			member.setAccessible(true);
+		} catch (RuntimeException ex) {
+			// not permitted (e.g. JDK internals), invoke with access checks
+		}
+		return member;
+	}
+
+	@SuppressWarnings("unused")
+	private static void noMethod() {}
+
+	@Override
+	public String toString() {
+		return "BeanClassInfo<" + type.getName() + ">";
+	}
+
+}
@@ -14,12 +14,6 @@
  */
 package ilarkesto.base;
 
-import ilarkesto.core.logging.Log;
-
-import java.beans.BeanInfo;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -27,6 +21,7 @@ import java.util.AbstractMap;
 import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -40,11 +35,11 @@ public class BeanMap<T> extends AbstractMap<String, Object> implements Cloneable
 
 	private transient T bean;
 
-	private transient HashMap<String, Method> readMethods = new HashMap<String, Method>();
+	private transient Map<String, Method> readMethods = Collections.emptyMap();
 
-	private transient HashMap<String, Method> writeMethods = new HashMap<String, Method>();
+	private transient Map<String, Method> writeMethods = Collections.emptyMap();
 
-	private transient HashMap<String, Class> types = new HashMap<String, Class>();
+	private transient Map<String, Class> types = Collections.emptyMap();
 
 	/**
 	 * An empty array. Used to invoke accessors via reflection.
@@ -280,7 +275,6 @@ public class BeanMap<T> extends AbstractMap<String, Object> implements Cloneable
 	 */
 	@Override
 	public Object put(String name, Object value) throws IllegalArgumentException, ClassCastException {
-		Log.DEBUG("------------- setting property ", name, "->", Utl.toStringWithType(value));
 		if (bean != null) {
 			Object oldValue = get(name);
 			Reflect.setProperty(bean, name, value);
@@ -494,42 +488,22 @@ public class BeanMap<T> extends AbstractMap<String, Object> implements Cloneable
 	 * Reinitializes this bean. Called during {@link #setBean(Object)}. Does introspection to find properties.
 	 */
 	protected void reinitialise() {
-		readMethods.clear();
-		writeMethods.clear();
-		types.clear();
+		readMethods = Collections.emptyMap();
+		writeMethods = Collections.emptyMap();
+		types = Collections.emptyMap();
 		initialise();
 	}
 
+	/**
+	 * Takes the property metadata from the per-class cache, so no introspection is done per instance.
+	 */
 	private void initialise() {
 		if (getBean() == null) return;
 
-		Class beanClass = getBean().getClass();
-		try {
-			// BeanInfo beanInfo = Introspector.getBeanInfo( bean, null );
-			BeanInfo beanInfo = Introspector.getBeanInfo(beanClass);
-			PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-			if (propertyDescriptors != null) {
-				for (int i = 0; i < propertyDescriptors.length; i++) {
-					PropertyDescriptor propertyDescriptor = propertyDescriptors[i];
-					if (propertyDescriptor != null) {
-						String name = propertyDescriptor.getName();
-						Method readMethod = propertyDescriptor.getReadMethod();
-						Method writeMethod = propertyDescriptor.getWriteMethod();
-						Class aType = propertyDescriptor.getPropertyType();
-
-						if (readMethod != null) {
-							readMethods.put(name, readMethod);
-						}
-						if (writeMethod != null) {
-							writeMethods.put(name, writeMethod);
-						}
-						types.put(name, aType);
-					}
-				}
-			}
-		} catch (IntrospectionException e) {
-			throw new RuntimeException(e);
-		}
+		BeanClassInfo info = BeanClassInfo.get(getBean().getClass());
+		readMethods = info.getReadMethods();
+		writeMethods = info.getWriteMethods();
+		types = info.getPropertyTypes();
 	}
 
 	protected void firePropertyChange(Object key, Object oldValue, Object newValue) {}
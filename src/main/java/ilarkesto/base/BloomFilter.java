@@ -0,0 +1,80 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.base;
+
+import java.util.BitSet;
+
+/**
+ * Space efficient set of strings, which can answer "definitely not contained" or "probably contained". Used to
+ * remember millions of keys (e.g. URLs) in constant memory, accepting a small rate of false positives.
+ */
+public class BloomFilter {
+
+	private BitSet bits;
+	private int size;
+	private int hashCount;
+
+	public BloomFilter(int expectedInsertions, double falsePositiveProbability) {
+		if (expectedInsertions < 1) expectedInsertions = 1;
+		double ln2 = Math.log(2);
+		long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (ln2 * ln2));
+		size = (int) Math.max(64, Math.min(Integer.MAX_VALUE - 1, m));
+		hashCount = Math.max(1, (int) Math.round((double) size / expectedInsertions * ln2));
+		bits = new BitSet(size);
+	}
+
+	/**
+	 * Adds the key and returns <code>true</code> if it was definitely not contained before.
+	 */
+	public synchronized boolean add(String key) {
+		int h1 = key.hashCode();
+		int h2 = fnv(key);
+		boolean added = false;
+		for (int i = 0; i < hashCount; i++) {
+			int idx = index(h1, h2, i);
+			if (!bits.get(idx)) {
+				bits.set(idx);
+				added = true;
+			}
+		}
+		return added;
+	}
+
+	public synchronized boolean mightContain(String key) {
+		int h1 = key.hashCode();
+		int h2 = fnv(key);
+		for (int i = 0; i < hashCount; i++) {
+			if (!bits.get(index(h1, h2, i))) return false;
+		}
+		return true;
+	}
+
+	private int index(int h1, int h2, int i) {
+		int h = h1 + i * h2;
+		if (h < 0) h = ~h;
+		return h % size;
+	}
+
+	private static int fnv(String key) {
+		int hash = 0x811c9dc5;
+		int len = key.length();
+		for (int i = 0; i < len; i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x01000193;
+		}
+		return hash | 1;
+	}
+
+}
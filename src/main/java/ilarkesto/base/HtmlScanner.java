@@ -0,0 +1,313 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.base;
+
+/**
+ * Single pass HTML tokenizer. Text between tags and the tags themselves are reported to a handler as ranges
+ * of the scanned source, nothing is copied. Comments and the contents of <code>script</code> and
+ * <code>style</code> elements are reported separately.
+ */
+public final class HtmlScanner {
+
+	private static final int MAX_ENTITY_LENGTH = 10;
+
+	public interface Handler {
+
+		/**
+		 * Text between tags, entities are not decoded.
+		 */
+		void onText(CharSequence html, int start, int end);
+
+		/**
+		 * The tag is only valid during this call.
+		 */
+		void onTag(Tag tag);
+
+		/**
+		 * Comments and contents of <code>script</code> and <code>style</code> elements.
+		 */
+		void onOther(CharSequence html, int start, int end);
+
+	}
+
+	private HtmlScanner() {}
+
+	public static void scan(CharSequence html, Handler handler) {
+		int len = html.length();
+		Tag tag = new Tag(html);
+		int textStart = 0;
+		int i = 0;
+		while (i < len) {
+			if (html.charAt(i) != '<') {
+				i++;
+				continue;
+			}
+			if (textStart < i) handler.onText(html, textStart, i);
+			if (startsWith(html, i, "<!--")) {
+				int end = indexOf(html, "-->", i + 4);
+				end = end < 0 ? len : end + 3;
+				handler.onOther(html, i, end);
+				textStart = i = end;
+				continue;
+			}
+			int end = indexOf(html, '>', i + 1);
+			if (end < 0) {
+				// unterminated tag
+				textStart = i = len;
+				break;
+			}
+			tag.init(i, end);
+			handler.onTag(tag);
+			textStart = i = end + 1;
+			if (!tag.isClosing() && (tag.is("script") || tag.is("style"))) {
+				int close = findClosingTag(html, i, tag.nameStart, tag.nameEnd);
+				if (close > i) handler.onOther(html, i, close);
+				textStart = i = close;
+			}
+		}
+		if (textStart < len) handler.onText(html, textStart, len);
+	}
+
+	/**
+	 * Appends the text to the builder, decoding character entities.
+	 */
+	public static void appendDecoded(StringBuilder sb, CharSequence html, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = html.charAt(i);
+			if (c == '&') {
+				int next = decodeEntity(html, i, end, sb);
+				if (next > 0) {
+					i = next - 1;
+					continue;
+				}
+			}
+			sb.append(c);
+		}
+	}
+
+	/**
+	 * Decodes the entity starting at <code>ampIndex</code> into the builder.
+	 * 
+	 * @return the index after the entity or <code>-1</code> if there is no known entity
+	 */
+	public static int decodeEntity(CharSequence html, int ampIndex, int end, StringBuilder sb) {
+		int limit = Math.min(end, ampIndex + MAX_ENTITY_LENGTH);
+		int semicolon = -1;
+		for (int i = ampIndex + 1; i < limit; i++) {
+			if (html.charAt(i) == ';') {
+				semicolon = i;
+				break;
+			}
+		}
+		if (semicolon < 0) return -1;
+		int nameStart = ampIndex + 1;
+		int nameLength = semicolon - nameStart;
+		if (nameLength > 1 && html.charAt(nameStart) == '#') {
+			int codePoint = parseCharacterReference(html, nameStart + 1, semicolon);
+			if (codePoint < 0) return -1;
+			sb.appendCodePoint(codePoint);
+			return semicolon + 1;
+		}
+		char c = Str.getHtmlEntityChar(html, nameStart, semicolon);
+		if (c == 0) return -1;
+		sb.append(c);
+		return semicolon + 1;
+	}
+
+	private static int parseCharacterReference(CharSequence html, int start, int end) {
+		int radix = 10;
+		if (html.charAt(start) == 'x' || html.charAt(start) == 'X') {
+			radix = 16;
+			start++;
+		}
+		if (start >= end) return -1;
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = Character.digit(html.charAt(i), radix);
+			if (digit < 0) return -1;
+			value = value * radix + digit;
+			if (value > Character.MAX_CODE_POINT) return -1;
+		}
+		return value;
+	}
+
+	private static int findClosingTag(CharSequence html, int from, int nameStart, int nameEnd) {
+		int len = html.length();
+		int nameLength = nameEnd - nameStart;
+		for (int i = from; i < len - 1; i++) {
+			if (html.charAt(i) != '<' || html.charAt(i + 1) != '/') continue;
+			int j = i + 2;
+			if (j + nameLength > len) break;
+			boolean match = true;
+			for (int k = 0; k < nameLength; k++) {
+				if (Character.toLowerCase(html.charAt(j + k)) != Character.toLowerCase(html.charAt(nameStart + k))) {
+					match = false;
+					break;
+				}
+			}
+			// the name must end there, </scripts does not close <script>
+			int nameEndIndex = j + nameLength;
+			if (match && (nameEndIndex == len || !isNameChar(html.charAt(nameEndIndex)))) return i;
+		}
+		return len;
+	}
+
+	static boolean startsWith(CharSequence html, int index, String prefix) {
+		return index + prefix.length() <= html.length() && regionMatches(html, index, prefix, false);
+	}
+
+	static boolean regionMatches(CharSequence html, int index, String s, boolean ignoreCase) {
+		int len = s.length();
+		for (int i = 0; i < len; i++) {
+			char c = html.charAt(index + i);
+			char expected = s.charAt(i);
+			if (c == expected) continue;
+			if (!ignoreCase || Character.toLowerCase(c) != Character.toLowerCase(expected)) return false;
+		}
+		return true;
+	}
+
+	private static int indexOf(CharSequence html, char c, int from) {
+		int len = html.length();
+		for (int i = from; i < len; i++) {
+			if (html.charAt(i) == c) return i;
+		}
+		return -1;
+	}
+
+	private static int indexOf(CharSequence html, String s, int from) {
+		int last = html.length() - s.length();
+		for (int i = from; i <= last; i++) {
+			if (regionMatches(html, i, s, false)) return i;
+		}
+		return -1;
+	}
+
+	private static boolean isNameChar(char c) {
+		return !Character.isWhitespace(c) && c != '/' && c != '>' && c != '=';
+	}
+
+	/**
+	 * View on a tag within the scanned source. Reused by the scanner, so it must not be kept.
+	 */
+	public static final class Tag {
+
+		private final CharSequence html;
+		private int start;
+		private int end;
+		private int nameStart;
+		private int nameEnd;
+		private boolean closing;
+
+		private Tag(CharSequence html) {
+			this.html = html;
+		}
+
+		private void init(int start, int end) {
+			this.start = start;
+			this.end = end;
+			int i = start + 1;
+			closing = i < end && html.charAt(i) == '/';
+			if (closing) i++;
+			nameStart = i;
+			while (i < end && isNameChar(html.charAt(i))) {
+				i++;
+			}
+			nameEnd = i;
+		}
+
+		/**
+		 * Case insensitive comparison of the tag name, without the slash of closing tags.
+		 */
+		public boolean is(String name) {
+			return nameEnd - nameStart == name.length() && regionMatches(html, nameStart, name, true);
+		}
+
+		public boolean isClosing() {
+			return closing;
+		}
+
+		/**
+		 * Index of the opening angle bracket.
+		 */
+		public int getStart() {
+			return start;
+		}
+
+		/**
+		 * Index of the closing angle bracket.
+		 */
+		public int getEnd() {
+			return end;
+		}
+
+		/**
+		 * Returns the raw value of the attribute or <code>null</code> if the tag does not have it.
+		 */
+		public String getAttribute(String name) {
+			int i = nameEnd;
+			while (i < end) {
+				char c = html.charAt(i);
+				if (!isNameChar(c)) {
+					i++;
+					continue;
+				}
+				int attrStart = i;
+				while (i < end && isNameChar(html.charAt(i))) {
+					i++;
+				}
+				boolean match = i - attrStart == name.length() && regionMatches(html, attrStart, name, true);
+				while (i < end && Character.isWhitespace(html.charAt(i))) {
+					i++;
+				}
+				if (i >= end || html.charAt(i) != '=') {
+					if (match) return "";
+					continue;
+				}
+				i++;
+				while (i < end && Character.isWhitespace(html.charAt(i))) {
+					i++;
+				}
+				int valueStart;
+				int valueEnd;
+				if (i < end && (html.charAt(i) == '"' || html.charAt(i) == '\'')) {
+					char quote = html.charAt(i);
+					valueStart = i + 1;
+					valueEnd = valueStart;
+					while (valueEnd < end && html.charAt(valueEnd) != quote) {
+						valueEnd++;
+					}
+					i = valueEnd + 1;
+				} else {
+					valueStart = i;
+					valueEnd = i;
+					while (valueEnd < end && !Character.isWhitespace(html.charAt(valueEnd))) {
+						valueEnd++;
+					}
+					i = valueEnd;
+				}
+				if (match) return html.subSequence(valueStart, valueEnd).toString();
+			}
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return html.subSequence(start, end + 1).toString();
+		}
+
+	}
+
+}
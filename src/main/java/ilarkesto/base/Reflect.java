@@ -48,13 +48,7 @@ public abstract class Reflect {
 	}
 
 	public static Object getProperty(Object o, String name) {
-		String methodSuffix = Str.uppercaseFirstLetter(name);
-		Method method = getDeclaredMethod(o.getClass(), "get" + methodSuffix);
-		if (method == null) {
-			method = getDeclaredMethod(o.getClass(), "is" + methodSuffix);
-			Class<?> returnType = method.getReturnType();
-			if (returnType != boolean.class && returnType != Boolean.class) method = null;
-		}
+		Method method = BeanClassInfo.get(o.getClass()).getGetter(name);
 		if (method == null)
 			throw new RuntimeException("No getter method for property: " + o.getClass().getSimpleName() + "." + name);
 		try {
@@ -66,9 +60,8 @@ public abstract class Reflect {
 	}
 
 	public static Class getPropertyType(Object o, String name) {
-		String methodName = "get" + Str.uppercaseFirstLetter(name);
-		Method m = getDeclaredMethod(o.getClass(), methodName);
-		if (m == null) return null;
+		Method m = BeanClassInfo.get(o.getClass()).getGetter(name);
+		if (m == null || !m.getName().startsWith("get")) return null;
 		return m.getReturnType();
 	}
 
@@ -121,14 +114,14 @@ public abstract class Reflect {
 	}
 
 	public static void setProperty(Object o, String name, Object value) {
-		Method setter = getSetterMethod(o.getClass(), name);
+		Method setter = BeanClassInfo.get(o.getClass()).getSetter(name);
 		if (setter == null) throw new RuntimeException("Property setter not found: " + o.getClass() + "." + name);
 		Class[] types = setter.getParameterTypes();
 		if (types.length != 1)
 			throw new RuntimeException("Setter has illegar arguments: " + o.getClass() + "." + setter.getName());
 		if (value != null) {
 			Class type = types[0];
-			if (!type.isAssignableFrom(value.getClass())) {
+			if (!type.isAssignableFrom(value.getClass()) && !isTypeCompatible(type, value.getClass(), true)) {
 				if (type.equals(Boolean.class) || type.equals(boolean.class)) {
 					value = Boolean.valueOf(value.toString());
 				} else if (type.equals(Integer.class) || type.equals(int.class)) {
@@ -148,7 +141,7 @@ public abstract class Reflect {
 	}
 
 	public static void setPropertyByStringValue(Object o, String name, String valueAsString) {
-		Method setterMethod = getSetterMethod(o.getClass(), name);
+		Method setterMethod = BeanClassInfo.get(o.getClass()).getSetter(name);
 		if (setterMethod == null)
 			throw new RuntimeException("Setter " + o.getClass().getSimpleName() + ".set"
 					+ Str.uppercaseFirstLetter(name) + "(?) does not exist.");
@@ -223,7 +216,7 @@ public abstract class Reflect {
 	}
 
 	public static Object invoke(Object object, Method method, Object... parameters) {
-		method.setAccessible(true);
+		if (!method.isAccessible()) method.setAccessible(true);
 		try {
 			return method.invoke(object, parameters);
 		} catch (Exception ex) {
@@ -298,61 +298,100 @@ public class Str extends ilarkesto.core.base.Str {
 
 	public static String activateLinksInHtml(String s, int maxWidth) {
 		if (s == null) return null;
-		int fromIndex = 0;
-		StringBuffer result = null;
-		int idx = -1;
-		while ((idx = firstIndexOf(s, fromIndex, "http://", "https://", "ftp://", "www.")) >= 0) {
-			char pre = idx == 0 ? ' ' : s.charAt(idx - 1);
-			if (pre == ' ' || pre == '\n' || pre == '>') {
-				int endIdx = firstIndexOf(s, idx, " ", "<", "\n");
-				if (endIdx <= 0 || !s.substring(endIdx).startsWith("</a>")) {
-					if (endIdx < 0) endIdx = s.length();
-					// activate
-					String url = s.substring(idx, endIdx);
-					if (result == null) result = new StringBuffer();
-					result.append(s.substring(fromIndex, idx));
-					String urlLower = url.toLowerCase();
-					result.append("<a href=\"");
-					result.append(url.startsWith("www.") ? "http://" + url : url);
-					result.append("\" target=\"_blank\">");
-
-					if (urlLower.startsWith("http://www.youtube.com/watch?v=")) {
-						result.append(youtube(parseYoutubeVideoId(url), maxWidth));
-					} else if (urlLower.startsWith("http://twitpic.com/")) {
-						String id = removePrefix(url, "http://twitpic.com/");
-						result.append("<img src=\"");
-						result.append("http://twitpic.com/show/full/").append(id);
-						result.append("\" style=\"max-width: " + maxWidth + "px; max-height: " + maxWidth
-								+ "px;\" alt=\"twitpic\">");
-					} else if (urlLower.endsWith(".jpg") || urlLower.endsWith(".gif") || urlLower.endsWith(".png")
-							|| urlLower.endsWith(".jpeg") || url.contains(".ggpht.com/")) {
-						result.append("<img src=\"");
-						result.append(url.startsWith("www.") ? "http://" + url : url);
-						result.append("\" style=\"max-width: " + maxWidth + "px; max-height: " + maxWidth
-								+ "px;\" alt=\"img\">");
-					} else {
-						String label = url;
-						if (url.startsWith("http://")) url = url.substring(7);
-						if (url.startsWith("https://")) url = url.substring(8);
-						if (url.startsWith("www.")) url = url.substring(4);
-						label = cutRight(url, 30, "...");
-						result.append(label);
-					}
+		LinkActivator activator = new LinkActivator(s, maxWidth);
+		HtmlScanner.scan(s, activator);
+		return activator.getResult();
+	}
+
+	/**
+	 * Activates links in text outside of tags and existing links.
+	 */
+	private static class LinkActivator implements HtmlScanner.Handler {
+
+		private static final String[] PREFIXES = { "http://", "https://", "ftp://", "www." };
+
+		private final String html;
+		private final int maxWidth;
+		private StringBuilder result;
+		private int copiedUntil;
+		private boolean insideLink;
+
+		public LinkActivator(String html, int maxWidth) {
+			this.html = html;
+			this.maxWidth = maxWidth;
+		}
 
-					result.append("</a>");
-					fromIndex = endIdx;
+		@Override
+		public void onText(CharSequence text, int start, int end) {
+			if (insideLink) return;
+			int i = start;
+			while (i < end) {
+				char pre = i == start ? ' ' : html.charAt(i - 1);
+				if ((pre != ' ' && pre != '\n') || !isUrlStart(i)) {
+					i++;
 					continue;
 				}
+				int urlEnd = i;
+				while (urlEnd < end && html.charAt(urlEnd) != ' ' && html.charAt(urlEnd) != '\n') {
+					urlEnd++;
+				}
+				if (result == null) result = new StringBuilder(html.length() + 256);
+				result.append(html, copiedUntil, i);
+				appendLink(result, html.substring(i, urlEnd), maxWidth);
+				copiedUntil = i = urlEnd;
+			}
+		}
+
+		private boolean isUrlStart(int index) {
+			for (String prefix : PREFIXES) {
+				if (html.startsWith(prefix, index)) return true;
 			}
-			// nothing to activate
-			if (result == null) result = new StringBuffer();
-			result.append(s.substring(fromIndex, idx));
-			result.append(s.charAt(idx));
-			fromIndex = idx + 1;
+			return false;
+		}
+
+		@Override
+		public void onTag(HtmlScanner.Tag tag) {
+			if (tag.is("a")) insideLink = !tag.isClosing();
+		}
+
+		@Override
+		public void onOther(CharSequence text, int start, int end) {}
+
+		public String getResult() {
+			if (result == null) return html;
+			result.append(html, copiedUntil, html.length());
+			return result.toString();
+		}
+
+	}
+
+	private static void appendLink(StringBuilder result, String url, int maxWidth) {
+		String urlLower = url.toLowerCase();
+		result.append("<a href=\"");
+		result.append(url.startsWith("www.") ? "http://" + url : url);
+		result.append("\" target=\"_blank\">");
+
+		if (urlLower.startsWith("http://www.youtube.com/watch?v=")) {
+			result.append(youtube(parseYoutubeVideoId(url), maxWidth));
+		} else if (urlLower.startsWith("http://twitpic.com/")) {
+			String id = removePrefix(url, "http://twitpic.com/");
+			result.append("<img src=\"");
+			result.append("http://twitpic.com/show/full/").append(id);
+			result.append("\" style=\"max-width: " + maxWidth + "px; max-height: " + maxWidth
+					+ "px;\" alt=\"twitpic\">");
+		} else if (urlLower.endsWith(".jpg") || urlLower.endsWith(".gif") || urlLower.endsWith(".png")
+				|| urlLower.endsWith(".jpeg") || url.contains(".ggpht.com/")) {
+			result.append("<img src=\"");
+			result.append(url.startsWith("www.") ? "http://" + url : url);
+			result.append("\" style=\"max-width: " + maxWidth + "px; max-height: " + maxWidth + "px;\" alt=\"img\">");
+		} else {
+			if (url.startsWith("http://")) url = url.substring(7);
+			if (url.startsWith("https://")) url = url.substring(8);
+			if (url.startsWith("www.")) url = url.substring(4);
+			result.append(cutRight(url, 30, "..."));
 		}
-		if (result == null) return s;
-		result.append(s.substring(fromIndex));
-		return result.toString();
+
+		result.append("</a>");
 	}
 
 	private static String parseYoutubeVideoId(String url) {
@@ -896,149 +935,118 @@ public class Str extends ilarkesto.core.base.Str {
 
 	public static String html2text(String s) {
 		if (s == null) return null;
-		StringBuilder sb = new StringBuilder();
-		StringBuilder tag = null;
+		Html2TextHandler handler = new Html2TextHandler(s);
+		HtmlScanner.scan(s, handler);
+		return handler.sb.toString().trim();
+	}
 
-		boolean inside = false;
-		int len = s.length();
-		String href = null;
-		char cPrev = (char) -1;
-		for (int i = 0; i < len; i++) {
-			char c = s.charAt(i);
-			if (inside) {
-				// inside html tag declaration
-				if (c == '>') {
-					inside = false;
-					String t = tag.toString().toLowerCase();
-					if (isTag(t, "br") || isTag(t, "ul") || isTag(t, "/ul") || isTag(t, "div")) {
-						sb.append("\n");
-					} else if (isTag(t, "p") || isTag(t, "h1") || isTag(t, "h2") || isTag(t, "h3") || isTag(t, "h4")
-							|| isTag(t, "h5") || isTag(t, "h6")) {
-						sb.append("\n\n");
-					} else if (isTag(t, "li")) {
-						sb.append("\n- ");
-					} else if (isTag(t, "hr")) {
-						sb.append("\n--------------------\n");
-					} else if (isTag(t, "/a")) {
-						if (href != null) {
-							int hrefLen = href.length();
-							if (i > hrefLen * 2 && s.substring(i - 3 - hrefLen, i - 3).equalsIgnoreCase(href)) {
-								// skip
-							} else {
-								sb.append(" [ ").append(href).append(" ]");
-							}
-							href = null;
-						}
-					} else if (isTag(t, "a")) {
-						int idx = t.indexOf("href=\"");
-						if (idx >= 0) {
-							idx += 6;
-							int endidx = t.indexOf("\"", idx);
-							if (endidx > idx) {
-								href = t.substring(idx, endidx);
-							}
-						} else {
-							idx = t.indexOf("href='");
-							if (idx >= 0) {
-								idx += 6;
-								int endidx = t.indexOf("'", idx);
-								if (endidx > idx) {
-									href = t.substring(idx, endidx);
-								}
-							}
-						}
+	private static class Html2TextHandler implements HtmlScanner.Handler {
+
+		private final String html;
+		private final StringBuilder sb;
+		private char cPrev = (char) -1;
+		private String href;
+
+		public Html2TextHandler(String html) {
+			this.html = html;
+			sb = new StringBuilder(html.length());
+		}
+
+		@Override
+		public void onText(CharSequence html, int start, int end) {
+			for (int i = start; i < end; i++) {
+				char c = html.charAt(i);
+				if (c == '&') {
+					int next = HtmlScanner.decodeEntity(html, i, end, sb);
+					if (next > 0) {
+						i = next - 1;
+						cPrev = ';';
+						continue;
 					}
-					tag = null;
-				} else {
-					tag.append(c);
-				}
-				cPrev = c;
-				continue;
-			} else {
-				// outside html tag
-				if (c == '<') {
-					inside = true;
-					tag = new StringBuilder();
-					cPrev = c;
-					continue;
 				}
 				if (c == '\n' || c == '\r' || (Character.isWhitespace(c) && Character.isWhitespace(cPrev))) {
 					// skip
 				} else {
 					sb.append(c);
 				}
+				cPrev = c;
 			}
-			cPrev = c;
 		}
 
-		s = sb.toString();
-		s = s.replace("&nbsp;", " ");
-		s = s.replace("&auml;", String.valueOf(ae));
-		s = s.replace("&uuml;", String.valueOf(ue));
-		s = s.replace("&ouml;", String.valueOf(oe));
-		s = s.replace("&Auml;", String.valueOf(AE));
-		s = s.replace("&Uuml;", String.valueOf(UE));
-		s = s.replace("&Ouml;", String.valueOf(OE));
-		s = s.replace("&szlig;", String.valueOf(sz));
-		s = s.replace("&euro;", String.valueOf(EUR));
-		s = s.replace("&amp;", "&");
-		s = s.replace("&quot;", "\"");
-		s = s.replace("&lt;", "<");
-		s = s.replace("&gt;", ">");
-		s = s.replace("<br>", "\n");
+		@Override
+		public void onTag(HtmlScanner.Tag tag) {
+			cPrev = '>';
+			if (tag.isClosing()) {
+				if (tag.is("ul")) {
+					newline(1);
+				} else if (tag.is("a") && href != null) {
+					int hrefLen = href.length();
+					int tagStart = tag.getStart();
+					if (tagStart < hrefLen || !html.regionMatches(true, tagStart - hrefLen, href, 0, hrefLen)) {
+						sb.append(" [ ").append(href).append(" ]");
+					}
+					href = null;
+				}
+			} else if (tag.is("br") || tag.is("ul") || tag.is("div")) {
+				newline(1);
+			} else if (tag.is("p") || tag.is("h1") || tag.is("h2") || tag.is("h3") || tag.is("h4") || tag.is("h5")
+					|| tag.is("h6")) {
+				newline(2);
+			} else if (tag.is("li")) {
+				newline(1);
+				sb.append("- ");
+			} else if (tag.is("hr")) {
+				newline(1);
+				sb.append("--------------------");
+				newline(1);
+			} else if (tag.is("a")) {
+				String value = tag.getAttribute("href");
+				if (value != null && value.length() > 0) href = value;
+			}
+		}
 
-		s = s.replace(" \n", "\n");
-		s = s.replace("  \n", "\n");
-		s = s.replace("   \n", "\n");
-		s = s.replace("\n\n\n\n\n", "\n\n");
-		s = s.replace("\n\n\n\n", "\n\n");
-		s = s.replace("\n\n\n", "\n\n");
+		@Override
+		public void onOther(CharSequence html, int start, int end) {
+			cPrev = '>';
+		}
 
-		return s.trim();
-	}
+		/**
+		 * Appends line breaks, dropping trailing spaces and allowing at most one empty line.
+		 */
+		private void newline(int count) {
+			int len = sb.length();
+			while (len > 0 && sb.charAt(len - 1) == ' ') {
+				len--;
+			}
+			sb.setLength(len);
+			int existing = 0;
+			while (existing < 2 && existing < len && sb.charAt(len - 1 - existing) == '\n') {
+				existing++;
+			}
+			for (int i = Math.min(existing + count, 2) - existing; i > 0; i--) {
+				sb.append('\n');
+			}
+		}
 
-	private static boolean isTag(String tag, String name) {
-		return tag.equals(name) || tag.startsWith(name + " ");
 	}
 
 	public static String removeHtmlTags(String s) {
 		if (s == null) return null;
-		StringBuilder sb = new StringBuilder();
+		final StringBuilder sb = new StringBuilder(s.length());
+		HtmlScanner.scan(s, new HtmlScanner.Handler() {
 
-		boolean inside = false;
-		int len = s.length();
-		for (int i = 0; i < len; i++) {
-			char c = s.charAt(i);
-			if (inside) {
-				// inside html tag
-				if (c == '>') inside = false;
-				continue;
-			} else {
-				// outside html tag
-				if (c == '<') {
-					inside = true;
-					continue;
-				}
-				sb.append(c);
+			@Override
+			public void onText(CharSequence html, int start, int end) {
+				HtmlScanner.appendDecoded(sb, html, start, end);
 			}
-		}
 
-		s = sb.toString();
-		s = s.replace("&nbsp;", " ");
-		s = s.replace("&auml;", String.valueOf(ae));
-		s = s.replace("&uuml;", String.valueOf(ue));
-		s = s.replace("&ouml;", String.valueOf(oe));
-		s = s.replace("&Auml;", String.valueOf(AE));
-		s = s.replace("&Uuml;", String.valueOf(UE));
-		s = s.replace("&Ouml;", String.valueOf(OE));
-		s = s.replace("&szlig;", String.valueOf(sz));
-		s = s.replace("&euro;", String.valueOf(EUR));
-		s = s.replace("&amp;", "&");
-		s = s.replace("&quot;", "\"");
-		s = s.replace("&lt;", "<");
-		s = s.replace("&gt;", ">");
-		s = s.replace("<br>", "\n");
-		return s;
+			@Override
+			public void onTag(HtmlScanner.Tag tag) {}
+
+			@Override
+			public void onOther(CharSequence html, int start, int end) {}
+		});
+		return sb.toString();
 	}
 
 	public static String[] remove(int index, String[] elements) {
@@ -18,14 +18,36 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Utilitiy methods for dealing with date and time. Current month, year. Date comparsions.
  */
 public final class Tm extends ilarkesto.core.time.Tm {
 
+	/**
+	 * Backward steps of the system clock up to this are hidden by <code>getNowAsMillisMonotonic()</code>.
+	 */
+	public static final long MONOTONIC_TOLERANCE = SECOND;
+
+	private static final AtomicLong lastNow = new AtomicLong();
+
 	private Tm() {}
 
+	/**
+	 * Current time in milliseconds which does not decrease on small corrections of the system clock. While the
+	 * clock is set back by up to <code>MONOTONIC_TOLERANCE</code>, the last value is returned until the clock
+	 * reaches it again. Larger steps back are followed, so the time does not stand still for long.
+	 */
+	public static long getNowAsMillisMonotonic() {
+		long now = System.currentTimeMillis();
+		while (true) {
+			long last = lastNow.get();
+			if (now <= last && last - now <= MONOTONIC_TOLERANCE) return last;
+			if (lastNow.compareAndSet(last, now)) return now;
+		}
+	}
+
 	public static final String[] MONTHS_DE = new String[] { "Januar", "Februar", "M\u00E4rz", "April", "Mai", "Juni",
 			"Juli", "August", "September", "Oktober", "November", "Dezember" };
 
@@ -24,6 +24,10 @@ import java.util.Locale;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
 
+/**
+ * Backed by epoch milliseconds in whole seconds. Date and time components are computed on demand from a shared
+ * cache of the current hour, comparisons work on the milliseconds and allocate nothing.
+ */
 public final class DateAndTime implements Comparable<DateAndTime> {
 
 	public static final transient SimpleDateFormat FORMAT_WEEKDAY_DAY_LONGMONTH_YEAR_HOUR_MINUTE = new SimpleDateFormat(
@@ -38,22 +42,24 @@ public final class DateAndTime implements Comparable<DateAndTime> {
 	public static final transient SimpleDateFormat FORMAT_RFC822 = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss z",
 			Locale.ENGLISH);
 
+	private static volatile Hour cachedHour;
+
+	/**
+	 * <code>0</code> if not computed from the components yet.
+	 */
+	private long millis;
+
 	private Date date;
 
 	private Time time;
 
 	public DateAndTime(java.util.Date date) {
-		GregorianCalendar calendar = new GregorianCalendar();
-		calendar.setTime(date);
-		this.date = new Date(calendar);
-		this.time = new Time(calendar);
+		this(date.getTime());
 	}
 
 	public DateAndTime(long millis) {
-		GregorianCalendar calendar = new GregorianCalendar();
-		calendar.setTimeInMillis(millis);
-		this.date = new Date(calendar);
-		this.time = new Time(calendar);
+		long remainder = millis % 1000;
+		this.millis = remainder < 0 ? millis - remainder - 1000 : millis - remainder;
 	}
 
 	public DateAndTime(GregorianCalendar calendar) {
@@ -127,25 +133,50 @@ public final class DateAndTime implements Comparable<DateAndTime> {
 	}
 
 	public Date getDate() {
+		if (date == null) initComponents();
 		return date;
 	}
 
 	public Time getTime() {
+		if (time == null) initComponents();
 		return time;
 	}
 
+	private void initComponents() {
+		TimeZone timeZone = TimeZone.getDefault();
+		Hour hour = cachedHour;
+		if (hour == null || !hour.contains(millis, timeZone)) {
+			hour = Hour.create(millis, timeZone);
+			if (hour == null) {
+				GregorianCalendar calendar = new GregorianCalendar(timeZone);
+				calendar.setTimeInMillis(millis);
+				date = new Date(calendar);
+				time = new Time(calendar);
+				return;
+			}
+			cachedHour = hour;
+		}
+		int seconds = (int) ((millis - hour.begin) / 1000);
+		date = hour.date;
+		time = new Time(hour.hour, seconds / 60, seconds % 60);
+	}
+
 	public GregorianCalendar toGregorianCalendar() {
-		GregorianCalendar gc = (GregorianCalendar) date.getGregorianCalendar().clone();
-		gc.add(GregorianCalendar.MILLISECOND, (int) time.toMillis());
+		GregorianCalendar gc = new GregorianCalendar();
+		gc.setTimeInMillis(toMillis());
 		return gc;
 	}
 
 	public java.util.Date toJavaDate() {
-		return toGregorianCalendar().getTime();
+		return new java.util.Date(toMillis());
 	}
 
 	public long toMillis() {
-		return date.toMillis() + time.toMillis();
+		if (millis == 0 && date != null) {
+			millis = new GregorianCalendar(date.getYear(), date.getMonth() - 1, date.getDay(), time.getHour(),
+					time.getMinute(), time.getSecond()).getTimeInMillis();
+		}
+		return millis;
 	}
 
 	public TimePeriod getPeriodTo(DateAndTime other) {
@@ -153,7 +184,15 @@ public final class DateAndTime implements Comparable<DateAndTime> {
 	}
 
 	public TimePeriod getPeriodToNow() {
-		return getPeriodTo(now());
+		return new TimePeriod(getMillisToNow());
+	}
+
+	public long getMillisToNow() {
+		return Tm.getNowAsMillisMonotonic() - toMillis();
+	}
+
+	public boolean isOlderThan(TimePeriod period) {
+		return getMillisToNow() > period.toMillis();
 	}
 
 	public String toString(DateFormat format) {
@@ -162,9 +201,9 @@ public final class DateAndTime implements Comparable<DateAndTime> {
 
 	public String toString(Locale locale) {
 		StringBuilder sb = new StringBuilder();
-		sb.append(date.toString(locale));
+		sb.append(getDate().toString(locale));
 		sb.append(", ");
-		sb.append(time.toString(locale));
+		sb.append(getTime().toString(locale));
 		return sb.toString();
 	}
 
@@ -185,16 +224,13 @@ public final class DateAndTime implements Comparable<DateAndTime> {
 	}
 
 	public boolean isFuture() {
-		return isAfter(now());
+		return getMillisToNow() < 0;
 	}
 
 	// --- static ---
 
 	public static DateAndTime now() {
-		GregorianCalendar gc = new GregorianCalendar();
-		return new DateAndTime(gc.get(GregorianCalendar.YEAR), gc.get(GregorianCalendar.MONTH) + 1,
-				gc.get(GregorianCalendar.DAY_OF_MONTH), gc.get(GregorianCalendar.HOUR_OF_DAY),
-				gc.get(GregorianCalendar.MINUTE), gc.get(GregorianCalendar.SECOND));
+		return new DateAndTime(Tm.getNowAsMillisMonotonic());
 	}
 
 	public static DateAndTime parse(String s, DateFormat... formats) throws ParseException {
@@ -214,35 +250,65 @@ public final class DateAndTime implements Comparable<DateAndTime> {
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
-		sb.append(date.toString());
+		sb.append(getDate().toString());
 		sb.append(" ");
-		sb.append(time.toString());
+		sb.append(getTime().toString());
 		return sb.toString();
 	}
 
-	private transient int hashCode;
-
 	@Override
 	public int hashCode() {
-		if (hashCode == 0) {
-			hashCode = 23;
-			hashCode = hashCode * 37 + date.hashCode();
-			hashCode = hashCode * 37 + time.hashCode();
-		}
-		return hashCode;
+		long value = toMillis();
+		return (int) (value ^ (value >>> 32));
 	}
 
 	@Override
 	public boolean equals(Object obj) {
 		if (obj == null) return false;
-		return date.equals(((DateAndTime) obj).date) && time.equals(((DateAndTime) obj).time);
+		return toMillis() == ((DateAndTime) obj).toMillis();
 	}
 
 	@Override
 	public int compareTo(DateAndTime o) {
-		int i = date.compareTo(o.date);
-		if (i == 0) { return time.compareTo(o.time); }
-		return i;
+		long a = toMillis();
+		long b = o.toMillis();
+		return a < b ? -1 : (a == b ? 0 : 1);
+	}
+
+	/**
+	 * One hour of local time without a time zone offset change, shared by the instances within it.
+	 */
+	private static final class Hour {
+
+		private final long begin;
+		private final TimeZone timeZone;
+		private final Date date;
+		private final int hour;
+
+		private Hour(long begin, TimeZone timeZone, Date date, int hour) {
+			this.begin = begin;
+			this.timeZone = timeZone;
+			this.date = date;
+			this.hour = hour;
+		}
+
+		private boolean contains(long millis, TimeZone timeZone) {
+			return millis >= begin && millis < begin + Tm.HOUR && this.timeZone.equals(timeZone);
+		}
+
+		private static Hour create(long millis, TimeZone timeZone) {
+			GregorianCalendar calendar = new GregorianCalendar(timeZone);
+			calendar.setTimeInMillis(millis);
+			calendar.set(GregorianCalendar.MINUTE, 0);
+			calendar.set(GregorianCalendar.SECOND, 0);
+			calendar.set(GregorianCalendar.MILLISECOND, 0);
+			long begin = calendar.getTimeInMillis();
+			if (millis < begin || millis >= begin + Tm.HOUR) return null;
+			if (calendar.get(GregorianCalendar.MINUTE) != 0) return null;
+			if (timeZone.getOffset(begin) != timeZone.getOffset(begin + Tm.HOUR - 1)) return null;
+			return new Hour(begin, timeZone, new Date(calendar), calendar.get(GregorianCalendar.HOUR_OF_DAY));
+		}
+
 	}
 
 }
@@ -45,7 +45,7 @@ public class Lock {
 	}
 
 	public boolean isTimedOut() {
-		return time.getPeriodToNow().isGreaterThen(maxLockTime);
+		return time.isOlderThan(maxLockTime);
 	}
 
 	@Override
@@ -31,6 +31,23 @@ public class Str {
 
 	public static final char EUR = '\u0080';
 
+	private static final String[] HTML_ENTITY_NAMES = { "amp", "lt", "gt", "quot", "auml", "uuml", "ouml", "Auml",
+			"Uuml", "Ouml", "szlig", "euro", "nbsp", "apos" };
+	private static final char[] HTML_ENTITY_CHARS = { '&', '<', '>', '"', ae, ue, oe, AE, UE, OE, sz, EUR, ' ', '\'' };
+
+	/**
+	 * Entities before this index are used for escaping, the others are only decoded.
+	 */
+	private static final int HTML_ESCAPED_ENTITIES = 12;
+
+	private static final String[] HTML_ESCAPES = new String[HTML_ESCAPED_ENTITIES];
+
+	static {
+		for (int i = 0; i < HTML_ESCAPED_ENTITIES; i++) {
+			HTML_ESCAPES[i] = "&" + HTML_ENTITY_NAMES[i] + ";";
+		}
+	}
+
 	public static String[] toStringArray(Collection<String> c) {
 		return toStringArray(c.toArray());
 	}
@@ -111,21 +128,50 @@ public class Str {
 
 	public static String toHtml(String s) {
 		if (s == null) return null;
-		s = s.replace("&", "&amp;");
-		s = s.replace(String.valueOf(ae), "&auml;");
-		s = s.replace(String.valueOf(ue), "&uuml;");
-		s = s.replace(String.valueOf(oe), "&ouml;");
-		s = s.replace(String.valueOf(AE), "&Auml;");
-		s = s.replace(String.valueOf(UE), "&Uuml;");
-		s = s.replace(String.valueOf(OE), "&Ouml;");
-		s = s.replace(String.valueOf(sz), "&szlig;");
-		s = s.replace(String.valueOf(EUR), "&euro;");
-		s = s.replace("<", "&lt;");
-		s = s.replace(">", "&gt;");
-		s = s.replace("\"", "&quot;");
-		s = s.replace("\n", "<br>");
+		StringBuilder sb = null;
+		int len = s.length();
+		int copied = 0;
+		for (int i = 0; i < len; i++) {
+			String escape = getHtmlEscape(s.charAt(i));
+			if (escape == null) continue;
+			if (sb == null) sb = new StringBuilder(len + 16);
+			sb.append(s, copied, i).append(escape);
+			copied = i + 1;
+		}
+		if (sb == null) return s;
+		sb.append(s, copied, len);
+		return sb.toString();
+	}
 
-		return s;
+	/**
+	 * Returns the replacement for the character in html text, as used by <code>toHtml()</code>, or
+	 * <code>null</code> if the character can be written as is.
+	 */
+	public static String getHtmlEscape(char c) {
+		if (c > '>' && c < EUR) return null;
+		if (c == '\n') return "<br>";
+		for (int i = 0; i < HTML_ESCAPED_ENTITIES; i++) {
+			if (HTML_ENTITY_CHARS[i] == c) return HTML_ESCAPES[i];
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the character of the entity name between <code>start</code> and <code>end</code> (without
+	 * <code>&amp;</code> and <code>;</code>), or <code>0</code> if the entity is unknown.
+	 */
+	public static char getHtmlEntityChar(CharSequence s, int start, int end) {
+		int len = end - start;
+		for (int i = 0; i < HTML_ENTITY_NAMES.length; i++) {
+			String name = HTML_ENTITY_NAMES[i];
+			if (name.length() != len) continue;
+			int j = 0;
+			while (j < len && s.charAt(start + j) == name.charAt(j)) {
+				j++;
+			}
+			if (j == len) return HTML_ENTITY_CHARS[i];
+		}
+		return 0;
 	}
 
 	public static String getLeadingSpaces(String s) {
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.core.diff;
+
+/**
+ * One step of an edit script: a range of left tokens and a range of right tokens (end exclusive).
+ */
+public class DiffEdit {
+
+	public static enum Type {
+		SAME, ADDED, REMOVED, REPLACED
+	}
+
+	private Type type;
+	private int leftFrom;
+	private int leftTo;
+	private int rightFrom;
+	private int rightTo;
+
+	public DiffEdit(Type type, int leftFrom, int leftTo, int rightFrom, int rightTo) {
+		super();
+		this.type = type;
+		this.leftFrom = leftFrom;
+		this.leftTo = leftTo;
+		this.rightFrom = rightFrom;
+		this.rightTo = rightTo;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public int getLeftFrom() {
+		return leftFrom;
+	}
+
+	public int getLeftTo() {
+		return leftTo;
+	}
+
+	public int getRightFrom() {
+		return rightFrom;
+	}
+
+	public int getRightTo() {
+		return rightTo;
+	}
+
+	@Override
+	public String toString() {
+		return type + " " + leftFrom + "-" + leftTo + " " + rightFrom + "-" + rightTo;
+	}
+
+}
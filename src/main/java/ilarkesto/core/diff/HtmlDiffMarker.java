@@ -16,7 +16,9 @@ package ilarkesto.core.diff;
 
 import ilarkesto.core.base.Str;
 
-public class HtmlDiffMarker implements DiffMarker {
+import java.io.IOException;
+
+public class HtmlDiffMarker implements StreamingDiffMarker {
 
 	@Override
 	public String same(String s) {
@@ -38,6 +40,43 @@ public class HtmlDiffMarker implements DiffMarker {
 		return removed(oldS) + added(newS);
 	}
 
+	@Override
+	public void start(Appendable out, DiffEdit.Type type) throws IOException {
+		switch (type) {
+			case ADDED:
+				out.append("<span class=\"added\">");
+				break;
+			case REMOVED:
+			case REPLACED:
+				out.append("<span class=\"removed\">");
+				break;
+		}
+	}
+
+	@Override
+	public void text(Appendable out, String s) throws IOException {
+		int len = s.length();
+		for (int i = 0; i < len; i++) {
+			char ch = s.charAt(i);
+			String escape = Str.getHtmlEscape(ch);
+			if (escape == null) {
+				out.append(ch);
+			} else {
+				out.append(escape);
+			}
+		}
+	}
+
+	@Override
+	public void separator(Appendable out) throws IOException {
+		out.append("</span><span class=\"added\">");
+	}
+
+	@Override
+	public void end(Appendable out, DiffEdit.Type type) throws IOException {
+		if (type != DiffEdit.Type.SAME) out.append("</span>");
+	}
+
 	private String toHtml(String s) {
 		return Str.toHtml(s);
 	}
@@ -14,14 +14,14 @@
  */
 package ilarkesto.core.diff;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 public class LineTokenizer implements DiffTokenizer {
 
 	@Override
 	public List<String> tokenize(String s) {
-		List<String> ret = new LinkedList<String>();
+		List<String> ret = new ArrayList<String>();
 		if (s == null) return ret;
 		int len = s.length();
 		int from = 0;
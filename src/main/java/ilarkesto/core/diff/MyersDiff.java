@@ -0,0 +1,255 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.core.diff;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Myers O(ND) difference algorithm with linear space divide and conquer (middle snake). Works on int arrays,
+ * tokens are interned before. The result is a removed-flag per left element and an added-flag per right
+ * element, everything else is common to both sides.
+ */
+public class MyersDiff {
+
+	private int[] left;
+	private int[] right;
+	private boolean[] removed;
+	private boolean[] added;
+
+	public MyersDiff(int[] left, int[] right) {
+		this.left = left;
+		this.right = right;
+		this.removed = new boolean[left.length];
+		this.added = new boolean[right.length];
+	}
+
+	public static MyersDiff forTokens(List<String> left, List<String> right) {
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		return new MyersDiff(intern(left, ids), intern(right, ids));
+	}
+
+	public static MyersDiff forChars(String left, String right) {
+		return new MyersDiff(toInts(left), toInts(right));
+	}
+
+	public MyersDiff diff() {
+		compare(0, left.length, 0, right.length);
+		return this;
+	}
+
+	/**
+	 * Edit script with consecutive ranges of same, added, removed and replaced elements.
+	 */
+	public List<DiffEdit> getEdits() {
+		List<DiffEdit> ret = new ArrayList<DiffEdit>();
+		int leftLen = left.length;
+		int rightLen = right.length;
+		int i = 0;
+		int j = 0;
+		while (i < leftLen || j < rightLen) {
+			int leftFrom = i;
+			int rightFrom = j;
+			if (i < leftLen && j < rightLen && !removed[i] && !added[j]) {
+				while (i < leftLen && j < rightLen && !removed[i] && !added[j]) {
+					i++;
+					j++;
+				}
+				ret.add(new DiffEdit(DiffEdit.Type.SAME, leftFrom, i, rightFrom, j));
+				continue;
+			}
+			while (i < leftLen && removed[i]) {
+				i++;
+			}
+			while (j < rightLen && added[j]) {
+				j++;
+			}
+			DiffEdit.Type type;
+			if (i == leftFrom) {
+				type = DiffEdit.Type.ADDED;
+			} else if (j == rightFrom) {
+				type = DiffEdit.Type.REMOVED;
+			} else {
+				type = DiffEdit.Type.REPLACED;
+			}
+			ret.add(new DiffEdit(type, leftFrom, i, rightFrom, j));
+		}
+		return ret;
+	}
+
+	public boolean isRemoved(int leftIndex) {
+		return removed[leftIndex];
+	}
+
+	public boolean isAdded(int rightIndex) {
+		return added[rightIndex];
+	}
+
+	public int getLeftLength() {
+		return left.length;
+	}
+
+	public int getRightLength() {
+		return right.length;
+	}
+
+	private void compare(int leftFrom, int leftTo, int rightFrom, int rightTo) {
+		while (leftFrom < leftTo && rightFrom < rightTo && left[leftFrom] == right[rightFrom]) {
+			leftFrom++;
+			rightFrom++;
+		}
+		while (leftFrom < leftTo && rightFrom < rightTo && left[leftTo - 1] == right[rightTo - 1]) {
+			leftTo--;
+			rightTo--;
+		}
+		if (leftFrom == leftTo) {
+			for (int i = rightFrom; i < rightTo; i++) {
+				added[i] = true;
+			}
+			return;
+		}
+		if (rightFrom == rightTo) {
+			for (int i = leftFrom; i < leftTo; i++) {
+				removed[i] = true;
+			}
+			return;
+		}
+		bisect(leftFrom, leftTo, rightFrom, rightTo);
+	}
+
+	/**
+	 * Runs the forward and the reverse search simultaneously until they overlap and splits the problem at the
+	 * overlapping point.
+	 */
+	private void bisect(int leftFrom, int leftTo, int rightFrom, int rightTo) {
+		int n = leftTo - leftFrom;
+		int m = rightTo - rightFrom;
+		int maxD = (n + m + 1) / 2;
+		int offset = maxD;
+		int length = 2 * maxD + 2;
+		int[] forward = new int[length];
+		int[] reverse = new int[length];
+		for (int i = 0; i < length; i++) {
+			forward[i] = -1;
+			reverse[i] = -1;
+		}
+		forward[offset + 1] = 0;
+		reverse[offset + 1] = 0;
+		int delta = n - m;
+		boolean front = delta % 2 != 0;
+		int k1start = 0;
+		int k1end = 0;
+		int k2start = 0;
+		int k2end = 0;
+		for (int d = 0; d < maxD; d++) {
+			for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+				int k1offset = offset + k1;
+				int x1;
+				if (k1 == -d || (k1 != d && forward[k1offset - 1] < forward[k1offset + 1])) {
+					x1 = forward[k1offset + 1];
+				} else {
+					x1 = forward[k1offset - 1] + 1;
+				}
+				int y1 = x1 - k1;
+				while (x1 < n && y1 < m && left[leftFrom + x1] == right[rightFrom + y1]) {
+					x1++;
+					y1++;
+				}
+				forward[k1offset] = x1;
+				if (x1 > n) {
+					k1end += 2;
+				} else if (y1 > m) {
+					k1start += 2;
+				} else if (front) {
+					int k2offset = offset + delta - k1;
+					if (k2offset >= 0 && k2offset < length && reverse[k2offset] != -1) {
+						if (x1 >= n - reverse[k2offset]) {
+							split(leftFrom, leftTo, rightFrom, rightTo, x1, y1);
+							return;
+						}
+					}
+				}
+			}
+			for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+				int k2offset = offset + k2;
+				int x2;
+				if (k2 == -d || (k2 != d && reverse[k2offset - 1] < reverse[k2offset + 1])) {
+					x2 = reverse[k2offset + 1];
+				} else {
+					x2 = reverse[k2offset - 1] + 1;
+				}
+				int y2 = x2 - k2;
+				while (x2 < n && y2 < m && left[leftTo - x2 - 1] == right[rightTo - y2 - 1]) {
+					x2++;
+					y2++;
+				}
+				reverse[k2offset] = x2;
+				if (x2 > n) {
+					k2end += 2;
+				} else if (y2 > m) {
+					k2start += 2;
+				} else if (!front) {
+					int k1offset = offset + delta - k2;
+					if (k1offset >= 0 && k1offset < length && forward[k1offset] != -1) {
+						int x1 = forward[k1offset];
+						int y1 = offset + x1 - k1offset;
+						if (x1 >= n - x2) {
+							split(leftFrom, leftTo, rightFrom, rightTo, x1, y1);
+							return;
+						}
+					}
+				}
+			}
+		}
+		// nothing in common
+		for (int i = leftFrom; i < leftTo; i++) {
+			removed[i] = true;
+		}
+		for (int i = rightFrom; i < rightTo; i++) {
+			added[i] = true;
+		}
+	}
+
+	private void split(int leftFrom, int leftTo, int rightFrom, int rightTo, int x, int y) {
+		compare(leftFrom, leftFrom + x, rightFrom, rightFrom + y);
+		compare(leftFrom + x, leftTo, rightFrom + y, rightTo);
+	}
+
+	private static int[] intern(List<String> tokens, Map<String, Integer> ids) {
+		int[] ret = new int[tokens.size()];
+		int i = 0;
+		for (String token : tokens) {
+			Integer id = ids.get(token);
+			if (id == null) {
+				id = Integer.valueOf(ids.size());
+				ids.put(token, id);
+			}
+			ret[i++] = id.intValue();
+		}
+		return ret;
+	}
+
+	private static int[] toInts(String s) {
+		int len = s.length();
+		int[] ret = new int[len];
+		for (int i = 0; i < len; i++) {
+			ret[i] = s.charAt(i);
+		}
+		return ret;
+	}
+
+}
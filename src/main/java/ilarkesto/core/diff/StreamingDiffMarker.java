@@ -0,0 +1,34 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.core.diff;
+
+import java.io.IOException;
+
+/**
+ * A marker which writes directly to the output instead of returning strings. Text of a section is passed in
+ * pieces by <code>text()</code>, surrounded by <code>start()</code> and <code>end()</code>. Replaced sections
+ * have the old and the new text separated by <code>separator()</code>.
+ */
+public interface StreamingDiffMarker extends DiffMarker {
+
+	void start(Appendable out, DiffEdit.Type type) throws IOException;
+
+	void text(Appendable out, String s) throws IOException;
+
+	void separator(Appendable out) throws IOException;
+
+	void end(Appendable out, DiffEdit.Type type) throws IOException;
+
+}
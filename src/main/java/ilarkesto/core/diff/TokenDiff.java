@@ -14,8 +14,13 @@
  */
 package ilarkesto.core.diff;
 
+import java.io.IOException;
 import java.util.List;
 
+/**
+ * Diff of two tokenized texts. Replaced ranges are diffed again with the sub tokenizer, if there is one.
+ * Streaming markers get the tokens one by one, so the tokenizers <code>concat()</code> must be a plain join.
+ */
 public class TokenDiff {
 
 	private List<String> left;
@@ -24,23 +29,17 @@ public class TokenDiff {
 	private DiffTokenizer tokenizer;
 	private DiffTokenizer subTokenizer;
 
-	private List<String> lcs;
-	private int lcsLen;
-	private int leftLen;
-	private int rightLen;
-
+	private List<DiffEdit> edits;
 	private StringBuilder out = new StringBuilder();
-	private String chLcs;
-	private String chLeft;
-	private String chRight;
-
-	private boolean skipBurn;
-	private String removed;
 
 	public static String combinedDiff(String left, String right, DiffMarker marker) {
 		return new TokenDiff(left, right, marker, new LineTokenizer(), new WordTokenizer()).diff().toString();
 	}
 
+	public static void combinedDiff(String left, String right, DiffMarker marker, Appendable out) throws IOException {
+		new TokenDiff(left, right, marker, new LineTokenizer(), new WordTokenizer()).diff(out);
+	}
+
 	public TokenDiff(String left, String right, DiffMarker marker, DiffTokenizer tokenizer) {
 		this(left, right, marker, tokenizer, null);
 	}
@@ -54,151 +53,94 @@ public class TokenDiff {
 	}
 
 	public TokenDiff diff() {
-		lcs = LongestCommonSubsequenceList.execute(left, right);
-		updateLengths();
-
-		while (skipBurn || (lcsLen > 0 && leftLen > 0 && rightLen > 0)) {
-			burnNext();
+		try {
+			diff(out);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
 		}
-		if (removed != null) {
-			out.append(marker.removed(removed));
-			removed = null;
-		}
-		if (leftLen == 0 && rightLen == 0) return this;
-		if (leftLen == 0) {
-			out.append(marker.added(tokenizer.concat(right)));
-			return this;
-		}
-		if (rightLen == 0) {
-			out.append(marker.removed(tokenizer.concat(left)));
-			return this;
-		}
-		if (lcsLen == 0) {
-			outReplaced(tokenizer.concat(left), tokenizer.concat(right));
-			return this;
-		}
-
 		return this;
 	}
 
-	private void burnNext() {
-		if (!nextChar()) return;
-		if (chLcs.equals(chLeft) && chLcs.equals(chRight)) {
-			if (removed != null) {
-				out.append(marker.removed(removed));
-				removed = null;
+	public void diff(Appendable out) throws IOException {
+		for (DiffEdit edit : getEdits()) {
+			switch (edit.getType()) {
+				case SAME:
+					append(out, DiffEdit.Type.SAME, left, edit.getLeftFrom(), edit.getLeftTo());
+					break;
+				case ADDED:
+					append(out, DiffEdit.Type.ADDED, right, edit.getRightFrom(), edit.getRightTo());
+					break;
+				case REMOVED:
+					append(out, DiffEdit.Type.REMOVED, left, edit.getLeftFrom(), edit.getLeftTo());
+					break;
+				case REPLACED:
+					appendReplaced(out, edit);
+					break;
 			}
-			burnSame();
-			return;
-		}
-		if (chLcs.equals(chLeft)) {
-			burnAdded();
-			return;
 		}
-		burnRemoved();
 	}
 
-	private void burnRemoved() {
-		StringBuilder sb = new StringBuilder();
-		while (!chLcs.equals(chLeft)) {
-			sb.append(chLeft);
-			if (!nextCharLeft()) break;
-		}
-		removed = sb.toString();
-		skipBurn = true;
+	public List<DiffEdit> getEdits() {
+		if (edits == null) edits = MyersDiff.forTokens(left, right).diff().getEdits();
+		return edits;
 	}
 
-	private void burnAdded() {
-		StringBuilder sb = new StringBuilder();
-		while (chLcs.equals(chLeft) && !chLcs.equals(chRight)) {
-			sb.append(chRight);
-			if (!nextCharRight()) break;
-		}
-		String added = sb.toString();
-		if (removed != null) {
-			outReplaced(removed, added);
-			removed = null;
-		} else {
-			out.append(marker.added(added));
-		}
-		skipBurn = true;
+	public List<String> getLeftTokens() {
+		return left;
 	}
 
-	private void outReplaced(String removed, String added) {
-		if (subTokenizer == null) {
-			out.append(marker.replaced(removed, added));
-			return;
-		}
-		TokenDiff diff = new TokenDiff(removed, added, marker, subTokenizer);
-		diff.diff();
-		out.append(diff.toString());
+	public List<String> getRightTokens() {
+		return right;
 	}
 
-	private void burnSame() {
-		StringBuilder sb = new StringBuilder();
-		boolean nextCharAvailable = false;
-		while (chLcs.equals(chLeft) && chLcs.equals(chRight)) {
-			sb.append(chLcs);
-			nextCharAvailable = nextChar();
-			if (!nextCharAvailable) break;
+	private void append(Appendable out, DiffEdit.Type type, List<String> tokens, int from, int to)
+			throws IOException {
+		if (marker instanceof StreamingDiffMarker) {
+			StreamingDiffMarker streamingMarker = (StreamingDiffMarker) marker;
+			streamingMarker.start(out, type);
+			appendTokens(out, streamingMarker, tokens, from, to);
+			streamingMarker.end(out, type);
+			return;
 		}
-		out.append(marker.same(sb.toString()));
-		if (nextCharAvailable) skipBurn = true;
-	}
-
-	private boolean nextChar() {
-		if (skipBurn) {
-			skipBurn = false;
-			return true;
+		String s = tokenizer.concat(tokens.subList(from, to));
+		switch (type) {
+			case SAME:
+				out.append(marker.same(s));
+				break;
+			case ADDED:
+				out.append(marker.added(s));
+				break;
+			case REMOVED:
+				out.append(marker.removed(s));
+				break;
 		}
-
-		if (lcsLen == 0) return false;
-		if (leftLen == 0) return false;
-		if (rightLen == 0) return false;
-
-		chLcs = lcs.get(0);
-		chLeft = left.get(0);
-		chRight = right.get(0);
-
-		lcs.remove(0);
-		left.remove(0);
-		right.remove(0);
-
-		lcsLen--;
-		leftLen--;
-		rightLen--;
-
-		return true;
 	}
 
-	private boolean nextCharRight() {
-		if (rightLen == 0) return false;
-
-		chRight = right.get(0);
-
-		right.remove(0);
-
-		rightLen--;
-
-		return true;
-	}
-
-	private boolean nextCharLeft() {
-		if (leftLen == 0) return false;
-
-		chLeft = left.get(0);
-
-		left.remove(0);
-
-		leftLen--;
-
-		return true;
+	private void appendReplaced(Appendable out, DiffEdit edit) throws IOException {
+		if (subTokenizer != null) {
+			String removed = tokenizer.concat(left.subList(edit.getLeftFrom(), edit.getLeftTo()));
+			String added = tokenizer.concat(right.subList(edit.getRightFrom(), edit.getRightTo()));
+			new TokenDiff(removed, added, marker, subTokenizer).diff(out);
+			return;
+		}
+		if (marker instanceof StreamingDiffMarker) {
+			StreamingDiffMarker streamingMarker = (StreamingDiffMarker) marker;
+			streamingMarker.start(out, DiffEdit.Type.REPLACED);
+			appendTokens(out, streamingMarker, left, edit.getLeftFrom(), edit.getLeftTo());
+			streamingMarker.separator(out);
+			appendTokens(out, streamingMarker, right, edit.getRightFrom(), edit.getRightTo());
+			streamingMarker.end(out, DiffEdit.Type.REPLACED);
+			return;
+		}
+		out.append(marker.replaced(tokenizer.concat(left.subList(edit.getLeftFrom(), edit.getLeftTo())),
+			tokenizer.concat(right.subList(edit.getRightFrom(), edit.getRightTo()))));
 	}
 
-	private void updateLengths() {
-		leftLen = left.size();
-		rightLen = right.size();
-		lcsLen = lcs.size();
+	private static void appendTokens(Appendable out, StreamingDiffMarker marker, List<String> tokens, int from,
+			int to) throws IOException {
+		for (int i = from; i < to; i++) {
+			marker.text(out, tokens.get(i));
+		}
 	}
 
 	@Override
@@ -14,7 +14,9 @@
  */
 package ilarkesto.core.diff;
 
-public class TxtDiffMarker implements DiffMarker {
+import java.io.IOException;
+
+public class TxtDiffMarker implements StreamingDiffMarker {
 
 	@Override
 	public String same(String s) {
@@ -36,4 +38,34 @@ public class TxtDiffMarker implements DiffMarker {
 		return "[" + oldS + "|" + newS + "]";
 	}
 
+	@Override
+	public void start(Appendable out, DiffEdit.Type type) throws IOException {
+		switch (type) {
+			case ADDED:
+				out.append("[+");
+				break;
+			case REMOVED:
+				out.append("[-");
+				break;
+			case REPLACED:
+				out.append('[');
+				break;
+		}
+	}
+
+	@Override
+	public void text(Appendable out, String s) throws IOException {
+		out.append(s);
+	}
+
+	@Override
+	public void separator(Appendable out) throws IOException {
+		out.append('|');
+	}
+
+	@Override
+	public void end(Appendable out, DiffEdit.Type type) throws IOException {
+		if (type != DiffEdit.Type.SAME) out.append(']');
+	}
+
 }
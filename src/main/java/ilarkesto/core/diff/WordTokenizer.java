@@ -14,14 +14,14 @@
  */
 package ilarkesto.core.diff;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 public class WordTokenizer implements DiffTokenizer {
 
 	@Override
 	public List<String> tokenize(String s) {
-		List<String> ret = new LinkedList<String>();
+		List<String> ret = new ArrayList<String>();
 		if (s == null) return ret;
 		boolean word = false;
 		StringBuilder token = null;
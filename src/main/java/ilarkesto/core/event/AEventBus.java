@@ -16,7 +16,11 @@ package ilarkesto.core.event;
 
 import ilarkesto.core.logging.Log;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public abstract class AEventBus implements EventBus {
 
@@ -24,14 +28,138 @@ public abstract class AEventBus implements EventBus {
 
 	private static Log log = Log.get(AEventBus.class);
 
+	private List potentialEventHandlers;
+	private Map<Class, List> handlersByEventType = new HashMap<Class, List>();
+	private int handlersVersion;
+
+	private QuietEventDispatcher quietEventDispatcher;
+	private List<Event> quietEvents = new ArrayList<Event>();
+
 	protected abstract Collection getPotentialEventHandlers();
 
 	@Override
 	public void fireEvent(Event event) {
-		if (!(event instanceof Quiet)) log.debug("Firing event:", event);
-		for (Object handler : getPotentialEventHandlers()) {
+		if (event instanceof Quiet) {
+			if (quietEventDispatcher != null) {
+				queueQuietEvent(event);
+				return;
+			}
+		} else {
+			log.debug("Firing event:", event);
+		}
+		dispatch(event);
+	}
+
+	private void dispatch(Event event) {
+		for (Object handler : getEventHandlers(event)) {
 			event.tryToGetHandled(handler);
 		}
 	}
 
+	/**
+	 * Gets the handlers for the type of the event. If <code>isCachingHandlers()</code>, they are computed once per
+	 * event type and cached until <code>invalidateEventHandlers()</code>.
+	 */
+	protected List getEventHandlers(Event event) {
+		if (!isCachingHandlers()) return new ArrayList(getPotentialEventHandlers());
+		boolean typed = event instanceof TypedEvent;
+		List potential;
+		int version;
+		synchronized (this) {
+			if (typed) {
+				List handlers = handlersByEventType.get(event.getClass());
+				if (handlers != null) return handlers;
+			}
+			potential = potentialEventHandlers;
+			version = handlersVersion;
+		}
+
+		// computed outside the lock, getPotentialEventHandlers() may trigger wiring
+		if (potential == null) potential = new ArrayList(getPotentialEventHandlers());
+		List handlers = potential;
+		if (typed) {
+			TypedEvent typedEvent = (TypedEvent) event;
+			handlers = new ArrayList();
+			for (Object handler : potential) {
+				if (typedEvent.isHandler(handler)) handlers.add(handler);
+			}
+		}
+
+		synchronized (this) {
+			if (version == handlersVersion) {
+				potentialEventHandlers = potential;
+				if (typed) handlersByEventType.put(event.getClass(), handlers);
+			}
+		}
+		return handlers;
+	}
+
+	/**
+	 * Subclasses which call <code>invalidateEventHandlers()</code> whenever the potential event handlers change
+	 * can enable caching of the handlers per event type.
+	 */
+	protected boolean isCachingHandlers() {
+		return false;
+	}
+
+	/**
+	 * Needs to be called when the potential event handlers changed, if <code>isCachingHandlers()</code>.
+	 */
+	public synchronized void invalidateEventHandlers() {
+		handlersVersion++;
+		potentialEventHandlers = null;
+		handlersByEventType.clear();
+	}
+
+	// --- quiet events ---
+
+	/**
+	 * Dispatches a batch of queued events later, for example in a deferred GWT command or an executor.
+	 */
+	public static interface QuietEventDispatcher {
+
+		void dispatchLater(Runnable batch);
+
+	}
+
+	/**
+	 * Activates asynchronous dispatching for events marked as <code>Quiet</code>. They are queued and dispatched
+	 * in batches by the given dispatcher. <code>null</code> dispatches them immediately again.
+	 */
+	public void setQuietEventDispatcher(QuietEventDispatcher quietEventDispatcher) {
+		if (quietEventDispatcher == null) flushQuietEvents();
+		this.quietEventDispatcher = quietEventDispatcher;
+	}
+
+	/**
+	 * Dispatches all queued quiet events in the current thread.
+	 */
+	public void flushQuietEvents() {
+		List<Event> batch;
+		synchronized (quietEvents) {
+			if (quietEvents.isEmpty()) return;
+			batch = new ArrayList<Event>(quietEvents);
+			quietEvents.clear();
+		}
+		for (Event event : batch) {
+			dispatch(event);
+		}
+	}
+
+	private void queueQuietEvent(Event event) {
+		boolean first;
+		synchronized (quietEvents) {
+			first = quietEvents.isEmpty();
+			quietEvents.add(event);
+		}
+		if (!first) return;
+		quietEventDispatcher.dispatchLater(new Runnable() {
+
+			@Override
+			public void run() {
+				flushQuietEvents();
+			}
+		});
+	}
+
 }
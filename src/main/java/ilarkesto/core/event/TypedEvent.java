@@ -0,0 +1,28 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.core.event;
+
+/**
+ * An event which can tell its handlers by their type. The event bus uses this to index the handlers per event
+ * type, instead of offering each event to every component.
+ */
+public interface TypedEvent extends Event {
+
+	/**
+	 * Must only depend on the type of the handler.
+	 */
+	boolean isHandler(Object handler);
+
+}
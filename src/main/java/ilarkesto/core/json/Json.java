@@ -1,5 +1,6 @@
 package ilarkesto.core.json;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -8,57 +9,69 @@ import java.util.Map;
 public class Json {
 
 	public static String valueToString(Object value) {
-		if (value == null) return "null";
-		if (value instanceof String) return '"' + escapeString((String) value) + '"';
-		if (value instanceof Iterable) {
-			StringBuilder sb = new StringBuilder();
-			sb.append('[');
-			Iterable list = (Iterable) value;
-			boolean first = true;
-			for (Object element : list) {
-				if (first) {
-					first = false;
-				} else {
-					sb.append(',');
-				}
-				sb.append(valueToString(element));
-			}
-			sb.append(']');
-			return sb.toString();
-		}
-		return value.toString();
+		StringBuilder sb = new StringBuilder();
+		new JsonWriter(sb).value(value);
+		return sb.toString();
 	}
 
 	public static String escapeString(String s) {
 		if (s == null) return "";
-		s = s.replace("\"", "\\\"");
-		s = s.replace("\t", "\\\t");
-		s = s.replace("\r", "\\\r");
-		s = s.replace("\n", "\\\n");
-		s = s.replace("/", "\\/");
-		s = s.replace("\\", "\\\\");
-		return s;
+		StringBuilder sb = new StringBuilder(s.length() + 16);
+		try {
+			JsonWriter.escape(s, sb);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+		return sb.toString();
 	}
 
+	/**
+	 * Decodes the escape sequences of a json string (without quotes).
+	 */
 	public static String parseString(String s) {
-		int idx = s.indexOf("\\u");
-		while (idx >= 0) {
-			String code = s.substring(idx + 2, idx + 6);
-			char ch = (char) Integer.parseInt(code, 16);
-			s = s.replace("\\u" + code, String.valueOf(ch));
-			idx = s.indexOf("\\u", idx);
+		int idx = s.indexOf('\\');
+		if (idx < 0) return s;
+		int len = s.length();
+		StringBuilder sb = new StringBuilder(len);
+		sb.append(s, 0, idx);
+		for (int i = idx; i < len; i++) {
+			char ch = s.charAt(i);
+			if (ch != '\\' || i + 1 == len) {
+				sb.append(ch);
+				continue;
+			}
+			ch = s.charAt(++i);
+			switch (ch) {
+				case 'n':
+					sb.append('\n');
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'r':
+					sb.append('\r');
+					break;
+				case 'b':
+					sb.append('\b');
+					break;
+				case 'f':
+					sb.append('\f');
+					break;
+				case 'u':
+					sb.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
+					i += 4;
+					break;
+				default:
+					sb.append(ch);
+			}
 		}
-		s = s.replace("\\\\", "\\");
-		s = s.replace("\\\"", "\"");
-		s = s.replace("\\t", "\t");
-		s = s.replace("\\r", "\r");
-		s = s.replace("\\n", "\n");
-		s = s.replace("\\/", "/");
-		return s;
+		return sb.toString();
 	}
 
 	public static Number parseNumber(String s) {
-		return Long.parseLong(s);
+		JsonParser parser = new JsonParser(s);
+		if (parser.next() != JsonParser.Event.NUMBER) throw new ParseException("Expecting number", s, 0);
+		return parser.getNumber();
 	}
 
 	public static boolean isWhitespace(char c) {
@@ -84,25 +97,4 @@ public class Json {
 		return value.toString();
 	}
 
-	static int getFirstNonWhitespaceIndex(String s, int offset) {
-		int len = s.length();
-		for (int i = offset; i < len; i++) {
-			if (!isWhitespace(s.charAt(i))) return i;
-		}
-		return -1;
-	}
-
-	static int getFirstQuoting(String s, int offset) {
-		int len = s.length();
-		for (int i = offset; i < len; i++) {
-			char ch = s.charAt(i);
-			if (ch == '\\') {
-				i++;
-				continue;
-			}
-			if (ch == '"') return i;
-		}
-		return -1;
-	}
-
 }
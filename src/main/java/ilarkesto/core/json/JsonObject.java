@@ -10,16 +10,19 @@ import java.util.Map;
 public class JsonObject {
 
 	private Map<String, Object> elements = new LinkedHashMap<String, Object>();
-	private int idx = -1;
 
 	public JsonObject() {}
 
-	private JsonObject(String json, int offset) {
-		parse(json, offset);
+	public JsonObject(String json) {
+		this(new JsonParser(json));
 	}
 
-	public JsonObject(String json) {
-		this(json, 0);
+	/**
+	 * Reads the next object from the parser.
+	 */
+	public JsonObject(JsonParser parser) {
+		if (parser.getEvent() != JsonParser.Event.START_OBJECT) parser.next();
+		parser.readObject(this);
 	}
 
 	public JsonObject(Map<?, ?> map) {
@@ -101,120 +104,24 @@ public class JsonObject {
 		return toFormatedString(0);
 	}
 
-	@Override
-	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append('{');
-		boolean first = true;
+	public void write(JsonWriter out) {
+		out.beginObject();
 		for (Map.Entry<String, Object> element : elements.entrySet()) {
-			if (first) {
-				first = false;
-			} else {
-				sb.append(',');
-			}
-			sb.append('"').append(Json.escapeString(element.getKey())).append("\":");
-			sb.append(Json.valueToString(element.getValue()));
+			out.name(element.getKey());
+			out.value(element.getValue());
 		}
-		sb.append('}');
-		return sb.toString();
+		out.endObject();
 	}
 
-	// --- parsing ---
-
-	int parse(String json, int offset) {
-		idx = offset;
-		parseWhitespace(json, "'{'");
-		if (json.charAt(idx) != '{') throw new ParseException("Expecting '{'", json, idx);
-		idx++;
-		parseWhitespace(json, "elements or '}'");
-		boolean first = true;
-		while (json.charAt(idx) != '}') {
-			if (first) {
-				first = false;
-			} else {
-				if (json.charAt(idx) == ',') {
-					idx++;
-				} else {
-					throw new ParseException("Expecting ','", json, idx);
-				}
-			}
-			parseElement(json);
-			parseWhitespace(json, "',' or '}'");
-		}
-		idx++;
-		return idx;
-	}
-
-	private void parseWhitespace(String json, String expectation) {
-		idx = Json.getFirstNonWhitespaceIndex(json, idx);
-		if (idx < 0) throw new ParseException("Expecting " + expectation, json, idx);
-	}
-
-	private void parseElement(String json) {
-		if (json.charAt(idx) != '"') throw new ParseException("Expecting '\"'", json, idx);
-		idx++;
-		int nameEndIdx = Json.getFirstQuoting(json, idx);
-		if (nameEndIdx < 0) throw new ParseException("Unclosed element name", json, idx);
-		String name = json.substring(idx, nameEndIdx);
-		idx = nameEndIdx + 1;
-		parseWhitespace(json, "':'");
-		if (json.charAt(idx) != ':') throw new ParseException("Expecting ':'", json, idx);
-		idx++;
-		parseWhitespace(json, "element value");
-		Object value = parseValue(json);
-		put(name, value);
-	}
-
-	private Object parseValue(String json) {
-		if (json.startsWith("null", idx)) {
-			idx += 4;
-			return null;
-		} else if (json.startsWith("true", idx)) {
-			idx += 4;
-			return true;
-		} else if (json.startsWith("false", idx)) {
-			idx += 5;
-			return false;
-		} else if (json.charAt(idx) == '"') {
-			idx++;
-			int valueEndIdx = Json.getFirstQuoting(json, idx);
-			if (valueEndIdx < 0) throw new ParseException("Unclosed element string value", json, idx);
-			String value = json.substring(idx, valueEndIdx);
-			idx = valueEndIdx + 1;
-			return Json.parseString(value);
-		} else if (json.charAt(idx) == '{') {
-			JsonObject value = new JsonObject(json, idx);
-			idx = value.idx;
-			return value;
-		} else if (json.charAt(idx) == '[') {
-			List list = new ArrayList();
-			idx++;
-			while (true) {
-				parseWhitespace(json, "array");
-				if (json.charAt(idx) == ']') break;
-				Object value = parseValue(json);
-				list.add(value);
-				parseWhitespace(json, "array");
-				if (json.charAt(idx) == ']') break;
-				if (json.charAt(idx) != ',') throw new ParseException("Expectint array separator ','", json, idx);
-				idx++;
-			}
-			idx++;
-			return list;
-		} else {
-			int len = json.length();
-			int endIdx = idx;
-			while (endIdx < len) {
-				endIdx++;
-				char endCh = json.charAt(endIdx);
-				if (endCh == ',' || endCh == '}' || endCh == ']' || Json.isWhitespace(endCh)) {
-					break;
-				}
-			}
-			String number = json.substring(idx, endIdx);
-			idx = endIdx;
-			return Json.parseNumber(number);
-		}
+	public void write(Appendable out) {
+		write(new JsonWriter(out));
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		write(sb);
+		return sb.toString();
 	}
 
 }
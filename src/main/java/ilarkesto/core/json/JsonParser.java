@@ -0,0 +1,392 @@
+package ilarkesto.core.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming pull parser. Reads the json through a small buffer and decodes names and strings into a reusable
+ * char buffer, so names can be compared by <code>isName()</code> without creating strings.
+ */
+public class JsonParser {
+
+	public static enum Event {
+		START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, NAME, STRING, NUMBER, TRUE, FALSE, NULL, END_DOCUMENT
+	}
+
+	public static interface Input {
+
+		/**
+		 * Like <code>Reader.read(char[], int, int)</code>, returns -1 at the end.
+		 */
+		int read(char[] buffer, int offset, int length) throws IOException;
+
+	}
+
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_OBJECT = 2;
+	private static final int OBJECT_AFTER_NAME = 3;
+	private static final int OBJECT_AFTER_VALUE = 4;
+	private static final int EMPTY_ARRAY = 5;
+	private static final int ARRAY_AFTER_VALUE = 6;
+
+	private Input input;
+	private String json;
+
+	private char[] buffer;
+	private int pos;
+	private int limit;
+	private int bufferOffset;
+
+	private int[] stack = new int[32];
+	private int depth;
+
+	private Event event;
+	private char[] text = new char[64];
+	private int textLength;
+
+	public JsonParser(String json) {
+		this.json = json;
+		this.buffer = json.toCharArray();
+		this.limit = buffer.length;
+		stack[depth++] = EMPTY_DOCUMENT;
+	}
+
+	public JsonParser(Input input) {
+		this.input = input;
+		this.buffer = new char[8192];
+		stack[depth++] = EMPTY_DOCUMENT;
+	}
+
+	public Event next() {
+		if (event == Event.END_DOCUMENT) return event;
+		int state = stack[depth - 1];
+		int ch;
+		switch (state) {
+			case EMPTY_DOCUMENT:
+				stack[depth - 1] = NONEMPTY_DOCUMENT;
+				return event = startValue(nextNonWhitespace("value"));
+			case NONEMPTY_DOCUMENT:
+				ch = nextNonWhitespace(null);
+				if (ch >= 0) throw error("Unexpected content after document");
+				return event = Event.END_DOCUMENT;
+			case EMPTY_OBJECT:
+				ch = nextNonWhitespace("name or '}'");
+				if (ch == '}') return event = pop(Event.END_OBJECT);
+				return event = startName(ch);
+			case OBJECT_AFTER_VALUE:
+				ch = nextNonWhitespace("',' or '}'");
+				if (ch == '}') return event = pop(Event.END_OBJECT);
+				if (ch != ',') throw error("Expecting ',' or '}'");
+				return event = startName(nextNonWhitespace("name"));
+			case OBJECT_AFTER_NAME:
+				if (nextNonWhitespace("':'") != ':') throw error("Expecting ':'");
+				stack[depth - 1] = OBJECT_AFTER_VALUE;
+				return event = startValue(nextNonWhitespace("value"));
+			case EMPTY_ARRAY:
+				ch = nextNonWhitespace("value or ']'");
+				if (ch == ']') return event = pop(Event.END_ARRAY);
+				stack[depth - 1] = ARRAY_AFTER_VALUE;
+				return event = startValue(ch);
+			case ARRAY_AFTER_VALUE:
+				ch = nextNonWhitespace("',' or ']'");
+				if (ch == ']') return event = pop(Event.END_ARRAY);
+				if (ch != ',') throw error("Expecting ',' or ']'");
+				return event = startValue(nextNonWhitespace("value"));
+		}
+		throw new IllegalStateException("Illegal parser state: " + state);
+	}
+
+	public Event getEvent() {
+		return event;
+	}
+
+	/**
+	 * Checks the current name without creating a string.
+	 */
+	public boolean isName(String name) {
+		if (event != Event.NAME) return false;
+		if (name.length() != textLength) return false;
+		for (int i = 0; i < textLength; i++) {
+			if (name.charAt(i) != text[i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Text of the current name, string or number.
+	 */
+	public String getString() {
+		return new String(text, 0, textLength);
+	}
+
+	public int getTextLength() {
+		return textLength;
+	}
+
+	/**
+	 * The buffer holding the text of the current name, string or number. Only valid until the next call of
+	 * <code>next()</code>.
+	 */
+	public char[] getTextBuffer() {
+		return text;
+	}
+
+	public Number getNumber() {
+		for (int i = 0; i < textLength; i++) {
+			char ch = text[i];
+			if (ch == '.' || ch == 'e' || ch == 'E') return Double.valueOf(getString());
+		}
+		if (textLength < 19) return Long.valueOf(getLong());
+		try {
+			return Long.valueOf(Long.parseLong(getString()));
+		} catch (NumberFormatException ex) {
+			return Double.valueOf(getString());
+		}
+	}
+
+	public long getLong() {
+		if (textLength >= 19) return Long.parseLong(getString());
+		long value = 0;
+		boolean negative = false;
+		for (int i = 0; i < textLength; i++) {
+			char ch = text[i];
+			if (i == 0 && ch == '-') {
+				negative = true;
+				continue;
+			}
+			if (ch < '0' || ch > '9') return Long.parseLong(getString());
+			value = value * 10 + (ch - '0');
+		}
+		return negative ? -value : value;
+	}
+
+	public double getDouble() {
+		return Double.parseDouble(getString());
+	}
+
+	/**
+	 * Reads the complete value starting with the current event: <code>JsonObject</code>, <code>List</code>,
+	 * <code>String</code>, <code>Number</code>, <code>Boolean</code> or <code>null</code>.
+	 */
+	public Object readValue() {
+		switch (event) {
+			case START_OBJECT:
+				JsonObject object = new JsonObject();
+				readObject(object);
+				return object;
+			case START_ARRAY:
+				List list = new ArrayList();
+				while (next() != Event.END_ARRAY) {
+					list.add(readValue());
+				}
+				return list;
+			case STRING:
+				return getString();
+			case NUMBER:
+				return getNumber();
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			case NULL:
+				return null;
+		}
+		throw error("Expecting value, but got " + event);
+	}
+
+	void readObject(JsonObject object) {
+		if (event != Event.START_OBJECT) throw error("Expecting '{'");
+		while (next() != Event.END_OBJECT) {
+			String name = getString();
+			next();
+			object.put(name, readValue());
+		}
+	}
+
+	/**
+	 * Skips the value starting with the current event.
+	 */
+	public void skipValue() {
+		if (event != Event.START_OBJECT && event != Event.START_ARRAY) return;
+		int count = 1;
+		while (count > 0) {
+			Event e = next();
+			if (e == Event.START_OBJECT || e == Event.START_ARRAY) {
+				count++;
+			} else if (e == Event.END_OBJECT || e == Event.END_ARRAY) {
+				count--;
+			} else if (e == Event.END_DOCUMENT) {
+				throw error("Unexpected end of document");
+			}
+		}
+	}
+
+	public int getPosition() {
+		return bufferOffset + pos;
+	}
+
+	// --- scanning ---
+
+	private Event startValue(int ch) {
+		switch (ch) {
+			case '{':
+				push(EMPTY_OBJECT);
+				return Event.START_OBJECT;
+			case '[':
+				push(EMPTY_ARRAY);
+				return Event.START_ARRAY;
+			case '"':
+				readString();
+				return Event.STRING;
+			case 't':
+				readLiteral("rue");
+				return Event.TRUE;
+			case 'f':
+				readLiteral("alse");
+				return Event.FALSE;
+			case 'n':
+				readLiteral("ull");
+				return Event.NULL;
+		}
+		if (ch == '-' || (ch >= '0' && ch <= '9')) {
+			readNumber((char) ch);
+			return Event.NUMBER;
+		}
+		throw error("Expecting value");
+	}
+
+	private Event startName(int ch) {
+		if (ch != '"') throw error("Expecting '\"'");
+		readString();
+		stack[depth - 1] = OBJECT_AFTER_NAME;
+		return Event.NAME;
+	}
+
+	private void readString() {
+		textLength = 0;
+		while (true) {
+			int ch = read();
+			if (ch < 0) throw error("Unclosed string");
+			if (ch == '"') return;
+			if (ch == '\\') {
+				ch = read();
+				switch (ch) {
+					case 'n':
+						ch = '\n';
+						break;
+					case 't':
+						ch = '\t';
+						break;
+					case 'r':
+						ch = '\r';
+						break;
+					case 'b':
+						ch = '\b';
+						break;
+					case 'f':
+						ch = '\f';
+						break;
+					case 'u':
+						ch = 0;
+						for (int i = 0; i < 4; i++) {
+							int digit = Character.digit((char) read(), 16);
+							if (digit < 0) throw error("Illegal unicode escape sequence");
+							ch = (ch << 4) + digit;
+						}
+						break;
+					case -1:
+						throw error("Unclosed string");
+				}
+			}
+			appendText((char) ch);
+		}
+	}
+
+	private void readNumber(char first) {
+		textLength = 0;
+		appendText(first);
+		while (true) {
+			int ch = peek();
+			if ((ch >= '0' && ch <= '9') || ch == '.' || ch == 'e' || ch == 'E' || ch == '-' || ch == '+') {
+				appendText((char) read());
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void readLiteral(String rest) {
+		int len = rest.length();
+		for (int i = 0; i < len; i++) {
+			if (read() != rest.charAt(i)) throw error("Unknown literal");
+		}
+	}
+
+	private void appendText(char ch) {
+		if (textLength == text.length) {
+			char[] newText = new char[text.length * 2];
+			System.arraycopy(text, 0, newText, 0, textLength);
+			text = newText;
+		}
+		text[textLength++] = ch;
+	}
+
+	private int nextNonWhitespace(String expectation) {
+		while (true) {
+			int ch = read();
+			if (ch < 0) {
+				if (expectation == null) return ch;
+				throw error("Expecting " + expectation);
+			}
+			if (!Json.isWhitespace((char) ch)) return ch;
+		}
+	}
+
+	private int read() {
+		if (pos == limit && !fill()) return -1;
+		return buffer[pos++];
+	}
+
+	private int peek() {
+		if (pos == limit && !fill()) return -1;
+		return buffer[pos];
+	}
+
+	private boolean fill() {
+		if (input == null) return false;
+		bufferOffset += limit;
+		pos = 0;
+		limit = 0;
+		int count;
+		try {
+			count = input.read(buffer, 0, buffer.length);
+		} catch (IOException ex) {
+			throw new RuntimeException("Reading json failed", ex);
+		}
+		if (count <= 0) return false;
+		limit = count;
+		return true;
+	}
+
+	private void push(int state) {
+		if (depth == stack.length) {
+			int[] newStack = new int[stack.length * 2];
+			System.arraycopy(stack, 0, newStack, 0, depth);
+			stack = newStack;
+		}
+		stack[depth++] = state;
+	}
+
+	private Event pop(Event end) {
+		depth--;
+		return end;
+	}
+
+	private ParseException error(String message) {
+		if (json != null) return new ParseException(message, json, getPosition());
+		return new ParseException(message, getPosition());
+	}
+
+}
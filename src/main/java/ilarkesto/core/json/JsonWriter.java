@@ -0,0 +1,208 @@
+package ilarkesto.core.json;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Streaming writer. Writes names, values and escaped strings directly to the output, without creating
+ * intermediate strings.
+ */
+public class JsonWriter {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private Appendable out;
+
+	private boolean[] empty = new boolean[32];
+	private int depth;
+	private boolean afterName;
+
+	public JsonWriter(Appendable out) {
+		this.out = out;
+	}
+
+	public JsonWriter beginObject() {
+		beforeValue();
+		append('{');
+		push();
+		return this;
+	}
+
+	public JsonWriter endObject() {
+		depth--;
+		append('}');
+		return this;
+	}
+
+	public JsonWriter beginArray() {
+		beforeValue();
+		append('[');
+		push();
+		return this;
+	}
+
+	public JsonWriter endArray() {
+		depth--;
+		append(']');
+		return this;
+	}
+
+	public JsonWriter name(String name) {
+		beforeValue();
+		string(name);
+		append(':');
+		afterName = true;
+		return this;
+	}
+
+	public JsonWriter value(String value) {
+		if (value == null) return nullValue();
+		beforeValue();
+		string(value);
+		return this;
+	}
+
+	public JsonWriter value(long value) {
+		beforeValue();
+		append(String.valueOf(value));
+		return this;
+	}
+
+	public JsonWriter value(boolean value) {
+		beforeValue();
+		append(value ? "true" : "false");
+		return this;
+	}
+
+	public JsonWriter nullValue() {
+		beforeValue();
+		append("null");
+		return this;
+	}
+
+	/**
+	 * Writes strings, numbers, booleans, <code>JsonObject</code>s, maps and iterables. Other objects are
+	 * written as string.
+	 */
+	public JsonWriter value(Object value) {
+		if (value == null) return nullValue();
+		if (value instanceof String) return value((String) value);
+		if (value instanceof Number || value instanceof Boolean) {
+			beforeValue();
+			append(value.toString());
+			return this;
+		}
+		if (value instanceof JsonObject) {
+			((JsonObject) value).write(this);
+			return this;
+		}
+		if (value instanceof Map) {
+			beginObject();
+			for (Map.Entry entry : ((Map<?, ?>) value).entrySet()) {
+				name(String.valueOf(entry.getKey()));
+				value(entry.getValue());
+			}
+			return endObject();
+		}
+		if (value instanceof Iterable) {
+			beginArray();
+			for (Object element : (Iterable) value) {
+				value(element);
+			}
+			return endArray();
+		}
+		return value(value.toString());
+	}
+
+	private void beforeValue() {
+		if (afterName) {
+			afterName = false;
+			return;
+		}
+		if (depth == 0) return;
+		if (empty[depth - 1]) {
+			empty[depth - 1] = false;
+		} else {
+			append(',');
+		}
+	}
+
+	private void push() {
+		if (depth == empty.length) {
+			boolean[] newEmpty = new boolean[empty.length * 2];
+			System.arraycopy(empty, 0, newEmpty, 0, depth);
+			empty = newEmpty;
+		}
+		empty[depth++] = true;
+	}
+
+	private void string(String s) {
+		try {
+			out.append('"');
+			escape(s, out);
+			out.append('"');
+		} catch (IOException ex) {
+			throw new RuntimeException("Writing json failed", ex);
+		}
+	}
+
+	private void append(char ch) {
+		try {
+			out.append(ch);
+		} catch (IOException ex) {
+			throw new RuntimeException("Writing json failed", ex);
+		}
+	}
+
+	private void append(String s) {
+		try {
+			out.append(s);
+		} catch (IOException ex) {
+			throw new RuntimeException("Writing json failed", ex);
+		}
+	}
+
+	/**
+	 * Writes the string escaped, unchanged runs are appended as a whole.
+	 */
+	public static void escape(String s, Appendable out) throws IOException {
+		int len = s.length();
+		int from = 0;
+		for (int i = 0; i < len; i++) {
+			char ch = s.charAt(i);
+			String replacement;
+			switch (ch) {
+				case '"':
+					replacement = "\\\"";
+					break;
+				case '\\':
+					replacement = "\\\\";
+					break;
+				case '/':
+					replacement = "\\/";
+					break;
+				case '\n':
+					replacement = "\\n";
+					break;
+				case '\r':
+					replacement = "\\r";
+					break;
+				case '\t':
+					replacement = "\\t";
+					break;
+				default:
+					if (ch >= 0x20) continue;
+					replacement = null;
+			}
+			if (from < i) out.append(s, from, i);
+			from = i + 1;
+			if (replacement != null) {
+				out.append(replacement);
+			} else {
+				out.append("\\u00").append(HEX[ch >> 4]).append(HEX[ch & 0xf]);
+			}
+		}
+		if (from < len) out.append(s, from, len);
+	}
+
+}
@@ -18,9 +18,11 @@ import ilarkesto.core.event.AEventBus;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class CascadingScope extends Scope {
 
@@ -30,7 +32,10 @@ public class CascadingScope extends Scope {
 	Map<Integer, CascadingScope> childScopesById = new LinkedHashMap<Integer, CascadingScope>();
 	ComponentReflector componentReflector;
 	Map<String, Object> componentsByName = new HashMap<String, Object>();
+	private List<AEventBus> eventBuses = new ArrayList<AEventBus>();
 	private boolean wiringRequired = true;
+	private Set<String> unwiredNames = new HashSet<String>();
+	private Map<String, Set<String>> dependentNamesByName = new HashMap<String, Set<String>>();
 
 	CascadingScope(Scope parentScope, String name, ComponentReflector componentReflector) {
 		this.id = ID_GENERATOR.nextId();
@@ -47,18 +52,54 @@ public class CascadingScope extends Scope {
 
 	public synchronized void wireComponents() {
 		log.info("Wiring components:", getName());
-		wiringRequired = false;
-
-		List components = new ArrayList(componentsByName.values());
-		for (Object component : components) {
-			componentReflector.injectComponents(component, this);
+		while (wiringRequired) {
+			wiringRequired = false;
+			Set<String> names = unwiredNames;
+			unwiredNames = new HashSet<String>();
+
+			List components = getComponentsToWire(names);
+			for (Object component : components) {
+				componentReflector.injectComponents(component, this);
+			}
+			for (Object component : components) {
+				componentReflector.callInitializationMethods(component);
+				componentReflector.outjectComponents(component, this);
+			}
 		}
-		for (Object component : components) {
-			componentReflector.callInitializationMethods(component);
-			componentReflector.outjectComponents(component, this);
+	}
+
+	/**
+	 * Gets the newly put components and the components depending on them. Without a
+	 * <code>DependencyAwareComponentReflector</code> all components are wired again.
+	 */
+	private List getComponentsToWire(Set<String> names) {
+		if (!(componentReflector instanceof DependencyAwareComponentReflector))
+			return new ArrayList(componentsByName.values());
+		DependencyAwareComponentReflector<Object> reflector = (DependencyAwareComponentReflector) componentReflector;
+
+		Set<String> affectedNames = new HashSet<String>(names);
+		for (String name : names) {
+			Set<String> dependentNames = dependentNamesByName.get(name);
+			if (dependentNames != null) affectedNames.addAll(dependentNames);
 		}
 
-		if (wiringRequired) wireComponents();
+		List ret = new ArrayList(affectedNames.size());
+		for (String name : affectedNames) {
+			Object component = componentsByName.get(name);
+			if (component == null) continue;
+			if (names.contains(name)) {
+				for (String dependencyName : reflector.getDependencyNames(component)) {
+					Set<String> dependentNames = dependentNamesByName.get(dependencyName);
+					if (dependentNames == null) {
+						dependentNames = new HashSet<String>();
+						dependentNamesByName.put(dependencyName, dependentNames);
+					}
+					dependentNames.add(name);
+				}
+			}
+			ret.add(component);
+		}
+		return ret;
 	}
 
 	@Override
@@ -77,21 +118,53 @@ public class CascadingScope extends Scope {
 	}
 
 	@Override
-	public synchronized <T> T putComponent(String name, T component) {
+	public <T> T putComponent(String name, T component) {
 		assert name != null;
 		assert component != null;
 
-		Object existingComponent = componentsByName.get(name);
-		if (existingComponent == component) return component;
+		synchronized (this) {
+			Object existingComponent = componentsByName.get(name);
+			if (existingComponent == component) return component;
 
-		log.info("Putting component:", name);
+			log.info("Putting component:", name);
 
-		componentsByName.put(name, component);
-		wiringRequired = true;
+			componentsByName.put(name, component);
+			if (existingComponent instanceof AEventBus) eventBuses.remove(existingComponent);
+			if (component instanceof AEventBus) eventBuses.add((AEventBus) component);
+			unwiredNames.add(name);
+			wiringRequired = true;
+			invalidateEventHandlers(true);
+		}
+		// without holding this lock, child scopes lock their parents while wiring
+		invalidateChildScopeEventHandlers();
 
 		return component;
 	}
 
+	/**
+	 * Event buses cache their handlers. Local event buses of sub scopes are not affected by components of this
+	 * scope.
+	 */
+	private void invalidateEventHandlers(boolean includeLocal) {
+		for (AEventBus eventBus : eventBuses) {
+			if (includeLocal || !(eventBus instanceof CascadingScopeLocalEventBus)) eventBus.invalidateEventHandlers();
+		}
+	}
+
+	private void invalidateChildScopeEventHandlers() {
+		List<CascadingScope> childScopes;
+		synchronized (this) {
+			if (childScopesById.isEmpty()) return;
+			childScopes = new ArrayList<CascadingScope>(childScopesById.values());
+		}
+		for (CascadingScope childScope : childScopes) {
+			synchronized (childScope) {
+				childScope.invalidateEventHandlers(false);
+			}
+			childScope.invalidateChildScopeEventHandlers();
+		}
+	}
+
 	@Override
 	public List getAllComponents() {
 		List ret = new ArrayList();
@@ -103,7 +176,9 @@ public class CascadingScope extends Scope {
 	public CascadingScope createScope(String name) {
 		log.info("Creating sub scope:", getName(), "->", name);
 		CascadingScope scope = new CascadingScope(this, name, componentReflector);
-		childScopesById.put(scope.getId(), scope);
+		synchronized (this) {
+			childScopesById.put(scope.getId(), scope);
+		}
 		return scope;
 	}
 
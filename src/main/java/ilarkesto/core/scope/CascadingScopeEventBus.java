@@ -32,4 +32,12 @@ public class CascadingScopeEventBus extends AEventBus {
 		return scope.getAllComponents();
 	}
 
+	/**
+	 * The scope invalidates the handlers when components are put.
+	 */
+	@Override
+	protected boolean isCachingHandlers() {
+		return true;
+	}
+
 }
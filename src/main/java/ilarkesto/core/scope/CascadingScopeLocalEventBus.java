@@ -32,4 +32,12 @@ public class CascadingScopeLocalEventBus extends AEventBus {
 		return scope.getLocalComponents();
 	}
 
+	/**
+	 * The scope invalidates the handlers when components are put.
+	 */
+	@Override
+	protected boolean isCachingHandlers() {
+		return true;
+	}
+
 }
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.core.scope;
+
+import java.util.Collection;
+
+/**
+ * A reflector which knows the names of the components a component gets injected. Lets the scope re-wire only
+ * the components affected by newly put components.
+ */
+public interface DependencyAwareComponentReflector<C> extends ComponentReflector<C> {
+
+	Collection<String> getDependencyNames(C component);
+
+}
@@ -16,15 +16,21 @@ package ilarkesto.core.time;
 
 import java.io.Serializable;
 
+/**
+ * Backed by epoch milliseconds in whole seconds. Date and time components are computed on demand, comparisons
+ * work on the milliseconds and allocate nothing.
+ */
 public class DateAndTime implements Comparable<DateAndTime>, Serializable {
 
+	/**
+	 * <code>0</code> if not computed from the components yet.
+	 */
+	private long millis;
 	protected Date date;
 	protected Time time;
 
-	private transient int hashCode;
-
 	public DateAndTime(java.util.Date javaDate) {
-		this(new Date(javaDate), new Time(javaDate));
+		this(javaDate.getTime());
 	}
 
 	public DateAndTime(String s) {
@@ -59,11 +65,11 @@ public class DateAndTime implements Comparable<DateAndTime>, Serializable {
 	}
 
 	public DateAndTime(long millis) {
-		this(Tm.createDate(millis));
+		this.millis = truncateToSeconds(millis);
 	}
 
 	public DateAndTime() {
-		this(Tm.getNowAsDate());
+		this(Tm.getNowAsMillis());
 	}
 
 	// ---
@@ -73,11 +79,19 @@ public class DateAndTime implements Comparable<DateAndTime>, Serializable {
 	}
 
 	public TimePeriod getPeriodToNow() {
-		return getPeriodTo(now());
+		return new TimePeriod(getMillisToNow());
 	}
 
 	public TimePeriod getPeriodFromNow() {
-		return now().getPeriodTo(this);
+		return new TimePeriod(-getMillisToNow());
+	}
+
+	public final long getMillisToNow() {
+		return Tm.getNowAsMillis() - toMillis();
+	}
+
+	public final boolean isOlderThan(TimePeriod period) {
+		return getMillisToNow() > period.toMillis();
 	}
 
 	public final boolean isBefore(DateAndTime other) {
@@ -89,55 +103,66 @@ public class DateAndTime implements Comparable<DateAndTime>, Serializable {
 	}
 
 	public final Date getDate() {
+		if (date == null) initComponents();
 		return date;
 	}
 
 	public final Time getTime() {
+		if (time == null) initComponents();
 		return time;
 	}
 
+	private void initComponents() {
+		java.util.Date javaDate = Tm.createDate(millis);
+		date = new Date(javaDate);
+		time = new Time(javaDate);
+	}
+
 	public final java.util.Date toJavaDate() {
-		return Tm.createDate(date.toMillis() + time.toMillis());
+		return Tm.createDate(toMillis());
 	}
 
 	public final long toMillis() {
-		return date.toMillis() + time.toMillis();
+		if (millis == 0 && date != null) millis = date.toMillis(time);
+		return millis;
 	}
 
 	@Override
 	public final String toString() {
 		StringBuilder sb = new StringBuilder();
-		sb.append(date.toString());
+		sb.append(getDate().toString());
 		sb.append(" ");
-		sb.append(time.toString());
+		sb.append(getTime().toString());
 		return sb.toString();
 	}
 
 	@Override
 	public final int hashCode() {
-		if (hashCode == 0) {
-			hashCode = 23;
-			hashCode = hashCode * 37 + date.hashCode();
-			hashCode = hashCode * 37 + time.hashCode();
-		}
-		return hashCode;
+		long value = toMillis();
+		return (int) (value ^ (value >>> 32));
 	}
 
 	@Override
 	public final boolean equals(Object obj) {
 		if (obj == null) return false;
 		if (!(obj instanceof DateAndTime)) return false;
-		return date.equals(((DateAndTime) obj).date) && time.equals(((DateAndTime) obj).time);
+		return toMillis() == ((DateAndTime) obj).toMillis();
 	}
 
 	@Override
 	public final int compareTo(DateAndTime o) {
-		int i = date.compareTo(o.date);
-		return i == 0 ? time.compareTo(o.time) : i;
+		long a = toMillis();
+		long b = o.toMillis();
+		return a < b ? -1 : (a == b ? 0 : 1);
 	}
 
 	// --- static ---
 
+	static long truncateToSeconds(long millis) {
+		long remainder = millis % 1000;
+		return remainder < 0 ? millis - remainder - 1000 : millis - remainder;
+	}
+
 	public static DateAndTime now() {
 		return new DateAndTime();
 	}
@@ -14,20 +14,16 @@
  */
 package ilarkesto.di;
 
-import ilarkesto.base.Reflect;
+import ilarkesto.base.BeanClassInfo;
 import ilarkesto.core.scope.In;
 
-import java.beans.BeanInfo;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -80,57 +76,37 @@ public class Autowire {
 		// Logger.DEBUG("***** autowiring", "<" + Utl.toStringWithType(bean) + ">", "with", "<"
 		// + Utl.toStringWithType(beanProvider) + ">");
 		final Set<String> availableBeanNames = beanProvider.beanNames();
-		Class beanClass = bean.getClass();
-		BeanInfo beanInfo;
-		try {
-			beanInfo = Introspector.getBeanInfo(beanClass);
-		} catch (IntrospectionException ex) {
-			throw new RuntimeException(ex);
-		}
-		PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-		if (propertyDescriptors != null) {
-			for (int i = 0; i < propertyDescriptors.length; i++) {
-				PropertyDescriptor propertyDescriptor = propertyDescriptors[i];
-				if (propertyDescriptor != null) {
-					String name = propertyDescriptor.getName();
-					// if ("parentContext".equals(name)) continue;
-					Method writeMethod = propertyDescriptor.getWriteMethod();
-					if (writeMethod != null) {
-						if (writeMethod.getAnnotation(AutowireHostile.class) != null) continue;
-						if (availableBeanNames.contains(name)) {
-							invokeSetter(bean, writeMethod, beanProvider.getBean(name), objectStringMapper);
-						} else if ("beanProvider".equals(name)) {
-							invokeSetter(bean, writeMethod, beanProvider, objectStringMapper);
-						}
-					}
-				}
+		BeanClassInfo beanClassInfo = BeanClassInfo.get(bean.getClass());
+		for (Map.Entry<String, Method> entry : beanClassInfo.getWriteMethods().entrySet()) {
+			String name = entry.getKey();
+			// if ("parentContext".equals(name)) continue;
+			Method writeMethod = entry.getValue();
+			if (writeMethod.getAnnotation(AutowireHostile.class) != null) continue;
+			if (availableBeanNames.contains(name)) {
+				invokeSetter(bean, writeMethod, beanProvider.getBean(name), objectStringMapper);
+			} else if ("beanProvider".equals(name)) {
+				invokeSetter(bean, writeMethod, beanProvider, objectStringMapper);
 			}
 		}
 
-		Reflect.processAnnotations(bean, new Reflect.FieldAnnotationHandler() {
-
-			@Override
-			public void handle(Annotation annotation, Field field, Object object) {
-				if (!(annotation instanceof In)) return;
-				String name = field.getName();
-				if (!availableBeanNames.contains(name)) return;
-				field.setAccessible(true);
-				Object value = beanProvider.getBean(name);
-				Class paramType = field.getType();
-				try {
-					if (objectStringMapper != null && value instanceof String
-							&& objectStringMapper.isTypeSupported(paramType)) {
-						value = objectStringMapper.stringToObject((String) value, paramType);
-					} else {
-						value = convertType(paramType, value);
-					}
-					field.set(object, value);
-				} catch (Exception ex) {
-					throw new RuntimeException("Setting field " + object.getClass().getSimpleName() + "." + name
-							+ " to " + value.getClass().getSimpleName() + ": <" + value + "> failed.", ex);
+		for (Field field : beanClassInfo.getAnnotatedFields(In.class)) {
+			String name = field.getName();
+			if (!availableBeanNames.contains(name)) continue;
+			Object value = beanProvider.getBean(name);
+			Class paramType = field.getType();
+			try {
+				if (objectStringMapper != null && value instanceof String
+						&& objectStringMapper.isTypeSupported(paramType)) {
+					value = objectStringMapper.stringToObject((String) value, paramType);
+				} else {
+					value = convertType(paramType, value);
 				}
+				field.set(bean, value);
+			} catch (Exception ex) {
+				throw new RuntimeException("Setting field " + bean.getClass().getSimpleName() + "." + name + " to "
+						+ value.getClass().getSimpleName() + ": <" + value + "> failed.", ex);
 			}
-		});
+		}
 
 		return bean;
 	}
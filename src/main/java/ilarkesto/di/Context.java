@@ -18,39 +18,60 @@ import java.util.Set;
 
 /**
  * Represents a context in which a thread is running. Contexts can be nested.
+ * 
+ * Sub contexts are lightweight: they share the bean provider of their parent until own bean providers are
+ * added, their full name is computed on demand and threads are only renamed when activated by
+ * <code>setThreadRenaming(true)</code>.
  */
 public final class Context {
 
 	private static final ThreadLocal<Context> THREAD_LOCAL = new ThreadLocal<Context>();
 
 	private static Context rootContext;
+	private static volatile boolean threadRenaming;
 
 	private Context parent;
 	private String name;
-	private MultiBeanProvider beanProvider;
+	private volatile MultiBeanProvider beanProvider;
+
+	private String fullName;
+	private String parentFullName;
 
 	private Context(Context parent, String name) {
 		this.parent = parent;
 		this.name = name;
 
-		beanProvider = new MultiBeanProvider();
-		if (parent != null) beanProvider.addBeanProvider(parent.beanProvider);
+		if (parent == null) beanProvider = new MultiBeanProvider();
 	}
 
 	public final void setName(String name) {
 		this.name = name;
+		fullName = null;
 	}
 
 	public final String getName() {
 		return name;
 	}
 
-	public final void addBeanProvider(Object heanProvider) {
+	public final synchronized void addBeanProvider(Object heanProvider) {
+		if (beanProvider == null) {
+			MultiBeanProvider newBeanProvider = new MultiBeanProvider();
+			newBeanProvider.addBeanProvider(parent.getMultiBeanProvider());
+			beanProvider = newBeanProvider;
+		}
 		this.beanProvider.addBeanProvider(heanProvider);
 	}
 
 	public final BeanProvider getBeanProvider() {
-		return this.beanProvider;
+		return getMultiBeanProvider();
+	}
+
+	private MultiBeanProvider getMultiBeanProvider() {
+		Context context = this;
+		while (context.beanProvider == null) {
+			context = context.parent;
+		}
+		return context.beanProvider;
 	}
 
 	public final Context getParentContext() {
@@ -73,17 +94,41 @@ public final class Context {
 
 	public final void bindCurrentThread() {
 		THREAD_LOCAL.set(this);
-		Thread.currentThread().setName(toString());
+		if (threadRenaming) Thread.currentThread().setName(toString());
 	}
 
 	private final void releaseCurrentThread() {
 		THREAD_LOCAL.set(null);
-		Thread.currentThread().setName("<no context>");
+		if (threadRenaming) Thread.currentThread().setName("<no context>");
 	}
 
 	@Override
 	public final String toString() {
-		return parent == null ? name : parent + " > " + name;
+		if (parent == null) return name;
+		String currentParentFullName = parent.toString();
+		String ret = fullName;
+		if (ret == null || currentParentFullName != parentFullName) {
+			ret = currentParentFullName + " > " + name;
+			parentFullName = currentParentFullName;
+			fullName = ret;
+		}
+		return ret;
+	}
+
+	/**
+	 * Activates renaming threads to the name of their bound context.
+	 */
+	public static void setThreadRenaming(boolean threadRenaming) {
+		Context.threadRenaming = threadRenaming;
+	}
+
+	/**
+	 * Gets the full name of the context bound to the current thread, or the name of the thread if there is no
+	 * context bound.
+	 */
+	public static String getCurrentThreadContextName() {
+		Context context = THREAD_LOCAL.get();
+		return context == null ? Thread.currentThread().getName() : context.toString();
 	}
 
 	public static Context getRootContext() {
@@ -107,32 +152,32 @@ public final class Context {
 	// --- helper ---
 
 	public final <T> T autowire(T target) {
-		return beanProvider.autowire(target);
+		return getMultiBeanProvider().autowire(target);
 	}
 
 	public final void autowireClass(Class type) {
-		beanProvider.autowireClass(type);
+		getMultiBeanProvider().autowireClass(type);
 	}
 
 	/**
 	 * Gets all beans by their type. All beans instanceof the given type are returned.
 	 */
 	public final <T> Set<T> getBeansByType(Class<T> type) {
-		return beanProvider.getBeansByType(type);
+		return getMultiBeanProvider().getBeansByType(type);
 	}
 
 	/**
 	 * Provides a set of all existing bean names.
 	 */
 	public final Set<String> getBeanNames() {
-		return beanProvider.beanNames();
+		return getMultiBeanProvider().beanNames();
 	}
 
 	/**
 	 * Gets a bean by name.
 	 */
 	public final <T> Object getBean(String beanName) {
-		return beanProvider.getBean(beanName);
+		return getMultiBeanProvider().getBean(beanName);
 	}
 
 }
@@ -53,6 +53,16 @@ public final class MultiBeanProvider extends ABeanProvider {
 		if (objectStringMapper == null && beanProvider instanceof ABeanProvider)
 			objectStringMapper = ((ABeanProvider) beanProvider).objectStringMapper;
 
+		// register the providers of a wrapped MultiBeanProvider directly, so lookups take only one step
+		if (beanProvider instanceof MultiBeanProvider) {
+			MultiBeanProvider multiBeanProvider = (MultiBeanProvider) beanProvider;
+			synchronized (multiBeanProvider) {
+				beanToBeanProvider.putAll(multiBeanProvider.beanToBeanProvider);
+			}
+			beanProviders.add(beanProvider);
+			return;
+		}
+
 		// register beanProvider for its beans
 		for (String beanName : beanProvider.beanNames()) {
 			if ("beanProvider".equals(beanName)) throw new RuntimeException("Forbidden bean: beanProvider");
@@ -18,6 +18,7 @@ import ilarkesto.base.Str;
 import ilarkesto.base.Sys;
 import ilarkesto.base.Tm;
 import ilarkesto.base.Utl;
+import ilarkesto.base.time.Date;
 import ilarkesto.base.time.Time;
 import ilarkesto.concurrent.ATask;
 import ilarkesto.concurrent.TaskManager;
@@ -28,10 +29,13 @@ import ilarkesto.io.ExclusiveFileLock;
 import ilarkesto.io.ExclusiveFileLock.FileLockedException;
 import ilarkesto.io.IO;
 import ilarkesto.logging.DefaultLogDataHandler;
+import ilarkesto.persistence.BackupStore;
+import ilarkesto.persistence.ChangeFeed;
 import ilarkesto.persistence.DaoListener;
 import ilarkesto.persistence.DaoService;
 import ilarkesto.persistence.EntityStore;
 import ilarkesto.persistence.FileEntityStore;
+import ilarkesto.persistence.PersistenceMetrics;
 import ilarkesto.persistence.Serializer;
 import ilarkesto.persistence.TransactionService;
 import ilarkesto.properties.FilePropertiesStore;
@@ -49,6 +53,8 @@ public abstract class AApplication {
 
 	private static Log log = Log.get(AApplication.class);
 
+	public static final int BACKUP_RETENTION_DAYS = 3;
+
 	private ExclusiveFileLock exclusiveFileLock;
 
 	protected abstract void onStart();
@@ -125,6 +131,8 @@ public abstract class AApplication {
 					}
 
 					if (context != null) context.destroy();
+					if (entityBackupStore != null) entityBackupStore.close();
+					if (persistenceMetrics != null) persistenceMetrics.unregisterMBean();
 
 					if (exclusiveFileLock != null) exclusiveFileLock.release();
 					Log.flush();
@@ -246,9 +254,15 @@ public abstract class AApplication {
 		return buildProperties;
 	}
 
+	/**
+	 * Deletes backup files older than <code>BACKUP_RETENTION_DAYS</code> and expires the entity backup store. The
+	 * store keeps whole days, today and the days before up to the retention.
+	 */
 	public void deleteOldBackupFiles(String backupDir) {
 		log.info("Deleting old backup files from:", backupDir);
-		final long deadline = System.currentTimeMillis() - Tm.DAY * 3;
+		final File storeDir = entityBackupStore == null ? null : entityBackupStore.getDir().getAbsoluteFile();
+		if (entityBackupStore != null) entityBackupStore.deleteOlderThan(Date.today().addDays(1 - BACKUP_RETENTION_DAYS));
+		final long deadline = System.currentTimeMillis() - Tm.DAY * BACKUP_RETENTION_DAYS;
 		IO.FileProcessor processor = new IO.FileProcessor() {
 
 			@Override
@@ -263,7 +277,8 @@ public abstract class AApplication {
 
 			@Override
 			public boolean onFolderBegin(File folder) {
-				return true;
+				// objects of the store are shared by the days, it expires by its manifests
+				return !folder.getAbsoluteFile().equals(storeDir);
 			}
 
 			@Override
@@ -298,6 +313,7 @@ public abstract class AApplication {
 	}
 
 	private FileEntityStore entityStore;
+	private BackupStore entityBackupStore;
 
 	public final EntityStore getEntityStore() {
 		if (entityStore == null) {
@@ -313,12 +329,27 @@ public abstract class AApplication {
 			}
 
 			entityStore.setBackupDir(backupDir.getPath());
+			entityBackupStore = createEntityBackupStore(new File(getApplicationDataDir() + "/entities-backup"));
+			if (entityBackupStore != null) entityStore.setBackupStore(entityBackupStore);
 			entityStore.setVersion(getDataVersion());
 			Context.get().autowire(entityStore);
 		}
 		return entityStore;
 	}
 
+	/**
+	 * Returns a content addressed store for entity backups, for example <code>new BackupStore(dir, true)</code>.
+	 * By default every saved version is copied to a per-day directory.
+	 */
+	protected BackupStore createEntityBackupStore(File dir) {
+		return null;
+	}
+
+	public final BackupStore getEntityBackupStore() {
+		getEntityStore();
+		return entityBackupStore;
+	}
+
 	protected int getDataVersion() {
 		return -1;
 	}
@@ -346,6 +377,23 @@ public abstract class AApplication {
 		return daoService;
 	}
 
+	private ChangeFeed changeFeed;
+
+	public final ChangeFeed getChangeFeed() {
+		if (changeFeed == null) changeFeed = new ChangeFeed();
+		return changeFeed;
+	}
+
+	private PersistenceMetrics persistenceMetrics;
+
+	public final PersistenceMetrics getPersistenceMetrics() {
+		if (persistenceMetrics == null) {
+			persistenceMetrics = new PersistenceMetrics();
+			persistenceMetrics.registerMBean();
+		}
+		return persistenceMetrics;
+	}
+
 	private TransactionService transactionService;
 
 	public final TransactionService getTransactionService() {
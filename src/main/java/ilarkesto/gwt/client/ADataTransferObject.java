@@ -79,9 +79,19 @@ public abstract class ADataTransferObject implements Serializable, IsSerializabl
 		return entities.containsKey(entityId);
 	}
 
+	/**
+	 * Adds the properties of an entity. Properties of an entity which is already contained are merged, so
+	 * multiple deltas for the same entity can be transferred together.
+	 */
 	public final void addEntity(Map data) {
 		if (entities == null) entities = new HashMap<String, Map<String, Serializable>>();
-		entities.put((String) data.get("id"), data);
+		String id = (String) data.get("id");
+		Map<String, Serializable> existing = entities.get(id);
+		if (existing == null) {
+			entities.put(id, data);
+		} else {
+			existing.putAll(data);
+		}
 	}
 
 	public final Collection<Map<String, Serializable>> getEntities() {
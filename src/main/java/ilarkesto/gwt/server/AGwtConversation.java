@@ -22,16 +22,22 @@ import ilarkesto.base.time.TimePeriod;
 import ilarkesto.core.logging.Log;
 import ilarkesto.gwt.client.ADataTransferObject;
 import ilarkesto.persistence.AEntity;
+import ilarkesto.persistence.ChangeFeed;
 import ilarkesto.webapp.AWebSession;
+import ilarkesto.webapp.ExpirationQueue;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
-public abstract class AGwtConversation {
+public abstract class AGwtConversation implements ExpirationQueue.Expiring {
 
 	private static final Log LOG = Log.get(AGwtConversation.class);
 	private static final TimePeriod DEFAULT_TIMEOUT = TimePeriod.minutes(2);
@@ -40,11 +46,26 @@ public abstract class AGwtConversation {
 	 * Data that will be transferred to the client at the next request.
 	 */
 	private ADataTransferObject nextData;
-	private Map<AEntity, DateAndTime> remoteEntityModificationTimes = new HashMap<AEntity, DateAndTime>();
+
+	/**
+	 * Entities sent to the client, indexed by type. Holds the properties of the last sent version for delta
+	 * encoding.
+	 */
+	private Map<Class, Map<AEntity, RemoteEntity>> remoteEntitiesByType = new HashMap<Class, Map<AEntity, RemoteEntity>>();
+
+	/**
+	 * Entities to be sent with the next data. Multiple saves between polls are coalesced here.
+	 */
+	private Set<AEntity> pendingEntities = new LinkedHashSet<AEntity>();
+
+	private long lastChangeSequence = -1;
+
+	private long fullPayloadSize;
+	private long sentPayloadSize;
 
 	private AWebSession session;
 	private int number;
-	private DateAndTime lastTouched;
+	private volatile long lastTouched;
 
 	protected abstract ADataTransferObject createDataTransferObject();
 
@@ -67,18 +88,12 @@ public abstract class AGwtConversation {
 		return number;
 	}
 
-	public final void clearRemoteEntities() {
-		remoteEntityModificationTimes.clear();
+	public final synchronized void clearRemoteEntities() {
+		remoteEntitiesByType.clear();
 	}
 
-	public final void clearRemoteEntitiesByType(Class<? extends AEntity> type) {
-		List<AEntity> toRemove = new ArrayList<AEntity>();
-		for (AEntity entity : remoteEntityModificationTimes.keySet()) {
-			if (entity.getClass().equals(type)) toRemove.add(entity);
-		}
-		for (AEntity entity : toRemove) {
-			remoteEntityModificationTimes.remove(entity);
-		}
+	public final synchronized void clearRemoteEntitiesByType(Class<? extends AEntity> type) {
+		remoteEntitiesByType.remove(type);
 	}
 
 	protected boolean isEntityVisible(AEntity entity) {
@@ -88,47 +103,216 @@ public abstract class AGwtConversation {
 	protected void filterEntityProperties(AEntity entity, Map propertiesMap) {}
 
 	public synchronized boolean isAvailableOnClient(AEntity entity) {
-		return remoteEntityModificationTimes.containsKey(entity);
+		return getRemoteEntity(entity) != null || pendingEntities.contains(entity);
 	}
 
+	/**
+	 * Schedules the entity for the next data. The properties are computed once per poll, only the properties
+	 * which changed since the last version sent to this conversation are transferred.
+	 */
 	public synchronized void sendToClient(AEntity entity) {
 		if (entity == null) return;
 
 		if (!isEntityVisible(entity)) throw new PermissionDeniedException(entity + " is not visible");
 
-		DateAndTime timeRemote = remoteEntityModificationTimes.get(entity);
+		pendingEntities.add(entity);
+	}
+
+	public final void sendToClient(Collection<? extends AEntity> entities) {
+		if (entities == null) return;
+		for (AEntity entity : entities)
+			sendToClient(entity);
+	}
+
+	/**
+	 * Starts tracking the changes for <code>sendChangesToClient()</code>. Called when the conversation is created,
+	 * before entities are sent to the client.
+	 */
+	public final synchronized void trackChanges(ChangeFeed changeFeed) {
+		if (lastChangeSequence < 0) lastChangeSequence = changeFeed.getLastSequence();
+	}
+
+	/**
+	 * Sends the entities which changed since the last call and which are already available on the client, and
+	 * reports deleted ones. Returns <code>false</code> if the feed does not reach back far enough, then the
+	 * caller has to send the relevant entities again.
+	 */
+	public final synchronized boolean sendChangesToClient(ChangeFeed changeFeed) {
+		if (lastChangeSequence < 0) {
+			trackChanges(changeFeed);
+			return true;
+		}
+		// changes appended meanwhile are delivered twice at most, which is harmless
+		long sequence = changeFeed.getLastSequence();
+		Collection<ChangeFeed.Change> changes = changeFeed.getChangesSince(lastChangeSequence);
+		lastChangeSequence = sequence;
+		if (changes == null) {
+			LOG.info("Change feed overrun, resync required:", this);
+			return false;
+		}
+		for (ChangeFeed.Change change : changes) {
+			AEntity entity = change.getEntity();
+			if (!isAvailableOnClient(entity)) continue;
+			if (change.isDeleted()) {
+				pendingEntities.remove(entity);
+				Map<AEntity, RemoteEntity> remoteEntities = remoteEntitiesByType.get(entity.getClass());
+				if (remoteEntities != null) remoteEntities.remove(entity);
+				if (nextData != null) nextData.addDeletedEntity(change.getEntityId());
+			} else if (isEntityVisible(entity)) {
+				pendingEntities.add(entity);
+			}
+		}
+		return true;
+	}
+
+	public final synchronized ADataTransferObject popNextData() {
+		if (nextData == null) return null;
+		flushPendingEntities();
+		ADataTransferObject ret = nextData;
+		nextData = createDataTransferObject();
+		return ret;
+	}
+
+	public synchronized ADataTransferObject getNextData() {
+		flushPendingEntities();
+		return nextData;
+	}
+
+	private void flushPendingEntities() {
+		if (nextData == null || pendingEntities.isEmpty()) return;
+		Iterator<AEntity> iterator = pendingEntities.iterator();
+		while (iterator.hasNext()) {
+			AEntity entity = iterator.next();
+			iterator.remove();
+			flushEntity(entity);
+		}
+	}
+
+	private void flushEntity(AEntity entity) {
+		RemoteEntity remote = getRemoteEntity(entity);
 		DateAndTime timeLocal = entity.getLastModified();
 
-		if (timeLocal.equals(timeRemote)) {
+		if (remote != null && timeLocal.equals(remote.modificationTime)) {
 			LOG.debug("Remote entity already up to date:", Utl.toStringWithType(entity), "for", this);
 			return;
 		}
 
 		Map propertiesMap = entity.createPropertiesMap();
 		filterEntityProperties(entity, propertiesMap);
-
-		getNextData().addEntity(propertiesMap);
-		remoteEntityModificationTimes.put(entity, timeLocal);
+		int fullSize = estimateSize(propertiesMap);
+		fullPayloadSize += fullSize;
+
+		if (remote == null) {
+			remote = new RemoteEntity();
+			Map<AEntity, RemoteEntity> remoteEntities = remoteEntitiesByType.get(entity.getClass());
+			if (remoteEntities == null) {
+				remoteEntities = new HashMap<AEntity, RemoteEntity>();
+				remoteEntitiesByType.put(entity.getClass(), remoteEntities);
+			}
+			remoteEntities.put(entity, remote);
+			nextData.addEntity(propertiesMap);
+			sentPayloadSize += fullSize;
+		} else {
+			Map delta = createDelta(remote.properties, propertiesMap);
+			if (delta != null) {
+				nextData.addEntity(delta);
+				sentPayloadSize += estimateSize(delta);
+			}
+		}
+		remote.modificationTime = timeLocal;
+		remote.properties = snapshot(propertiesMap);
 		LOG.debug("Sending", Utl.toStringWithType(entity), "to", this);
 	}
 
-	public final void sendToClient(Collection<? extends AEntity> entities) {
-		if (entities == null) return;
-		for (AEntity entity : entities)
-			sendToClient(entity);
+	/**
+	 * Returns the changed properties plus id and type, or <code>null</code> if nothing changed. Removed
+	 * properties are sent as <code>null</code>.
+	 */
+	static Map createDelta(Map oldProperties, Map newProperties) {
+		Map delta = null;
+		for (Object o : newProperties.entrySet()) {
+			Map.Entry entry = (Map.Entry) o;
+			Object key = entry.getKey();
+			if (oldProperties.containsKey(key) && Utl.equals(oldProperties.get(key), entry.getValue())) continue;
+			if (delta == null) delta = new HashMap();
+			delta.put(key, entry.getValue());
+		}
+		for (Object key : oldProperties.keySet()) {
+			if (newProperties.containsKey(key)) continue;
+			if (delta == null) delta = new HashMap();
+			delta.put(key, null);
+		}
+		if (delta == null) return null;
+		delta.put("id", newProperties.get("id"));
+		delta.put("@type", newProperties.get("@type"));
+		return delta;
 	}
 
-	public final ADataTransferObject popNextData() {
-		if (nextData == null) return null;
-		synchronized (nextData) {
-			ADataTransferObject ret = nextData;
-			nextData = createDataTransferObject();
-			return ret;
+	/**
+	 * Copies the collection values. Entities change their collections in place, which would make the next delta
+	 * miss these changes.
+	 */
+	static Map snapshot(Map properties) {
+		Map ret = new HashMap(properties);
+		for (Object o : ret.entrySet()) {
+			Map.Entry entry = (Map.Entry) o;
+			Object value = entry.getValue();
+			if (value instanceof List) {
+				entry.setValue(new ArrayList((List) value));
+			} else if (value instanceof Set) {
+				entry.setValue(new HashSet((Set) value));
+			} else if (value instanceof Map) {
+				entry.setValue(new HashMap((Map) value));
+			}
 		}
+		return ret;
 	}
 
-	public ADataTransferObject getNextData() {
-		return nextData;
+	/**
+	 * Rough size of a properties map in characters, used for the payload metrics.
+	 */
+	static int estimateSize(Object value) {
+		if (value == null) return 4;
+		if (value instanceof CharSequence) return ((CharSequence) value).length() + 2;
+		if (value instanceof Collection) {
+			int size = 2;
+			for (Object element : (Collection) value) {
+				size += estimateSize(element) + 1;
+			}
+			return size;
+		}
+		if (value instanceof Map) {
+			int size = 2;
+			for (Object o : ((Map) value).entrySet()) {
+				Map.Entry entry = (Map.Entry) o;
+				size += estimateSize(entry.getKey()) + estimateSize(entry.getValue()) + 2;
+			}
+			return size;
+		}
+		return 8;
+	}
+
+	private RemoteEntity getRemoteEntity(AEntity entity) {
+		Map<AEntity, RemoteEntity> remoteEntities = remoteEntitiesByType.get(entity.getClass());
+		return remoteEntities == null ? null : remoteEntities.get(entity);
+	}
+
+	/**
+	 * Estimated size of the entity data which would have been transferred without delta encoding.
+	 */
+	public final synchronized long getFullPayloadSize() {
+		return fullPayloadSize;
+	}
+
+	/**
+	 * Estimated size of the entity data actually transferred.
+	 */
+	public final synchronized long getSentPayloadSize() {
+		return sentPayloadSize;
+	}
+
+	public final synchronized long getPayloadBytesSaved() {
+		return fullPayloadSize - sentPayloadSize;
 	}
 
 	public AWebSession getSession() {
@@ -136,7 +320,7 @@ public abstract class AGwtConversation {
 	}
 
 	public final void touch() {
-		lastTouched = DateAndTime.now();
+		lastTouched = System.currentTimeMillis();
 	}
 
 	protected TimePeriod getTimeout() {
@@ -144,11 +328,16 @@ public abstract class AGwtConversation {
 	}
 
 	public final boolean isTimeouted() {
-		return lastTouched.getPeriodToNow().isGreaterThen(getTimeout());
+		return System.currentTimeMillis() - lastTouched > getTimeout().toMillis();
+	}
+
+	@Override
+	public final long getExpirationTime() {
+		return lastTouched + getTimeout().toMillis() + 1;
 	}
 
 	public final DateAndTime getLastTouched() {
-		return lastTouched;
+		return new DateAndTime(lastTouched);
 	}
 
 	public void invalidate() {}
@@ -158,4 +347,11 @@ public abstract class AGwtConversation {
 		return "#" + number + "@" + getSession();
 	}
 
+	private static class RemoteEntity {
+
+		private DateAndTime modificationTime;
+		private Map properties;
+
+	}
+
 }
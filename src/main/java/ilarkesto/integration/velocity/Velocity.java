@@ -15,71 +15,220 @@
 package ilarkesto.integration.velocity;
 
 import ilarkesto.base.Str;
+import ilarkesto.concurrent.DeamonThreadFactory;
 import ilarkesto.core.logging.Log;
 import ilarkesto.io.IO;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.StringWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.VelocityEngine;
 
+/**
+ * Renders the templates of a directory. Instances are long-lived: the engine caches the parsed templates and
+ * reloads them when the template file changes, and the hashes of the written output files are remembered to
+ * skip unchanged files without reading them. Velocity loads the macro library only on init, so the engine is
+ * recreated when the library file changes.
+ */
 public class Velocity {
 
 	public static final String LIB_TEMPLATE_NAME = "VM_global_library.vm";
 
+	private static final String HASH_ALGORITHM = "MD5";
+
 	private static Log log = Log.get(Velocity.class);
 
+	/**
+	 * Shared instances by template directory, released when memory is low.
+	 */
+	private static final Map<String, SoftReference<Velocity>> instances = new HashMap<String, SoftReference<Velocity>>();
+
 	private File templateDir;
-	private VelocityEngine velocityEngine;
+	private File libFile;
+	private volatile VelocityEngine velocityEngine;
+	private volatile long libLastModified;
+	private ConcurrentMap<String, WrittenFile> writtenFiles = new ConcurrentHashMap<String, WrittenFile>();
 
 	public Velocity(File templateDir) {
 		this.templateDir = templateDir;
+		libFile = new File(templateDir, LIB_TEMPLATE_NAME);
+		libLastModified = libFile.lastModified();
 		velocityEngine = createEngine(templateDir);
 	}
 
+	/**
+	 * Returns the shared instance for the template directory.
+	 */
+	public static Velocity get(File templateDir) {
+		String key = templateDir.getAbsolutePath();
+		synchronized (instances) {
+			SoftReference<Velocity> ref = instances.get(key);
+			Velocity velocity = ref == null ? null : ref.get();
+			if (velocity == null) {
+				velocity = new Velocity(templateDir);
+				instances.put(key, new SoftReference<Velocity>(velocity));
+			}
+			return velocity;
+		}
+	}
+
 	public static void processDir(File templateDir, File outputDir, ContextBuilder context) {
 		processDir(templateDir, outputDir, context.toVelocityContext());
 	}
 
 	public static void processDir(File templateDir, File outputDir, VelocityContext velocityContext) {
-		Velocity velocity = new Velocity(templateDir);
+		get(templateDir).processDir(outputDir, velocityContext);
+	}
+
+	public void processDir(File outputDir, VelocityContext velocityContext) {
+		processDir(outputDir, velocityContext, 1);
+	}
 
+	/**
+	 * Renders the templates of the template directory and copies the other files. With more than one thread the
+	 * files are processed in parallel.
+	 */
+	public void processDir(final File outputDir, final VelocityContext velocityContext, int threads) {
 		File[] files = templateDir.listFiles();
 		if (files == null) return;
 		IO.createDirectory(outputDir);
-		for (File templateFile : files) {
-			String name = templateFile.getName();
-			if (name.equals(LIB_TEMPLATE_NAME)) continue;
-			log.debug("   ", name);
-			boolean velocityTemplate = name.endsWith(".vm");
-			if (velocityTemplate) {
-				File outputFile = new File(outputDir.getAbsolutePath() + "/" + Str.removeSuffix(name, ".vm"));
-				velocity.processTemplate(name, outputFile, velocityContext);
-			} else {
-				IO.copyFile(templateFile, new File(outputDir.getPath() + "/" + name));
+		if (threads <= 1) {
+			for (File templateFile : files) {
+				processFile(templateFile, outputDir, velocityContext);
+			}
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new DeamonThreadFactory());
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(files.length);
+			for (final File templateFile : files) {
+				futures.add(executor.submit(new Callable<Object>() {
+
+					@Override
+					public Object call() {
+						processFile(templateFile, outputDir, velocityContext);
+						return null;
+					}
+
+				}));
 			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException ex) {
+			throw new RuntimeException(ex);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new RuntimeException(cause);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void processFile(File templateFile, File outputDir, VelocityContext velocityContext) {
+		String name = templateFile.getName();
+		if (name.equals(LIB_TEMPLATE_NAME)) return;
+		log.debug("   ", name);
+		if (name.endsWith(".vm")) {
+			File outputFile = new File(outputDir.getAbsolutePath() + "/" + Str.removeSuffix(name, ".vm"));
+			processTemplate(name, outputFile, velocityContext);
+		} else {
+			IO.copyFile(templateFile, new File(outputDir.getPath() + "/" + name));
 		}
 	}
 
-	public void processTemplate(String name, File outputFile, ContextBuilder context) {
-		processTemplate(name, outputFile, context.toVelocityContext());
+	public boolean processTemplate(String name, File outputFile, ContextBuilder context) {
+		return processTemplate(name, outputFile, context.toVelocityContext());
 	}
 
-	public void processTemplate(String name, File outputFile, VelocityContext velocityContext) {
+	/**
+	 * Renders the template and writes the output file if its content changed. The given context is wrapped, so
+	 * <code>#set</code> directives do not leak into it and the context can be shared between threads.
+	 */
+	public boolean processTemplate(String name, File outputFile, VelocityContext velocityContext) {
 		log.debug("Processing", templateDir.getAbsolutePath() + "/" + name, "->", outputFile.getAbsolutePath());
-		IO.createDirectory(outputFile.getParentFile());
-		StringWriter out = new StringWriter();
+		MessageDigest digest = createDigest();
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
 		try {
-			Template template = velocityEngine.getTemplate(name);
-			template.merge(velocityContext, out);
+			Writer out = new OutputStreamWriter(new DigestOutputStream(buffer, digest), IO.UTF_8);
+			Template template = getEngine().getTemplate(name);
+			template.merge(new VelocityContext(velocityContext), out);
 			out.close();
 		} catch (Exception ex) {
 			throw new RuntimeException("Processing velocity template failed: " + name, ex);
 		}
-		IO.writeFileIfChanged(outputFile, out.toString(), IO.UTF_8);
+		return writeIfChanged(outputFile, buffer, digest.digest());
+	}
+
+	private VelocityEngine getEngine() {
+		long lastModified = libFile.lastModified();
+		if (lastModified != libLastModified) {
+			synchronized (this) {
+				if (lastModified != libLastModified) {
+					log.info("Macro library changed, reloading:", libFile.getAbsolutePath());
+					velocityEngine = createEngine(templateDir);
+					libLastModified = lastModified;
+				}
+			}
+		}
+		return velocityEngine;
+	}
+
+	private boolean writeIfChanged(File outputFile, ByteArrayOutputStream data, byte[] hash) {
+		String path = outputFile.getAbsolutePath();
+		WrittenFile written = writtenFiles.get(path);
+		if (written != null && written.isUnchanged(outputFile, hash)) return false;
+		if (written == null && outputFile.length() == data.size() && outputFile.exists()
+				&& Arrays.equals(IO.hash(HASH_ALGORITHM, outputFile), hash)) {
+			writtenFiles.put(path, new WrittenFile(outputFile, hash));
+			return false;
+		}
+
+		IO.createDirectory(outputFile.getParentFile());
+		try {
+			OutputStream out = new FileOutputStream(outputFile);
+			try {
+				data.writeTo(out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException("Writing " + outputFile + " failed", ex);
+		}
+		writtenFiles.put(path, new WrittenFile(outputFile, hash));
+		return true;
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException ex) {
+			throw new RuntimeException(ex);
+		}
 	}
 
 	public static VelocityContext createContext(Map<String, ?> context) {
@@ -98,6 +247,10 @@ public class Velocity {
 		velocityEngine.setProperty(VelocityEngine.INPUT_ENCODING, encoding);
 		velocityEngine.setProperty(VelocityEngine.OUTPUT_ENCODING, encoding);
 		velocityEngine.setProperty(VelocityEngine.FILE_RESOURCE_LOADER_PATH, templateDir.getAbsolutePath());
+		// keep parsed templates, reload when the file was modified (checked once per second at most)
+		velocityEngine.setProperty("file.resource.loader.cache", "true");
+		velocityEngine.setProperty("file.resource.loader.modificationCheckInterval", "1");
+		velocityEngine.setProperty("resource.manager.defaultcache.size", "0");
 		try {
 			velocityEngine.init();
 		} catch (Exception ex) {
@@ -105,4 +258,26 @@ public class Velocity {
 		}
 		return velocityEngine;
 	}
+
+	/**
+	 * Output file state after the last write.
+	 */
+	private static class WrittenFile {
+
+		private final long length;
+		private final long lastModified;
+		private final byte[] hash;
+
+		public WrittenFile(File file, byte[] hash) {
+			this.length = file.length();
+			this.lastModified = file.lastModified();
+			this.hash = hash;
+		}
+
+		public boolean isUnchanged(File file, byte[] newHash) {
+			return Arrays.equals(hash, newHash) && file.lastModified() == lastModified && file.length() == length;
+		}
+
+	}
+
 }
@@ -21,6 +21,7 @@ import ilarkesto.io.zip.ZipOutputStream;
 
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
@@ -64,6 +65,7 @@ import java.util.Map;
 import java.util.Properties;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLSession;
@@ -888,13 +890,25 @@ public abstract class IO {
 	public static void writeImage(Image image, String type, String file) throws IOException {
 		File f = new File(file);
 		createDirectory(f.getParentFile());
-		ImageIO.write(toBufferedImage(image), type, f);
+		writeImage(toBufferedImage(image), type, f);
 	}
 
 	public static void writeImage(Image image, int width, int height, String type, String file) throws IOException {
 		File f = new File(file);
 		createDirectory(f.getParentFile());
-		ImageIO.write(toBufferedImage(image, width, height), type, f);
+		writeImage(toBufferedImage(image, width, height), type, f);
+	}
+
+	private static void writeImage(BufferedImage image, String type, File file) throws IOException {
+		if (image.getTransparency() != Transparency.OPAQUE && !isAlphaSupported(image, type)) {
+			image = toRgbImage(image, image.getWidth(), image.getHeight());
+		}
+		if (!ImageIO.write(image, type, file)) throw new IOException("No writer for image type " + type);
+	}
+
+	private static boolean isAlphaSupported(BufferedImage image, String type) {
+		if ("jpg".equalsIgnoreCase(type) || "jpeg".equalsIgnoreCase(type)) return false;
+		return ImageIO.getImageWriters(ImageTypeSpecifier.createFromRenderedImage(image), type).hasNext();
 	}
 
 	public static BufferedImage toBufferedImage(Image img) {
@@ -904,6 +918,10 @@ public abstract class IO {
 
 	public static BufferedImage toBufferedImage(Image img, int width, int height) {
 		if (img instanceof BufferedImage) return (BufferedImage) img;
+		return toRgbImage(img, width, height);
+	}
+
+	private static BufferedImage toRgbImage(Image img, int width, int height) {
 		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 		Graphics2D g = image.createGraphics();
 		g.drawImage(img, 0, 0, null);
@@ -954,49 +972,19 @@ public abstract class IO {
 		saveScaled(loadImage(new File(sourceFile)), destinationType, destinationFile, maxWidth, maxHeight);
 	}
 
+	/**
+	 * Returns a <code>BufferedImage</code>, see <code>ImageScaler</code>.
+	 */
 	public static Image getScaled(BufferedImage image, int maxWidth, int maxHeight) {
-		int width = image.getWidth();
-		int height = image.getHeight();
-		if (width <= maxWidth && height <= maxHeight) { return image; }
-
-		if (width > maxWidth) {
-			width = maxWidth;
-			height = height * maxWidth / image.getWidth();
-		}
-
-		int h;
-		int w;
-		if (height > maxHeight) {
-			h = maxHeight;
-			w = width * maxHeight / height;
-		} else {
-			h = height;
-			w = width;
-		}
-
-		return image.getScaledInstance(w, h, Image.SCALE_SMOOTH);
+		return ImageScaler.scaleToFit(image, maxWidth, maxHeight);
 	}
 
 	public static Image scaledToWidth(BufferedImage image, int targetWidth) {
-		int width = image.getWidth();
-		int height = image.getHeight();
-		if (width == targetWidth) { return image; }
-
-		width = targetWidth;
-		height = height * targetWidth / image.getWidth();
-
-		return image.getScaledInstance(width, height, Image.SCALE_SMOOTH);
+		return ImageScaler.scaleToWidth(image, targetWidth);
 	}
 
 	public static Image scaledToHeight(BufferedImage image, int targetHeight) {
-		int width = image.getWidth();
-		int height = image.getHeight();
-		if (height == targetHeight) { return image; }
-
-		height = targetHeight;
-		width = width * targetHeight / image.getHeight();
-
-		return image.getScaledInstance(width, height, Image.SCALE_SMOOTH);
+		return ImageScaler.scaleToHeight(image, targetHeight);
 	}
 
 	public static void copyDataToFile(byte[] data, File file) {
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.io;
+
+import ilarkesto.core.json.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Feeds a <code>JsonParser</code> from a <code>Reader</code> or an <code>InputStream</code>.
+ */
+public class ReaderJsonInput implements JsonParser.Input {
+
+	private Reader in;
+
+	public ReaderJsonInput(Reader in) {
+		this.in = in;
+	}
+
+	public ReaderJsonInput(InputStream in, String encoding) {
+		try {
+			this.in = new InputStreamReader(in, encoding);
+		} catch (UnsupportedEncodingException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	public ReaderJsonInput(InputStream in) {
+		this(in, IO.UTF_8);
+	}
+
+	public static JsonParser createParser(Reader in) {
+		return new JsonParser(new ReaderJsonInput(in));
+	}
+
+	public static JsonParser createParser(InputStream in) {
+		return new JsonParser(new ReaderJsonInput(in));
+	}
+
+	@Override
+	public int read(char[] buffer, int offset, int length) throws IOException {
+		return in.read(buffer, offset, length);
+	}
+
+}
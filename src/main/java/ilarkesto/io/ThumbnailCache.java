@@ -0,0 +1,202 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.io;
+
+import ilarkesto.concurrent.DeamonThreadFactory;
+import ilarkesto.core.logging.Log;
+
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Disk cache of scaled images, keyed by the hash of the source file content and the target size. Least recently
+ * used thumbnails are deleted when the cache exceeds its size limit.
+ */
+public class ThumbnailCache {
+
+	private static final Log LOG = Log.get(ThumbnailCache.class);
+
+	private static final int MAX_REMEMBERED_HASHES = 10000;
+
+	private final File dir;
+	private final long maxBytes;
+	private final AtomicLong size = new AtomicLong();
+	private final ConcurrentMap<String, String> sourceHashes = new ConcurrentHashMap<String, String>();
+
+	public ThumbnailCache(File dir, long maxBytes) {
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		IO.createDirectory(dir);
+		for (File file : IO.listFiles(dir)) {
+			size.addAndGet(file.length());
+		}
+	}
+
+	/**
+	 * Returns the thumbnail file, scaling the source only if it is not cached yet.
+	 */
+	public File getThumbnail(File source, int maxWidth, int maxHeight) {
+		String key = getSourceHash(source) + "_" + maxWidth + "x" + maxHeight;
+		File file = getCachedFile(key);
+		if (file != null) {
+			file.setLastModified(System.currentTimeMillis());
+			return file;
+		}
+
+		BufferedImage image = ImageScaler.scaleToFit(IO.loadImage(source), maxWidth, maxHeight);
+		String type = image.getTransparency() == Transparency.OPAQUE ? "jpg" : "png";
+		file = new File(dir, key + "." + type);
+		File tmpFile = new File(dir, key + "." + Thread.currentThread().getId() + ".tmp");
+		try {
+			if (!ImageIO.write(image, type, tmpFile)) throw new IOException("No writer for image type " + type);
+		} catch (IOException ex) {
+			tmpFile.delete();
+			throw new RuntimeException("Writing thumbnail for " + source + " failed", ex);
+		}
+		long length = tmpFile.length();
+		IO.move(tmpFile, file, true);
+		if (size.addAndGet(length) > maxBytes) evict(file);
+		return file;
+	}
+
+	/**
+	 * Creates the thumbnails for the images in the directory in parallel.
+	 */
+	public void createThumbnails(File sourceDir, int maxWidth, int maxHeight) {
+		List<File> images = new ArrayList<File>();
+		for (File file : IO.listFiles(sourceDir)) {
+			if (isImage(file)) images.add(file);
+		}
+		createThumbnails(images, maxWidth, maxHeight, Runtime.getRuntime().availableProcessors());
+	}
+
+	public void createThumbnails(Collection<File> sources, final int maxWidth, final int maxHeight, int threads) {
+		if (sources.isEmpty()) return;
+		long start = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new DeamonThreadFactory());
+		try {
+			List<Future<File>> futures = new ArrayList<Future<File>>(sources.size());
+			for (final File source : sources) {
+				futures.add(executor.submit(new Callable<File>() {
+
+					@Override
+					public File call() {
+						return getThumbnail(source, maxWidth, maxHeight);
+					}
+
+				}));
+			}
+			for (Future<File> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException ex) {
+			throw new RuntimeException(ex);
+		} catch (ExecutionException ex) {
+			throw new RuntimeException("Creating thumbnails failed", ex.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		LOG.info("Thumbnails created:", sources.size(), "in", System.currentTimeMillis() - start, "ms");
+	}
+
+	public long getSize() {
+		return size.get();
+	}
+
+	private File getCachedFile(String key) {
+		File file = new File(dir, key + ".jpg");
+		if (file.exists()) return file;
+		file = new File(dir, key + ".png");
+		if (file.exists()) return file;
+		return null;
+	}
+
+	private String getSourceHash(File source) {
+		String id = source.getAbsolutePath() + "|" + source.length() + "|" + source.lastModified();
+		String hash = sourceHashes.get(id);
+		if (hash == null) {
+			hash = new BigInteger(1, IO.hash("SHA-1", source)).toString(16);
+			if (sourceHashes.size() >= MAX_REMEMBERED_HASHES) sourceHashes.clear();
+			sourceHashes.put(id, hash);
+		}
+		return hash;
+	}
+
+	/**
+	 * Deletes the least recently used thumbnails, except the one just created.
+	 */
+	private synchronized void evict(File keep) {
+		if (size.get() <= maxBytes) return;
+		File[] files = dir.listFiles();
+		if (files == null) return;
+		final long[] lastModified = new long[files.length];
+		Integer[] order = new Integer[files.length];
+		for (int i = 0; i < files.length; i++) {
+			lastModified[i] = files[i].lastModified();
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				long la = lastModified[a];
+				long lb = lastModified[b];
+				return la < lb ? -1 : (la == lb ? 0 : 1);
+			}
+
+		});
+		long total = 0;
+		for (File file : files) {
+			total += file.length();
+		}
+		long limit = maxBytes * 9 / 10;
+		int deleted = 0;
+		for (int i = 0; i < order.length && total > limit; i++) {
+			File file = files[order[i]];
+			if (file.equals(keep) || file.getName().endsWith(".tmp")) continue;
+			long length = file.length();
+			if (file.delete()) {
+				total -= length;
+				deleted++;
+			}
+		}
+		size.set(total);
+		LOG.debug("Thumbnails evicted:", deleted);
+	}
+
+	private static boolean isImage(File file) {
+		String name = file.getName().toLowerCase();
+		return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png") || name.endsWith(".gif");
+	}
+
+}
@@ -14,16 +14,17 @@
  */
 package ilarkesto.locale;
 
-import ilarkesto.base.Cache;
 import ilarkesto.base.Str;
 import ilarkesto.core.logging.Log;
 import ilarkesto.io.IO;
 import ilarkesto.swing.Swing;
 
 import java.io.IOException;
-import java.text.MessageFormat;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
@@ -34,7 +35,7 @@ public final class LearningLocalizer extends Localizer {
 
 	private static final String RESOURCE_BUNDLE = "strings";
 
-	private Properties templates;
+	private ConcurrentMap<String, Templates> templatesByLanguage = new ConcurrentHashMap<String, Templates>();
 	private JFrame frame;
 
 	// --- dependencies ---
@@ -52,16 +53,6 @@ public final class LearningLocalizer extends Localizer {
 
 	// --- ---
 
-	private Cache<String, MessageFormat> formatsCache = new Cache<String, MessageFormat>(
-			new Cache.Factory<String, MessageFormat>() {
-
-				@Override
-				public MessageFormat create(String template) {
-					return new MessageFormat(template);
-				}
-
-			});
-
 	public String string(Object context, String string, Object... parameters) {
 		return string(context.getClass().getName() + "." + string, parameters);
 	}
@@ -70,62 +61,64 @@ public final class LearningLocalizer extends Localizer {
 	public String string(String key, Object... parameters) {
 		if (!developmentMode) locale = Locale.GERMAN;
 
-		if (parameters != null) {
-			for (int i = 0; i < parameters.length; i++) {
-				if (parameters[i] instanceof Throwable) parameters[i] = Str.format(parameters[i]);
-			}
-		}
-
-		String template = getTemplate(locale, key);
+		MessageTemplate template = getTemplate(locale, key);
 		if (template == null) {
 			StringBuilder sb = new StringBuilder();
 			sb.append("@@@");
 			sb.append(key);
 			for (int i = 0; i < parameters.length; i++) {
-				sb.append(", ").append(parameters[i]);
+				Object parameter = parameters[i];
+				if (parameter instanceof Throwable) parameter = Str.format(parameter);
+				sb.append(", ").append(parameter);
 			}
 			return sb.toString();
 		}
-		return format(template, parameters);
+		return template.format(parameters);
 	}
 
-	private String getTemplate(Locale locale, String key) {
-		String template = getTemplates(locale).getProperty(key);
+	private MessageTemplate getTemplate(Locale locale, String key) {
+		Templates templates = getTemplates(locale);
+		MessageTemplate template = templates.get(key);
 		if (template != null) return template;
 		if (developmentMode) {
-			template = learnTemplate(key);
-			if (template != null) return template;
+			String learned = learnTemplate(templates, key);
+			if (learned != null) return templates.get(key);
 		} else {
 			LOG.error("missing " + locale + "-local string: ", key);
 		}
-		return template;
+		return null;
 	}
 
-	private String format(String template, Object... parameters) {
-		if (template.startsWith("<html")) {
-			for (int i = 0; i < parameters.length; i++) {
-				if (parameters[i] instanceof String) {
-					parameters[i] = Str.replaceForHtml((String) parameters[i]);
-				}
-			}
-		}
-		MessageFormat f = formatsCache.get(template);
-		return f.format(parameters);
+	/**
+	 * Loads and compiles all templates of the locale, so that rendering does not need to parse them.
+	 */
+	public void preload(Locale locale) {
+		Templates templates = getTemplates(locale);
+		int count = templates.compileAll();
+		LOG.info("Localizer templates preloaded:", locale, count);
 	}
 
-	private Properties getTemplates(Locale locale) {
+	private Templates getTemplates(Locale locale) {
+		String localeSuffix = getLocaleSuffix(locale);
+		Templates templates = templatesByLanguage.get(localeSuffix);
 		if (templates == null) {
-			String localeSuffix = locale.toString();
-			if (localeSuffix.length() > 2) localeSuffix = localeSuffix.substring(0, 2);
 			String resource = RESOURCE_BUNDLE + "_" + localeSuffix + ".properties";
 			ClassLoader classLoader = getClass().getClassLoader();
 			LOG.debug("Loading localizer data:", resource, classLoader);
-			templates = IO.loadProperties(classLoader.getResource(resource), IO.UTF_8);
+			templates = new Templates(IO.loadProperties(classLoader.getResource(resource), IO.UTF_8));
+			Templates existing = templatesByLanguage.putIfAbsent(localeSuffix, templates);
+			if (existing != null) templates = existing;
 		}
 		return templates;
 	}
 
-	private String learnTemplate(String key) {
+	private static String getLocaleSuffix(Locale locale) {
+		String localeSuffix = locale.toString();
+		if (localeSuffix.length() > 2) localeSuffix = localeSuffix.substring(0, 2);
+		return localeSuffix;
+	}
+
+	private String learnTemplate(Templates templates, String key) {
 		if (frame == null) frame = new JFrame(getClass().getSimpleName());
 		Swing.center(frame);
 		frame.setVisible(true);
@@ -137,8 +130,7 @@ public final class LearningLocalizer extends Localizer {
 
 		if (template != null) {
 			templates.put(key, template);
-			String localeSuffix = locale.toString();
-			if (localeSuffix.length() > 2) localeSuffix = localeSuffix.substring(0, 2);
+			String localeSuffix = getLocaleSuffix(locale);
 			try {
 				IO.appendLine("src/main/java/" + RESOURCE_BUNDLE + "_" + localeSuffix + ".properties",
 					key + "=" + Str.replaceUnicodeCharsWithJavaNotation(template));
@@ -159,4 +151,41 @@ public final class LearningLocalizer extends Localizer {
 	public String toString() {
 		return locale == null ? getClass().getSimpleName() : locale.toString();
 	}
+
+	/**
+	 * Templates of one language, compiled on first use.
+	 */
+	private static class Templates {
+
+		private final Properties properties;
+		private final ConcurrentMap<String, MessageTemplate> compiled = new ConcurrentHashMap<String, MessageTemplate>();
+
+		public Templates(Properties properties) {
+			this.properties = properties;
+		}
+
+		public MessageTemplate get(String key) {
+			MessageTemplate template = compiled.get(key);
+			if (template != null) return template;
+			String pattern = properties.getProperty(key);
+			if (pattern == null) return null;
+			template = MessageTemplate.compile(pattern);
+			MessageTemplate existing = compiled.putIfAbsent(key, template);
+			return existing == null ? template : existing;
+		}
+
+		public void put(String key, String pattern) {
+			properties.put(key, pattern);
+			compiled.put(key, MessageTemplate.compile(pattern));
+		}
+
+		public int compileAll() {
+			for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+				get((String) entry.getKey());
+			}
+			return compiled.size();
+		}
+
+	}
+
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.locale;
+
+import ilarkesto.base.Str;
+
+import java.text.DateFormat;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Precompiled <code>MessageFormat</code> pattern. Immutable and thread-safe, formats directly into a
+ * <code>StringBuilder</code>. Simple <code>{n}</code> arguments are formatted like <code>MessageFormat</code>
+ * does, patterns with format types or styles are delegated to a synchronized <code>MessageFormat</code>.
+ */
+public final class MessageTemplate {
+
+	private final String pattern;
+	private final boolean html;
+	private final String[] literals;
+	private final int[] arguments;
+	private final MessageFormat complexFormat;
+
+	private MessageTemplate(String pattern, String[] literals, int[] arguments, MessageFormat complexFormat) {
+		this.pattern = pattern;
+		this.html = pattern.startsWith("<html");
+		this.literals = literals;
+		this.arguments = arguments;
+		this.complexFormat = complexFormat;
+	}
+
+	public String format(Object... parameters) {
+		StringBuilder sb = new StringBuilder(pattern.length() + 16);
+		format(sb, parameters);
+		return sb.toString();
+	}
+
+	public void format(StringBuilder sb, Object... parameters) {
+		if (complexFormat != null) {
+			Object[] prepared = prepareParameters(parameters);
+			synchronized (complexFormat) {
+				sb.append(complexFormat.format(prepared));
+			}
+			return;
+		}
+		for (int i = 0; i < arguments.length; i++) {
+			sb.append(literals[i]);
+			appendArgument(sb, arguments[i], parameters);
+		}
+		sb.append(literals[arguments.length]);
+	}
+
+	private void appendArgument(StringBuilder sb, int index, Object[] parameters) {
+		if (parameters == null || index >= parameters.length) {
+			sb.append('{').append(index).append('}');
+			return;
+		}
+		Object value = prepareParameter(parameters[index]);
+		if (value == null) {
+			sb.append("null");
+		} else if (value instanceof String) {
+			sb.append((String) value);
+		} else if (value instanceof Number) {
+			sb.append(NumberFormat.getInstance(Locale.getDefault()).format(value));
+		} else if (value instanceof Date) {
+			sb.append(DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, Locale.getDefault()).format(
+				value));
+		} else {
+			sb.append(value.toString());
+		}
+	}
+
+	private Object prepareParameter(Object value) {
+		if (value instanceof Throwable) value = Str.format(value);
+		if (html && value instanceof String) value = Str.replaceForHtml((String) value);
+		return value;
+	}
+
+	private Object[] prepareParameters(Object[] parameters) {
+		if (parameters == null) return null;
+		Object[] ret = new Object[parameters.length];
+		for (int i = 0; i < parameters.length; i++) {
+			ret[i] = prepareParameter(parameters[i]);
+		}
+		return ret;
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	@Override
+	public String toString() {
+		return pattern;
+	}
+
+	// --- parsing ---
+
+	/**
+	 * Parses a pattern in <code>MessageFormat</code> syntax. Throws an <code>IllegalArgumentException</code> on
+	 * invalid patterns.
+	 */
+	public static MessageTemplate compile(String pattern) {
+		List<String> literals = new ArrayList<String>();
+		List<Integer> arguments = new ArrayList<Integer>();
+		StringBuilder literal = new StringBuilder();
+		boolean quoted = false;
+		int len = pattern.length();
+		int i = 0;
+		while (i < len) {
+			char c = pattern.charAt(i);
+			if (c == '\'') {
+				if (i + 1 < len && pattern.charAt(i + 1) == '\'') {
+					literal.append('\'');
+					i += 2;
+					continue;
+				}
+				quoted = !quoted;
+				i++;
+				continue;
+			}
+			if (quoted || c != '{') {
+				literal.append(c);
+				i++;
+				continue;
+			}
+			int end = pattern.indexOf('}', i);
+			if (end < 0) throw new IllegalArgumentException("Unmatched braces in the pattern: " + pattern);
+			int index = parseArgumentIndex(pattern, i + 1, end);
+			if (index < 0) return new MessageTemplate(pattern, null, null, new MessageFormat(pattern));
+			literals.add(literal.toString());
+			literal.setLength(0);
+			arguments.add(index);
+			i = end + 1;
+		}
+		literals.add(literal.toString());
+
+		int[] argumentsArray = new int[arguments.size()];
+		for (int j = 0; j < argumentsArray.length; j++) {
+			argumentsArray[j] = arguments.get(j);
+		}
+		return new MessageTemplate(pattern, literals.toArray(new String[literals.size()]), argumentsArray, null);
+	}
+
+	/**
+	 * Returns the index of a simple argument, <code>-1</code> for arguments with format type or style.
+	 */
+	private static int parseArgumentIndex(String pattern, int begin, int end) {
+		String s = pattern.substring(begin, end).trim();
+		if (s.length() == 0) throw new IllegalArgumentException("Missing argument index in the pattern: " + pattern);
+		int index = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				if (c == ',' && i > 0) return -1;
+				throw new IllegalArgumentException("Illegal argument index in the pattern: " + pattern);
+			}
+			index = index * 10 + (c - '0');
+		}
+		return index;
+	}
+
+}
@@ -19,6 +19,7 @@ import ilarkesto.base.Sys;
 import ilarkesto.core.logging.Log;
 import ilarkesto.core.logging.LogRecord;
 import ilarkesto.core.logging.LogRecordHandler;
+import ilarkesto.di.Context;
 import ilarkesto.io.IO;
 
 import java.io.BufferedWriter;
@@ -90,7 +91,7 @@ public class DefaultLogDataHandler implements LogRecordHandler {
 
 	@Override
 	public void log(LogRecord record) {
-		record.context = Thread.currentThread().getName();
+		record.context = Context.getCurrentThreadContextName();
 		try {
 			queue.put(record);
 		} catch (InterruptedException e) {
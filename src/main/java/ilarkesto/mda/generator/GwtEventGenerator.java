@@ -15,13 +15,13 @@
 package ilarkesto.mda.generator;
 
 import ilarkesto.core.event.Quiet;
+import ilarkesto.core.event.TypedEvent;
 import ilarkesto.mda.model.Node;
 import ilarkesto.mda.model.NodeTypes;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 
 public class GwtEventGenerator extends AJavaClassGenerator implements NodeTypes {
@@ -76,6 +76,10 @@ public class GwtEventGenerator extends AJavaClassGenerator implements NodeTypes
 		out.endIf();
 		out.endMethod();
 
+		out.beginMethod("boolean", "isHandler", Arrays.asList("Object handler"));
+		out.returnStatement("handler instanceof " + event.getValue() + "Handler");
+		out.endMethod();
+
 		out.endClass();
 	}
 
@@ -85,8 +89,9 @@ public class GwtEventGenerator extends AJavaClassGenerator implements NodeTypes
 	}
 
 	private Collection<String> getInterfaces() {
-		if (event.containsChild(Flag, QUIET_FLAG)) return Arrays.asList(Quiet.class.getName());
-		return Collections.emptyList();
+		if (event.containsChild(Flag, QUIET_FLAG))
+			return Arrays.asList(TypedEvent.class.getName(), Quiet.class.getName());
+		return Arrays.asList(TypedEvent.class.getName());
 	}
 
 	private String getPackageName() {
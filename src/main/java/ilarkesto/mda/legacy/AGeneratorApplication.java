@@ -21,6 +21,7 @@ import ilarkesto.core.logging.Log;
 import ilarkesto.di.BeanProvider;
 import ilarkesto.di.Context;
 import ilarkesto.di.app.AApplication;
+import ilarkesto.mda.legacy.generator.AClassGenerator;
 import ilarkesto.mda.legacy.generator.ApplicationGenerator;
 import ilarkesto.mda.legacy.generator.BeanTemplateGenerator;
 import ilarkesto.mda.legacy.generator.ComponentGenerator;
@@ -28,6 +29,7 @@ import ilarkesto.mda.legacy.generator.DaoGenerator;
 import ilarkesto.mda.legacy.generator.DaoTepmplateGenerator;
 import ilarkesto.mda.legacy.generator.DatobGenerator;
 import ilarkesto.mda.legacy.generator.EntityGenerator;
+import ilarkesto.mda.legacy.generator.GeneratorPipeline;
 import ilarkesto.mda.legacy.model.ApplicationModel;
 import ilarkesto.mda.legacy.model.BeanModel;
 import ilarkesto.mda.legacy.model.ComponentModel;
@@ -37,6 +39,7 @@ import ilarkesto.mda.legacy.model.GwtServiceModel;
 import ilarkesto.persistence.AEntity;
 import ilarkesto.persistence.AStructure;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -46,12 +49,20 @@ public abstract class AGeneratorApplication extends AApplication {
 
 	private static final Log LOG = Log.get(AGeneratorApplication.class);
 
+	private GeneratorPipeline pipeline;
+
 	protected void onGeneration() {
 		BeanProvider beanProvider = Context.get().getBeanProvider();
 
-		for (BeanModel beanModel : beanProvider.getBeansByType(BeanModel.class)) {
-			if (beanModel.getPackageName().startsWith("ilarkesto")) continue;
-			onBeanGeneration(beanModel);
+		pipeline = new GeneratorPipeline(getGeneratorManifestFile());
+		try {
+			for (BeanModel beanModel : beanProvider.getBeansByType(BeanModel.class)) {
+				if (beanModel.getPackageName().startsWith("ilarkesto")) continue;
+				onBeanGeneration(beanModel);
+			}
+			pipeline.run();
+		} finally {
+			pipeline = null;
 		}
 
 		// for (UiComponentModel uiComponentModel : beanProvider.getBeansByType(UiComponentModel.class)) {
@@ -62,23 +73,38 @@ public abstract class AGeneratorApplication extends AApplication {
 	protected void onBeanGeneration(BeanModel beanModel) {
 		if (beanModel instanceof EntityModel) {
 			EntityModel em = (EntityModel) beanModel;
-			new EntityGenerator(em).generate();
-			new DaoGenerator(em).generate();
-			new BeanTemplateGenerator(em).generate();
-			new DaoTepmplateGenerator(em).generate();
+			generate(new EntityGenerator(em));
+			generate(new DaoGenerator(em));
+			generate(new BeanTemplateGenerator(em));
+			generate(new DaoTepmplateGenerator(em));
 		} else if (beanModel instanceof ApplicationModel) {
 			ApplicationModel am = (ApplicationModel) beanModel;
-			new ApplicationGenerator(am).generate();
+			generate(new ApplicationGenerator(am));
 		} else if (beanModel instanceof ComponentModel) {
 			ComponentModel cm = (ComponentModel) beanModel;
 			if (cm.isGwt()) return;
-			new ComponentGenerator(cm).generate();
-			new BeanTemplateGenerator(cm).generate();
+			generate(new ComponentGenerator(cm));
+			generate(new BeanTemplateGenerator(cm));
 		} else {
-			new DatobGenerator((DatobModel) beanModel).generate();
+			generate(new DatobGenerator((DatobModel) beanModel));
 		}
 	}
 
+	/**
+	 * Queues the generator in the pipeline while <code>onGeneration()</code> runs, otherwise generates immediately.
+	 */
+	protected final void generate(AClassGenerator generator) {
+		if (pipeline == null) {
+			generator.generate();
+			return;
+		}
+		pipeline.add(generator);
+	}
+
+	protected File getGeneratorManifestFile() {
+		return new File("build/generator-manifest.properties");
+	}
+
 	@Override
 	public final void onStart() {}
 
@@ -42,8 +42,17 @@ public abstract class AClassGenerator {
 	private PrintWriter out;
 
 	public final void generate() {
+		String code = createCode();
+		if (code == null) return;
+		writeCode(code);
+	}
+
+	/**
+	 * Renders the source code. Returns <code>null</code> if the file exists and must not be overwritten.
+	 */
+	final String createCode() {
 		File file = getFile();
-		if (file.exists() && !isOverwrite()) return;
+		if (file.exists() && !isOverwrite()) return null;
 		stringWriter = new StringWriter();
 		out = new PrintWriter(stringWriter);
 
@@ -108,7 +117,13 @@ public abstract class AClassGenerator {
 
 		out.close();
 		String code = stringWriter.toString();
-		code = code.trim();
+		stringWriter = null;
+		out = null;
+		return code.trim();
+	}
+
+	final void writeCode(String code) {
+		File file = getFile();
 		if (file.exists()) {
 			String previousCode = IO.readFile(file, IO.UTF_8);
 			previousCode = previousCode.trim();
@@ -249,6 +264,14 @@ public abstract class AClassGenerator {
 		return false;
 	}
 
+	/**
+	 * Returns <code>false</code> if the generated code depends on more than the fields of this generator (e.g. on
+	 * files), so it can not be skipped by the <code>GeneratorPipeline</code>.
+	 */
+	protected boolean isIncremental() {
+		return true;
+	}
+
 	protected boolean isAbstract() {
 		return true;
 	}
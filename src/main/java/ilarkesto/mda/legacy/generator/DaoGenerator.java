@@ -70,14 +70,32 @@ public class DaoGenerator extends ABeanGenerator<EntityModel> {
 			s(
 				"    public Set<" + bean.getName() + "> getEntitiesVisibleForUser(final " + getUserClassName()
 						+ " user) {").ln();
-			s("        return getEntities(new Predicate<" + bean.getName() + ">() {").ln();
-			s("            public boolean test(" + bean.getName() + " e) {").ln();
-			s("                return Auth.isVisible(e, user);").ln();
-			s("            }").ln();
-			s("        });").ln();
+			s("        return super.getEntitiesVisibleForUser(user);").ln();
 			s("    }").ln();
 		}
 
+		PropertyModel ownersProperty = null;
+		for (PropertyModel p : bean.getProperties()) {
+			if ("owners".equals(p.getName()) && p.isReference() && p.isCollection()) ownersProperty = p;
+		}
+		if (bean.isOwnable() && !bean.isViewProtected() && ownersProperty != null) {
+			String keysType = "ilarkesto.auth.VisibilityKeys<" + bean.getName() + ", ilarkesto.auth.AUser>";
+			ln();
+			ln("    @Override");
+			ln("    protected " + keysType + " createVisibilityKeys() {");
+			ln("        return new " + keysType + "() {");
+			ln("            public java.util.Collection<String> getEntityKeys(" + bean.getName() + " e) {");
+			ln("                java.util.Set<String> ret = new java.util.HashSet<String>();");
+			ln("                for (" + ownersProperty.getContentType() + " owner : e.getOwners()) ret.add(owner.getId());");
+			ln("                return ret;");
+			ln("            }");
+			ln("            public java.util.Collection<String> getUserKeys(ilarkesto.auth.AUser user) {");
+			ln("                return java.util.Collections.singleton(user.getId());");
+			ln("            }");
+			ln("        };");
+			ln("    }");
+		}
+
 		ln();
 		comment("clear caches");
 		ln("    public void clearCaches() {");
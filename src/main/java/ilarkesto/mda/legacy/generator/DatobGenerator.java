@@ -201,6 +201,17 @@ public class DatobGenerator<D extends DatobModel> extends ABeanGenerator<D> {
 		}
 		ln("        return false;");
 		ln("    }");
+
+		ln();
+		ln("    public boolean collectSearchTexts(java.util.Collection<String> texts) {");
+		ln("        boolean complete = super.collectSearchTexts(texts);");
+		for (PropertyModel p : bean.getProperties()) {
+			if (!p.isSearchable()) continue;
+			ln("        if (!collectSearchTexts(get" + Str.uppercaseFirstLetter(p.getName())
+					+ "(), texts)) complete = false;");
+		}
+		ln("        return complete;");
+		ln("    }");
 	}
 
 	private void writeProperty(PropertyModel p) {
@@ -27,7 +27,7 @@ import ilarkesto.mda.legacy.model.EntityModel;
 import ilarkesto.mda.legacy.model.PropertyModel;
 import ilarkesto.persistence.ADatob;
 import ilarkesto.persistence.AEntity;
-import ilarkesto.search.Searchable;
+import ilarkesto.search.Indexable;
 
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -165,7 +165,7 @@ public class EntityGenerator extends DatobGenerator<EntityModel> {
 		if (bean.isEditProtected()) result.add(EditProtected.class.getName() + "<" + getUserClassName() + ">");
 		if (bean.isDeleteProtected()) result.add(DeleteProtected.class.getName() + "<" + getUserClassName() + ">");
 		if (bean.isOwnable()) result.add(Ownable.class.getName() + "<" + getUserClassName() + ">");
-		if (bean.isSearchable()) result.add(Searchable.class.getName());
+		if (bean.isSearchable()) result.add(Indexable.class.getName());
 		if (!bean.isAbstract()) result.add(Comparable.class.getName() + "<" + bean.getName() + ">");
 		return result;
 	}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.mda.legacy.generator;
+
+import ilarkesto.base.Str;
+import ilarkesto.concurrent.DeamonThreadFactory;
+import ilarkesto.core.logging.Log;
+import ilarkesto.io.IO;
+import ilarkesto.mda.legacy.model.BeanModel;
+import ilarkesto.mda.legacy.model.ModelUtils;
+import ilarkesto.mda.legacy.model.PropertyModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs class generators concurrently and skips generators whose inputs did not change since the last run. The
+ * inputs of a generator are the objects referenced by its fields (the models), the byte code of the generator
+ * classes and the library the generators are built on. Their hashes are persisted in a manifest file.
+ */
+public class GeneratorPipeline {
+
+	private static final Log LOG = Log.get(GeneratorPipeline.class);
+
+	private static final String INPUT_SUFFIX = ".input";
+	private static final String OUTPUT_SUFFIX = ".output";
+
+	/**
+	 * Library classes used by all generators. Hashed when the library is not loaded from a jar.
+	 */
+	private static final Class[] LIBRARY_CLASSES = { AClassGenerator.class, ABeanGenerator.class, BeanModel.class,
+			PropertyModel.class, ModelUtils.class, Str.class, ilarkesto.core.base.Str.class };
+
+	private File manifestFile;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private List<AClassGenerator> generators = new ArrayList<AClassGenerator>();
+
+	public GeneratorPipeline(File manifestFile) {
+		super();
+		this.manifestFile = manifestFile;
+	}
+
+	public GeneratorPipeline setThreads(int threads) {
+		this.threads = threads;
+		return this;
+	}
+
+	public GeneratorPipeline add(AClassGenerator generator) {
+		generators.add(generator);
+		return this;
+	}
+
+	public void run() {
+		final Properties manifest = manifestFile.exists() ? IO.loadProperties(manifestFile, IO.UTF_8)
+				: new Properties();
+		final Properties newManifest = new Properties();
+
+		List<AClassGenerator> changed = new ArrayList<AClassGenerator>();
+		for (AClassGenerator generator : generators) {
+			File file = generator.getFile();
+			String key = file.getPath();
+			String inputHash = hashInputs(generator);
+			if (generator.isIncremental() && inputHash.equals(manifest.getProperty(key + INPUT_SUFFIX)) && file.exists()) {
+				newManifest.setProperty(key + INPUT_SUFFIX, inputHash);
+				newManifest.setProperty(key + OUTPUT_SUFFIX, manifest.getProperty(key + OUTPUT_SUFFIX, ""));
+				continue;
+			}
+			newManifest.setProperty(key + INPUT_SUFFIX, inputHash);
+			changed.add(generator);
+		}
+		LOG.info("Generating", changed.size(), "of", generators.size(), "classes");
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), new DeamonThreadFactory());
+		List<Future<?>> futures = new ArrayList<Future<?>>(changed.size());
+		for (final AClassGenerator generator : changed) {
+			futures.add(executor.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					generate(generator, manifest, newManifest);
+				}
+			}));
+		}
+		executor.shutdown();
+
+		RuntimeException failure = null;
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				futures.get(i).get();
+			} catch (InterruptedException ex) {
+				throw new RuntimeException(ex);
+			} catch (ExecutionException ex) {
+				Throwable cause = ex.getCause();
+				LOG.error("Generation failed:", changed.get(i).getFile().getPath(), cause);
+				synchronized (newManifest) {
+					newManifest.remove(changed.get(i).getFile().getPath() + INPUT_SUFFIX);
+				}
+				if (failure == null) failure = new RuntimeException("Generation failed", cause);
+			}
+		}
+
+		IO.saveProperties(newManifest, getClass().getName(), manifestFile);
+		if (failure != null) throw failure;
+	}
+
+	private void generate(AClassGenerator generator, Properties manifest, Properties newManifest) {
+		File file = generator.getFile();
+		String key = file.getPath();
+		String code = generator.createCode();
+		if (code == null) return;
+		String outputHash = Str.toHexString(IO.hash(IO.MD5, code.getBytes()));
+		if (!outputHash.equals(manifest.getProperty(key + OUTPUT_SUFFIX)) || !file.exists()) {
+			generator.writeCode(code);
+		}
+		synchronized (newManifest) {
+			newManifest.setProperty(key + OUTPUT_SUFFIX, outputHash);
+		}
+	}
+
+	// --- input hashing ---
+
+	private Map<Class, byte[]> classHashes = new IdentityHashMap<Class, byte[]>();
+	private byte[] libraryHash;
+
+	String hashInputs(AClassGenerator generator) {
+		MessageDigest md = createDigest();
+		for (Class type = generator.getClass(); type != AClassGenerator.class; type = type.getSuperclass()) {
+			md.update(getClassHash(type));
+		}
+		md.update(getLibraryHash());
+		md.update(generator.getFile().getPath().getBytes());
+		new InputHasher(md).update(generator);
+		return Str.toHexString(md.digest());
+	}
+
+	/**
+	 * Hash of the jar containing the generators, or of the library classes when running from a class directory.
+	 */
+	synchronized byte[] getLibraryHash() {
+		if (libraryHash != null) return libraryHash;
+		File jar = null;
+		CodeSource codeSource = AClassGenerator.class.getProtectionDomain().getCodeSource();
+		if (codeSource != null && codeSource.getLocation() != null
+				&& codeSource.getLocation().getPath().endsWith(".jar")) {
+			try {
+				jar = new File(codeSource.getLocation().toURI());
+			} catch (URISyntaxException ex) {
+				LOG.debug("Unsupported code source:", codeSource.getLocation());
+			}
+		}
+		if (jar != null && jar.isFile()) {
+			libraryHash = IO.hash(IO.MD5, jar);
+		} else {
+			MessageDigest md = createDigest();
+			for (Class type : LIBRARY_CLASSES) {
+				md.update(getClassHash(type));
+			}
+			libraryHash = md.digest();
+		}
+		return libraryHash;
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(IO.MD5);
+		} catch (NoSuchAlgorithmException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	private synchronized byte[] getClassHash(Class type) {
+		byte[] hash = classHashes.get(type);
+		if (hash == null) {
+			InputStream in = type.getResourceAsStream(type.getSimpleName() + ".class");
+			if (in == null) {
+				hash = type.getName().getBytes();
+			} else {
+				hash = IO.hash(IO.MD5, in);
+				try {
+					in.close();
+				} catch (IOException ex) {}
+			}
+			classHashes.put(type, hash);
+		}
+		return hash;
+	}
+
+	/**
+	 * Feeds the object graph reachable from the fields of a generator into a digest. Objects are visited once,
+	 * further references are written as back references.
+	 */
+	private static class InputHasher {
+
+		private MessageDigest md;
+		private Map<Object, Integer> visited = new IdentityHashMap<Object, Integer>();
+
+		public InputHasher(MessageDigest md) {
+			super();
+			this.md = md;
+		}
+
+		public void update(AClassGenerator generator) {
+			visited.put(generator, 0);
+			updateFields(generator, generator.getClass(), AClassGenerator.class);
+		}
+
+		private void update(Object o) {
+			if (o == null) {
+				write("null");
+				return;
+			}
+			Class type = o.getClass();
+			if (o instanceof String || o instanceof Number || o instanceof Boolean || o instanceof Character
+					|| o instanceof Enum) {
+				write(type.getName());
+				write(o.toString());
+				return;
+			}
+			if (o instanceof Class) {
+				write(((Class) o).getName());
+				return;
+			}
+
+			Integer ref = visited.get(o);
+			if (ref != null) {
+				write("ref:" + ref);
+				return;
+			}
+			visited.put(o, visited.size());
+			write(type.getName());
+
+			if (type.isArray()) {
+				int length = Array.getLength(o);
+				for (int i = 0; i < length; i++) {
+					update(Array.get(o, i));
+				}
+			} else if (o instanceof Collection) {
+				for (Object element : (Collection) o) {
+					update(element);
+				}
+			} else if (o instanceof Map) {
+				for (Map.Entry entry : ((Map<?, ?>) o).entrySet()) {
+					update(entry.getKey());
+					update(entry.getValue());
+				}
+			} else if (type.getName().startsWith("java.")) {
+				write(o.toString());
+			} else {
+				updateFields(o, type, Object.class);
+			}
+		}
+
+		private void updateFields(Object o, Class type, Class stopType) {
+			for (; type != stopType && type != null; type = type.getSuperclass()) {
+				for (Field field : type.getDeclaredFields()) {
+					int modifiers = field.getModifiers();
+					if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic())
+						continue;
+					field.setAccessible(true);
+					write(field.getName());
+					try {
+						update(field.get(o));
+					} catch (IllegalAccessException ex) {
+						throw new RuntimeException(ex);
+					}
+				}
+			}
+		}
+
+		private void write(String s) {
+			md.update(s.getBytes());
+			md.update((byte) 0);
+		}
+
+	}
+
+}
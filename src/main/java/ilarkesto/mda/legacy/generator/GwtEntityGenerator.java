@@ -445,6 +445,9 @@ public class GwtEntityGenerator extends ABeanGenerator<EntityModel> {
 		ln();
 		ln("    public void updateProperties(Map props) {");
 		for (PropertyModel p : bean.getProperties()) {
+			// the server sends only changed properties
+			String key = p.isReference() ? p.getName() + "Id" + (p.isCollection() ? "s" : "") : p.getName();
+			ln("        if (props.containsKey(\"" + key + "\")) {");
 			if (p.isCollection()) {
 				if (p.isReference()) {
 					ln("        " + p.getName() + "Ids = (Set<String>) props.get(\"" + p.getName() + "Ids\");");
@@ -475,6 +478,7 @@ public class GwtEntityGenerator extends ABeanGenerator<EntityModel> {
 					}
 				}
 			}
+			ln("        }");
 		}
 		ln("        updateLocalModificationTime();");
 		ln("    }");
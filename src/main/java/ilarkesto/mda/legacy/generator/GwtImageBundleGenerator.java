@@ -59,6 +59,11 @@ public class GwtImageBundleGenerator extends AClassGenerator {
 		ln("    " + AbstractImagePrototype.class.getName(), name + "();");
 	}
 
+	@Override
+	protected boolean isIncremental() {
+		return false;
+	}
+
 	@Override
 	protected String getSuperclass() {
 		return ImageBundle.class.getName();
@@ -21,6 +21,7 @@ import ilarkesto.io.IO;
 
 import java.io.File;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -80,14 +81,11 @@ public class CsvFileModelSource implements ModelSource {
 		if (!"type".equals(record.get(2))) throw new RuntimeException("Illegal model file format");
 		if (!"value".equals(record.get(3))) throw new RuntimeException("Illegal model file format");
 
+		List<List<String>> records = new ArrayList<List<String>>();
 		while ((record = parser.nextRecord()) != null) {
-			String id = record.get(0);
-			String parentId = record.get(1);
-			String type = record.get(2);
-			String value = record.get(3);
-			model.addNode(id, parentId, type, value);
+			records.add(record);
 		}
-
+		model.addNodes(records);
 	}
 
 }
@@ -16,11 +16,17 @@ package ilarkesto.mda.model;
 
 import ilarkesto.core.logging.Log;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class Model implements NodeTypes {
 
 	private static final Log LOG = Log.get(Model.class);
 
 	private Node root;
+	private Map<String, Node> nodesById = new HashMap<String, Node>();
 
 	public Model() {
 		createRootNode();
@@ -31,7 +37,9 @@ public class Model implements NodeTypes {
 	}
 
 	private void createRootNode() {
+		nodesById.clear();
 		root = new Node(this, "root", null, "root", null);
+		register(root);
 	}
 
 	public void addNode(String id, String parentId, String type, String value) {
@@ -41,10 +49,77 @@ public class Model implements NodeTypes {
 		parent.addChild(id, type, value);
 	}
 
+	/**
+	 * Adds many nodes at once. Each record is <code>[id, parentId, type, value]</code>. Records may reference
+	 * parents which come later in the list, they are attached as soon as their parent exists.
+	 */
+	public void addNodes(List<List<String>> records) {
+		Map<String, List<List<String>>> orphansByParentId = new HashMap<String, List<List<String>>>();
+		for (List<String> record : records) {
+			String id = record.get(0);
+			if ("root".equals(id)) continue;
+			String parentId = record.get(1);
+			Node parent = nodesById.get(parentId);
+			if (parent == null) {
+				List<List<String>> orphans = orphansByParentId.get(parentId);
+				if (orphans == null) {
+					orphans = new ArrayList<List<String>>();
+					orphansByParentId.put(parentId, orphans);
+				}
+				orphans.add(record);
+				continue;
+			}
+			addNodeWithOrphans(parent, record, orphansByParentId);
+		}
+		if (orphansByParentId.isEmpty()) return;
+
+		// parent ids which are not exact ids, fallback to the slow lookup
+		for (String parentId : new ArrayList<String>(orphansByParentId.keySet())) {
+			List<List<String>> orphans = orphansByParentId.remove(parentId);
+			if (orphans == null) continue;
+			Node parent = getNodeById(parentId);
+			if (parent == null) throw new RuntimeException("Node does not exist: " + parentId);
+			for (List<String> orphan : orphans) {
+				addNodeWithOrphans(parent, orphan, orphansByParentId);
+			}
+		}
+	}
+
+	private void addNodeWithOrphans(Node parent, List<String> record, Map<String, List<List<String>>> orphansByParentId) {
+		List<Node> pending = new ArrayList<Node>();
+		pending.add(parent.addChild(record.get(0), record.get(2), record.get(3)));
+		while (!pending.isEmpty() && !orphansByParentId.isEmpty()) {
+			Node node = pending.remove(pending.size() - 1);
+			List<List<String>> orphans = orphansByParentId.remove(node.getId());
+			if (orphans == null) continue;
+			for (List<String> orphan : orphans) {
+				pending.add(node.addChild(orphan.get(0), orphan.get(2), orphan.get(3)));
+			}
+		}
+	}
+
 	public Node getNodeById(String id) {
+		if (id == null) return null;
+		Node node = nodesById.get(id);
+		if (node != null) return node;
 		return getNodeById(root, id);
 	}
 
+	void register(Node node) {
+		nodesById.put(node.getId(), node);
+	}
+
+	void unregister(Node node) {
+		nodesById.remove(node.getId());
+		for (Node child : node.getChildren()) {
+			unregister(child);
+		}
+	}
+
+	public int getNodeCount() {
+		return nodesById.size();
+	}
+
 	private Node getNodeById(Node node, String id) {
 		if (node.getId().endsWith(id)) return node;
 		for (Node child : node.getChildren()) {
@@ -15,8 +15,14 @@
 package ilarkesto.mda.model;
 
 import ilarkesto.core.event.AEvent;
+import ilarkesto.core.event.TypedEvent;
 
-public class ModelChangedEvent extends AEvent {
+public class ModelChangedEvent extends AEvent implements TypedEvent {
+
+	@Override
+	public boolean isHandler(Object handler) {
+		return handler instanceof ModelChangedHandler;
+	}
 
 	@Override
 	public void tryToGetHandled(Object handler) {
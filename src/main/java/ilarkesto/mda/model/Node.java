@@ -15,7 +15,10 @@
 package ilarkesto.mda.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class Node implements Comparable<Node> {
@@ -26,6 +29,7 @@ public class Node implements Comparable<Node> {
 	private String type;
 	private String value;
 	private List<Node> children = new ArrayList<Node>();
+	private Map<String, List<Node>> childrenByType;
 	private boolean transient_;
 
 	Node(Model model, String id, Node parent, String type, String value) {
@@ -50,6 +54,8 @@ public class Node implements Comparable<Node> {
 	Node addChild(String id, String type, String value) {
 		Node child = new Node(model, id, this, type, value);
 		children.add(child);
+		if (childrenByType != null) getChildrenByTypeIndexBucket(type).add(child);
+		model.register(child);
 		return child;
 	}
 
@@ -98,11 +104,9 @@ public class Node implements Comparable<Node> {
 	}
 
 	public List<Node> getChildrenByType(String type) {
-		List<Node> ret = new ArrayList<Node>();
-		for (Node child : getChildren()) {
-			if (child.isType(type)) ret.add(child);
-		}
-		return ret;
+		List<Node> ret = getChildrenByTypeIndex().get(type);
+		if (ret == null) return Collections.emptyList();
+		return Collections.unmodifiableList(ret);
 	}
 
 	public List<Node> getChildrenByTypeRecursive(String type) {
@@ -120,10 +124,27 @@ public class Node implements Comparable<Node> {
 	}
 
 	public Node getChildByType(String type) {
-		for (Node child : getChildren()) {
-			if (child.isType(type)) return child;
+		List<Node> nodes = getChildrenByTypeIndex().get(type);
+		return nodes == null ? null : nodes.get(0);
+	}
+
+	private Map<String, List<Node>> getChildrenByTypeIndex() {
+		if (childrenByType == null) {
+			childrenByType = new HashMap<String, List<Node>>();
+			for (Node child : children) {
+				getChildrenByTypeIndexBucket(child.getType()).add(child);
+			}
 		}
-		return null;
+		return childrenByType;
+	}
+
+	private List<Node> getChildrenByTypeIndexBucket(String type) {
+		List<Node> nodes = childrenByType.get(type);
+		if (nodes == null) {
+			nodes = new ArrayList<Node>(2);
+			childrenByType.put(type, nodes);
+		}
+		return nodes;
 	}
 
 	public boolean containsChildByType(String type) {
@@ -161,11 +182,18 @@ public class Node implements Comparable<Node> {
 	}
 
 	public boolean removeChild(Node child) {
-		return children.remove(child);
+		if (!children.remove(child)) return false;
+		childrenByType = null;
+		model.unregister(child);
+		return true;
 	}
 
 	public void removeAllChildren() {
+		for (Node child : children) {
+			model.unregister(child);
+		}
 		children.clear();
+		childrenByType = null;
 	}
 
 	public void removeFromParent() {
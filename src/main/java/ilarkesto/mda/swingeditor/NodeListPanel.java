@@ -24,6 +24,7 @@ import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -201,7 +202,7 @@ public class NodeListPanel extends JPanel {
 		private List<Node> nodes = Collections.emptyList();
 
 		public void update() {
-			nodes = node.getChildren();
+			nodes = new ArrayList<Node>(node.getChildren());
 			Collections.sort(nodes);
 			fireTableDataChanged();
 		}
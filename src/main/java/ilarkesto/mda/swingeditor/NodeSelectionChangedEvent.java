@@ -15,9 +15,10 @@
 package ilarkesto.mda.swingeditor;
 
 import ilarkesto.core.event.AEvent;
+import ilarkesto.core.event.TypedEvent;
 import ilarkesto.mda.model.Node;
 
-public class NodeSelectionChangedEvent extends AEvent {
+public class NodeSelectionChangedEvent extends AEvent implements TypedEvent {
 
 	private Node selectedNode;
 
@@ -26,6 +27,11 @@ public class NodeSelectionChangedEvent extends AEvent {
 		this.selectedNode = selectedNode;
 	}
 
+	@Override
+	public boolean isHandler(Object handler) {
+		return handler instanceof NodeSelectionChangedHandler;
+	}
+
 	@Override
 	public void tryToGetHandled(Object handler) {
 		if (handler instanceof NodeSelectionChangedHandler) {
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.net;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Single pass extractor for values of <code>href</code> and <code>src</code> attributes. Characters are pushed
+ * in chunks, so HTML can be processed while it is read and is never copied.
+ */
+public class HtmlLinkExtractor {
+
+	private static final char[] HREF = "href".toCharArray();
+	private static final char[] SRC = "src".toCharArray();
+	private static final int MAX_URL_LENGTH = 8192;
+
+	private static final int SCAN = 0;
+	private static final int BEFORE_EQUALS = 1;
+	private static final int BEFORE_VALUE = 2;
+	private static final int VALUE = 3;
+
+	private Collection<String> urls;
+	private int state = SCAN;
+	private int hrefPos;
+	private int srcPos;
+	private char quote;
+	private StringBuilder value = new StringBuilder();
+
+	public HtmlLinkExtractor(Collection<String> urls) {
+		super();
+		this.urls = urls;
+	}
+
+	public static List<String> extract(CharSequence html) {
+		List<String> urls = new ArrayList<String>();
+		HtmlLinkExtractor extractor = new HtmlLinkExtractor(urls);
+		int len = html.length();
+		for (int i = 0; i < len; i++) {
+			extractor.append(html.charAt(i));
+		}
+		return urls;
+	}
+
+	public static List<String> extract(Reader in) throws IOException {
+		List<String> urls = new ArrayList<String>();
+		HtmlLinkExtractor extractor = new HtmlLinkExtractor(urls);
+		char[] buffer = new char[4096];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			extractor.append(buffer, 0, read);
+		}
+		return urls;
+	}
+
+	public void append(char[] buffer, int offset, int length) {
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			append(buffer[i]);
+		}
+	}
+
+	public void append(char c) {
+		switch (state) {
+			case SCAN:
+				scan(c);
+				return;
+			case BEFORE_EQUALS:
+				if (c == '=') {
+					state = BEFORE_VALUE;
+				} else if (!Character.isWhitespace(c)) {
+					state = SCAN;
+					scan(c);
+				}
+				return;
+			case BEFORE_VALUE:
+				if (Character.isWhitespace(c)) return;
+				state = VALUE;
+				value.setLength(0);
+				if (c == '"' || c == '\'') {
+					quote = c;
+				} else {
+					quote = 0;
+					appendValue(c);
+				}
+				return;
+			case VALUE:
+				appendValue(c);
+				return;
+		}
+	}
+
+	private void scan(char c) {
+		char lower = Character.toLowerCase(c);
+		hrefPos = lower == HREF[hrefPos] ? hrefPos + 1 : (lower == HREF[0] ? 1 : 0);
+		srcPos = lower == SRC[srcPos] ? srcPos + 1 : (lower == SRC[0] ? 1 : 0);
+		if (hrefPos == HREF.length || srcPos == SRC.length) {
+			hrefPos = 0;
+			srcPos = 0;
+			state = BEFORE_EQUALS;
+		}
+	}
+
+	private void appendValue(char c) {
+		boolean end = quote == 0 ? (Character.isWhitespace(c) || c == '>') : c == quote;
+		if (!end) {
+			if (value.length() < MAX_URL_LENGTH) value.append(c);
+			return;
+		}
+		state = SCAN;
+		if (value.length() >= MAX_URL_LENGTH) return;
+		String url = value.toString();
+		if (url.contains("\" + gaJsHost + \"")) return;
+		urls.add(url);
+	}
+
+}
@@ -14,34 +14,58 @@
  */
 package ilarkesto.net;
 
+import ilarkesto.base.BloomFilter;
 import ilarkesto.base.Str;
-import ilarkesto.core.base.Utl;
+import ilarkesto.concurrent.DeamonThreadFactory;
 import ilarkesto.core.logging.Log;
 import ilarkesto.io.IO;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
+import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Crawls all pages reachable from a start URL. URLs are processed from a FIFO frontier by a pool of worker threads
+ * (see <code>setThreads()</code>), while the number of parallel connections and the delay between requests are
+ * limited per host. With more than one thread the <code>Consumer</code> must be thread safe.
+ */
 public class WebCrawler {
 
 	private static Log log = Log.get(WebCrawler.class);
 
+	private static final int CHARSET_SNIFF_LENGTH = 4096;
+
 	private Filter filter;
 	private Consumer consumer;
 	private String defaultEncoding = IO.UTF_8;
+	private int threads = 1;
+	private int maxConnectionsPerHost = 2;
+	private long hostDelay;
+
+	private Set<String> crawledUrls = Collections.synchronizedSet(new HashSet<String>());
+	private BloomFilter crawledUrlsFilter;
+	private Map<String, Host> hosts = new HashMap<String, Host>();
 
-	private Set<String> crawledUrls = new HashSet<String>();
+	private ExecutorService executor;
+	private int pendingUrls;
+	private RuntimeException failure;
 
 	public static void download(String url, String destinationDir) {
 		WebCrawler wc = new WebCrawler();
@@ -51,32 +75,106 @@ public class WebCrawler {
 
 	public void crawl(String url) {
 		if (filter == null) filter = new HostFilter(url);
-		crawl(Utl.toList(url));
+		executor = Executors.newFixedThreadPool(threads, new DeamonThreadFactory());
+		try {
+			markCrawled(url);
+			enqueue(url);
+			waitForPendingUrls();
+		} finally {
+			executor.shutdownNow();
+			executor = null;
+		}
+		if (failure != null) {
+			RuntimeException ex = failure;
+			failure = null;
+			throw ex;
+		}
 	}
 
-	private void crawl(Collection<String> urls) {
-		Set<String> newUrls = new HashSet<String>();
-		for (String url : urls) {
-			Set<String> parsedUrls = doCrawl(url);
-			if (!parsedUrls.isEmpty()) log.debug("  parsed", parsedUrls.size(), "URLs");
-			newUrls.addAll(parsedUrls);
+	private synchronized void waitForPendingUrls() {
+		while (pendingUrls > 0) {
+			try {
+				wait(1000);
+			} catch (InterruptedException ex) {
+				throw new RuntimeException(ex);
+			}
 		}
-		List<String> nextUrls = new ArrayList<String>();
-		for (String url : newUrls) {
-			if (crawledUrls.contains(url)) continue;
-			if (filter != null && !filter.accept(url)) {
-				log.debug("  filtered out:", url);
+	}
+
+	private void enqueue(final String url) {
+		synchronized (this) {
+			if (failure != null) return;
+			pendingUrls++;
+		}
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					process(url);
+				} catch (Throwable ex) {
+					synchronized (WebCrawler.this) {
+						if (failure == null)
+							failure = ex instanceof RuntimeException ? (RuntimeException) ex : new RuntimeException(ex);
+					}
+				} finally {
+					synchronized (WebCrawler.this) {
+						pendingUrls--;
+						if (pendingUrls == 0) WebCrawler.this.notifyAll();
+					}
+				}
+			}
+		});
+	}
+
+	private void process(String url) throws InterruptedException {
+		Set<String> parsedUrls;
+		Host host = getHost(url);
+		host.connections.acquire();
+		try {
+			host.waitForTurn();
+			parsedUrls = doCrawl(url);
+		} finally {
+			host.connections.release();
+		}
+		if (!parsedUrls.isEmpty()) log.debug("  parsed", parsedUrls.size(), "URLs");
+		for (String parsedUrl : parsedUrls) {
+			if (filter != null && !filter.accept(parsedUrl)) {
+				log.debug("  filtered out:", parsedUrl);
 				continue;
 			}
-			nextUrls.add(url);
+			if (!markCrawled(parsedUrl)) continue;
+			enqueue(parsedUrl);
+		}
+	}
+
+	/**
+	 * Returns <code>false</code> if the URL is already crawled or queued.
+	 */
+	private boolean markCrawled(String url) {
+		if (crawledUrlsFilter != null) return crawledUrlsFilter.add(url);
+		return crawledUrls.add(url);
+	}
+
+	private Host getHost(String url) {
+		String key;
+		try {
+			key = new URL(url).getHost();
+		} catch (MalformedURLException ex) {
+			key = "";
+		}
+		synchronized (hosts) {
+			Host host = hosts.get(key);
+			if (host == null) {
+				host = new Host();
+				hosts.put(key, host);
+			}
+			return host;
 		}
-		if (nextUrls.isEmpty()) return;
-		crawl(nextUrls);
 	}
 
 	private Set<String> doCrawl(String url) {
 		log.debug("Crawling:", url);
-		crawledUrls.add(url);
 		if (!isProbablyHtml(url)) {
 			if (consumer == null || consumer.skipNonHtml(url)) return Collections.emptySet();
 		}
@@ -102,30 +200,23 @@ public class WebCrawler {
 		if (type.startsWith("text/html")) {
 			String encoding = connection.getContentEncoding();
 			if (Str.isBlank(encoding)) encoding = defaultEncoding;
-			byte[] data;
+			InputStream in = null;
 			try {
-				data = IO.readToByteArray(connection.getInputStream());
+				in = new BufferedInputStream(connection.getInputStream(), CHARSET_SNIFF_LENGTH * 2);
+				Reader reader = createReader(in, encoding);
+				if (consumer == null) return parseUrls(HtmlLinkExtractor.extract(reader), url);
+				String html = IO.readToString(reader);
+				consumer.onHtml(url, html);
+				return parseUrls(HtmlLinkExtractor.extract(html), url);
 			} catch (FileNotFoundException ex) {
 				log.debug("  not found:", url);
 				if (consumer != null) consumer.onNotFound(url);
 				return Collections.emptySet();
 			} catch (IOException ex) {
 				throw new RuntimeException("Loading URL failed: " + url, ex);
+			} finally {
+				if (in != null) IO.close(in);
 			}
-			String html;
-			try {
-				html = new String(data, encoding);
-			} catch (UnsupportedEncodingException ex) {
-				throw new RuntimeException("Loading URL failed: " + url, ex);
-			}
-			String charset = Str.getCharsetFromHtml(html, encoding);
-			if (!encoding.equals(charset)) {
-				try {
-					html = new String(data, charset);
-				} catch (UnsupportedEncodingException ex) {}
-			}
-			if (consumer != null) consumer.onHtml(url, html);
-			return parseUrls(html, url);
 		}
 		if (consumer != null) consumer.onUnknown(url, connection);
 		return Collections.emptySet();
@@ -167,11 +258,34 @@ public class WebCrawler {
 		return url;
 	}
 
-	private Set<String> parseUrls(String html, String sourceUrl) {
+	/**
+	 * Creates a reader for the HTML stream, using the charset declared in the beginning of the HTML. The bytes are
+	 * decoded only once.
+	 */
+	private static Reader createReader(InputStream in, String encoding) throws IOException {
+		in.mark(CHARSET_SNIFF_LENGTH);
+		byte[] head = new byte[CHARSET_SNIFF_LENGTH];
+		int len = 0;
+		int read;
+		while (len < head.length && (read = in.read(head, len, head.length - len)) >= 0) {
+			len += read;
+		}
+		in.reset();
+		String charset = Str.getCharsetFromHtml(new String(head, 0, len, "ISO-8859-1"), encoding);
+		try {
+			return new InputStreamReader(in, charset);
+		} catch (UnsupportedEncodingException ex) {
+			try {
+				return new InputStreamReader(in, encoding);
+			} catch (UnsupportedEncodingException ex1) {
+				throw new RuntimeException("Unsupported encoding: " + encoding, ex1);
+			}
+		}
+	}
+
+	private Set<String> parseUrls(Collection<String> parsedUrls, String sourceUrl) {
 		Set<String> urls = new HashSet<String>();
-		HtmlParser parser = new HtmlParser(html);
-		String url;
-		while ((url = parser.nextUrl()) != null) {
+		for (String url : parsedUrls) {
 			url = normalizeUrl(url);
 			if (Str.isBlank(url)) continue;
 			url = concatUrlWithRelative(sourceUrl, url);
@@ -196,6 +310,32 @@ public class WebCrawler {
 		return url;
 	}
 
+	/**
+	 * Number of worker threads which crawl in parallel.
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+		this.maxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+	}
+
+	/**
+	 * Minimum time in milliseconds between two requests to the same host.
+	 */
+	public void setHostDelay(long hostDelay) {
+		this.hostDelay = hostDelay;
+	}
+
+	/**
+	 * Remembers crawled URLs in a bloom filter instead of a set, for crawls too large to keep all URLs in memory.
+	 * Some URLs may be skipped by false positives. <code>getCrawledUrls()</code> stays empty.
+	 */
+	public void activateBloomFilter(int expectedUrlCount, double falsePositiveProbability) {
+		crawledUrlsFilter = new BloomFilter(expectedUrlCount, falsePositiveProbability);
+	}
+
 	public void setFilter(Filter filter) {
 		this.filter = filter;
 	}
@@ -216,41 +356,20 @@ public class WebCrawler {
 		return crawledUrls;
 	}
 
-	private class HtmlParser {
-
-		private String html;
+	private class Host {
 
-		public HtmlParser(String html) {
-			super();
-			this.html = html;
-		}
+		private Semaphore connections = new Semaphore(maxConnectionsPerHost);
+		private long nextRequestTime;
 
-		public String nextUrl() {
-			int idx = Str.indexOf(html, new String[] { "href=", "src=" }, 0);
-			if (idx < 0) return null;
-			html = html.substring(idx);
-			if (html.startsWith("href=")) {
-				html = html.substring(5);
-				return nextAttributeValue();
+		public void waitForTurn() throws InterruptedException {
+			long wait;
+			synchronized (this) {
+				long now = System.currentTimeMillis();
+				if (nextRequestTime < now) nextRequestTime = now;
+				wait = nextRequestTime - now;
+				nextRequestTime += hostDelay;
 			}
-			if (html.startsWith("src=")) {
-				html = html.substring(4);
-				return nextAttributeValue();
-			}
-			throw new IllegalStateException(html);
-		}
-
-		private String nextAttributeValue() {
-			int idx = Str.indexOf(html, new String[] { "\"", "'" }, 0);
-			if (idx < 0) return nextUrl();
-			char quote = html.charAt(idx);
-			html = html.substring(idx + 1);
-			idx = html.indexOf(quote);
-			if (idx < 0) return nextUrl();
-			String url = html.substring(0, idx);
-			html = html.substring(idx + 1);
-			if (url.contains("\" + gaJsHost + \"")) return nextUrl();
-			return url;
+			if (wait > 0) Thread.sleep(wait);
 		}
 	}
 
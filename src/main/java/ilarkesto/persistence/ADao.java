@@ -17,6 +17,8 @@ package ilarkesto.persistence;
 import ilarkesto.auth.AUser;
 import ilarkesto.auth.AUserDao;
 import ilarkesto.auth.Auth;
+import ilarkesto.auth.VisibilityIndex;
+import ilarkesto.auth.VisibilityKeys;
 import ilarkesto.base.Iconized;
 import ilarkesto.base.Reflect;
 import ilarkesto.base.Utl;
@@ -25,6 +27,8 @@ import ilarkesto.core.logging.Log;
 import ilarkesto.di.Context;
 import ilarkesto.fp.Predicate;
 import ilarkesto.id.IdentifiableResolver;
+import ilarkesto.search.Indexable;
+import ilarkesto.search.SearchIndex;
 import ilarkesto.search.SearchResultsConsumer;
 import ilarkesto.search.Searchable;
 import ilarkesto.search.Searcher;
@@ -34,6 +38,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -45,6 +50,9 @@ public abstract class ADao<E extends AEntity> extends ADatobManager<E> implement
 
 	private Predicate<Class> entityTypeFilter;
 	private String icon;
+	private volatile SearchIndex<E> searchIndex;
+	private volatile VisibilityIndex<E, AUser> visibilityIndex;
+	private volatile boolean visibilityIndexUnsupported;
 
 	// --- ---
 
@@ -106,22 +114,42 @@ public abstract class ADao<E extends AEntity> extends ADatobManager<E> implement
 	}
 
 	public int getEntitiesCount(Predicate<E> predicate) {
-		return transactionService.getEntitiesCount(getEntityTypeFilter(), (Predicate<AEntity>) predicate);
+		long start = scanStarted();
+		int result = transactionService.getEntitiesCount(getEntityTypeFilter(), (Predicate<AEntity>) predicate);
+		scanCompleted(start, predicate);
+		return result;
 	}
 
 	public E getEntity(Predicate<E> predicate) {
-		return (E) transactionService.getEntity(getEntityTypeFilter(), (Predicate<AEntity>) predicate);
+		long start = scanStarted();
+		E result = (E) transactionService.getEntity(getEntityTypeFilter(), (Predicate<AEntity>) predicate);
+		scanCompleted(start, predicate);
+		return result;
+	}
+
+	public final EntityQuery<E> query() {
+		return new EntityQuery<E>(this);
+	}
+
+	public final EntityQuery<E> query(Predicate<E> filter) {
+		return new EntityQuery<E>(this).filter(filter);
 	}
 
 	public final Set<E> getEntities(Predicate<E> filter) {
-		// long start = System.currentTimeMillis();
+		long start = scanStarted();
 		Set<E> result = (Set<E>) transactionService.getEntities(getEntityTypeFilter(), (Predicate<AEntity>) filter);
-		// long time = System.currentTimeMillis() - start;
-		// if (time > 2000) throw new RuntimeException("getEntities took too
-		// long. fix it!");
+		scanCompleted(start, filter);
 		return result;
 	}
 
+	private long scanStarted() {
+		return persistenceMetrics == null ? 0 : persistenceMetrics.start();
+	}
+
+	private void scanCompleted(long start, Predicate<E> predicate) {
+		if (persistenceMetrics != null) persistenceMetrics.scanCompleted(start, getEntityName(), predicate);
+	}
+
 	@Override
 	public E getById(String id) {
 		if (id == null) throw new RuntimeException("id must not be null");
@@ -159,6 +187,16 @@ public abstract class ADao<E extends AEntity> extends ADatobManager<E> implement
 	}
 
 	public Set<E> getEntitiesVisibleForUser(final AUser user) {
+		VisibilityIndex<E, AUser> index = getVisibilityIndex();
+		if (index != null) {
+			Set<E> ret = index.getCandidates(user);
+			// the index has the committed entities, the changes of the current transaction are added
+			transactionService.applyCurrentTransaction(ret, getEntityTypeFilter(), null);
+			for (Iterator<E> iterator = ret.iterator(); iterator.hasNext();) {
+				if (!Auth.isVisible(iterator.next(), user)) iterator.remove();
+			}
+			return ret;
+		}
 		return getEntities(new Predicate<E>() {
 
 			@Override
@@ -170,7 +208,10 @@ public abstract class ADao<E extends AEntity> extends ADatobManager<E> implement
 	}
 
 	public Set<E> getEntities() {
-		return (Set<E>) transactionService.getEntities(getEntityTypeFilter(), null);
+		long start = scanStarted();
+		Set<E> result = (Set<E>) transactionService.getEntities(getEntityTypeFilter(), null);
+		scanCompleted(start, null);
+		return result;
 	}
 
 	public void deleteEntity(E entity) {
@@ -238,6 +279,20 @@ public abstract class ADao<E extends AEntity> extends ADatobManager<E> implement
 	public void feed(final SearchResultsConsumer searchBox) {
 		if (!Searchable.class.isAssignableFrom(getEntityClass())) return;
 
+		SearchIndex<E> index = getSearchIndex();
+		Set<E> candidates = index == null ? null : index.search(searchBox.getKeys());
+		if (candidates != null) {
+			// the index has the committed entities, the changes of the current transaction are added
+			transactionService.applyCurrentTransaction(candidates, getEntityTypeFilter(), null);
+			// the candidates include all matches, they are verified with matchesKey()
+			for (E entity : candidates) {
+				if (!Auth.isVisible(entity, searchBox.getSearcher())) continue;
+				if (!Persist.matchesKeys(entity, searchBox.getKeys())) continue;
+				searchBox.addEntity(entity);
+			}
+			return;
+		}
+
 		for (AEntity entity : getEntities(new Predicate<E>() {
 
 			@Override
@@ -252,6 +307,89 @@ public abstract class ADao<E extends AEntity> extends ADatobManager<E> implement
 
 	}
 
+	/**
+	 * Returns the search index of the committed entities, built on first use, or <code>null</code> if the entities
+	 * are not <code>Indexable</code>.
+	 */
+	protected final SearchIndex<E> getSearchIndex() {
+		if (searchIndex == null) {
+			if (!Indexable.class.isAssignableFrom(getEntityClass())) return null;
+			// the updater builds and publishes the index on its first call, the listener is added only once
+			transactionService.addCommitListener(searchIndexUpdater, getEntityTypeFilter());
+		}
+		return searchIndex;
+	}
+
+	private final CommitListener searchIndexUpdater = new CommitListener() {
+
+		@Override
+		public void onCommitted(Collection<AEntity> savedEntities, Collection<AEntity> deletedEntities) {
+			SearchIndex<E> index = searchIndex;
+			if (index == null) {
+				LOG.info("Building search index:", getEntityName());
+				index = new SearchIndex<E>();
+			}
+			for (AEntity entity : savedEntities) {
+				if (isEntityType(entity)) updateSearchIndex(index, (E) entity);
+			}
+			for (AEntity entity : deletedEntities) {
+				if (isEntityType(entity)) index.remove((E) entity);
+			}
+			searchIndex = index;
+		}
+
+	};
+
+	private boolean isEntityType(AEntity entity) {
+		return getEntityTypeFilter().test(entity.getClass());
+	}
+
+	private static <E extends AEntity> void updateSearchIndex(SearchIndex<E> index, E entity) {
+		List<String> texts = new ArrayList<String>();
+		boolean complete = ((Indexable) entity).collectSearchTexts(texts);
+		index.put(entity, texts, complete);
+	}
+
+	/**
+	 * Extractor for the visibility index used by <code>getEntitiesVisibleForUser()</code>. Returns
+	 * <code>null</code> if there is no index for this entity type.
+	 */
+	protected VisibilityKeys<E, AUser> createVisibilityKeys() {
+		return null;
+	}
+
+	private VisibilityIndex<E, AUser> getVisibilityIndex() {
+		if (visibilityIndex == null && !visibilityIndexUnsupported) {
+			if (createVisibilityKeys() == null) {
+				visibilityIndexUnsupported = true;
+				return null;
+			}
+			// the updater builds and publishes the index on its first call, the listener is added only once
+			transactionService.addCommitListener(visibilityIndexUpdater, getEntityTypeFilter());
+		}
+		return visibilityIndex;
+	}
+
+	private final CommitListener visibilityIndexUpdater = new CommitListener() {
+
+		@Override
+		public void onCommitted(Collection<AEntity> savedEntities, Collection<AEntity> deletedEntities) {
+			VisibilityIndex<E, AUser> index = visibilityIndex;
+			if (index == null) {
+				LOG.info("Building visibility index:", getEntityName());
+				index = new VisibilityIndex<E, AUser>(createVisibilityKeys());
+			}
+			for (AEntity entity : savedEntities) {
+				if (isEntityType(entity)) index.put((E) entity);
+			}
+			for (AEntity entity : deletedEntities) {
+				if (isEntityType(entity)) index.remove((E) entity);
+			}
+			visibilityIndex = index;
+		}
+
+	};
+
 	protected final TransactionService getTransactionService() {
 		return transactionService;
 	}
@@ -318,6 +456,12 @@ public abstract class ADao<E extends AEntity> extends ADatobManager<E> implement
 
 	private TransactionService transactionService;
 
+	private PersistenceMetrics persistenceMetrics;
+
+	public final void setPersistenceMetrics(PersistenceMetrics persistenceMetrics) {
+		this.persistenceMetrics = persistenceMetrics;
+	}
+
 	public final void setTransactionService(TransactionService transactionService) {
 		this.transactionService = transactionService;
 	}
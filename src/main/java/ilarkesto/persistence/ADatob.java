@@ -69,6 +69,14 @@ public abstract class ADatob implements Searchable {
 		return false;
 	}
 
+	/**
+	 * Collects the texts checked by <code>matchesKey()</code>. Returns <code>false</code> if they are incomplete,
+	 * because matching depends on referenced entities.
+	 */
+	public boolean collectSearchTexts(Collection<String> texts) {
+		return true;
+	}
+
 	protected void repairDeadReferences(String entityId) {}
 
 	public void ensureIntegrity() {}
@@ -155,6 +163,26 @@ public abstract class ADatob implements Searchable {
 		return false;
 	}
 
+	/**
+	 * Returns <code>false</code> for referenced entities and other searchables, their texts can change without
+	 * the referencing object being saved.
+	 */
+	protected static boolean collectSearchTexts(Object object, Collection<String> texts) {
+		if (object == null) return true;
+		if (object instanceof ADatob && !(object instanceof AEntity))
+			return ((ADatob) object).collectSearchTexts(texts);
+		if (object instanceof Searchable) return false;
+		if (object instanceof Collection) {
+			boolean complete = true;
+			for (Object element : (Collection) object) {
+				if (!collectSearchTexts(element, texts)) complete = false;
+			}
+			return complete;
+		}
+		texts.add(object.toString());
+		return true;
+	}
+
 	protected void repairDeadDatob(ADatob datob) {
 		throw new OverrideExpectedException();
 	}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.persistence;
+
+import ilarkesto.base.Str;
+import ilarkesto.base.time.Date;
+import ilarkesto.core.logging.Log;
+import ilarkesto.io.IO;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content addressed store for entity backups. Each distinct file content is stored once under its hash in
+ * <code>objects/</code>, optionally gzip compressed. Every backup is recorded as one line in the manifest of
+ * the day in <code>manifests/</code>. Expiry drops whole manifests and then the objects no longer referenced.
+ */
+public class BackupStore {
+
+	private static final Log LOG = Log.get(BackupStore.class);
+
+	private static final String HASH_ALGORITHM = "SHA-1";
+	private static final String COMPRESSED_SUFFIX = ".gz";
+	private static final String MANIFEST_SUFFIX = ".txt";
+
+	private final File dir;
+	private final File objectsDir;
+	private final File manifestsDir;
+	private final boolean compress;
+
+	private Date manifestDate;
+	private Writer manifestWriter;
+
+	public BackupStore(File dir, boolean compress) {
+		this.dir = dir;
+		this.compress = compress;
+		objectsDir = new File(dir, "objects");
+		manifestsDir = new File(dir, "manifests");
+	}
+
+	/**
+	 * Backs up the content of the file and records it in today's manifest.
+	 * 
+	 * @return the number of bytes written to the object store, <code>0</code> if the content was already
+	 *         stored
+	 */
+	public synchronized long store(String type, File file) {
+		byte[] data = IO.readFileToByteArray(file);
+		String hash = Str.toHexString(IO.hash(HASH_ALGORITHM, data)).toLowerCase();
+		long written = 0;
+		if (getObjectFile(hash) == null) written = writeObject(hash, data);
+		appendToManifest(System.currentTimeMillis() + "\t" + type + "\t" + file.getName() + "\t" + hash + "\n");
+		return written;
+	}
+
+	private long writeObject(String hash, byte[] data) {
+		File file = new File(objectsDir, hash.substring(0, 2) + "/" + hash + (compress ? COMPRESSED_SUFFIX : ""));
+		File tmpFile = new File(file.getPath() + ".tmp");
+		IO.createDirectory(file.getParentFile());
+		try {
+			OutputStream out = new FileOutputStream(tmpFile);
+			if (compress) out = new GZIPOutputStream(out);
+			out.write(data);
+			out.close();
+		} catch (IOException ex) {
+			throw new RuntimeException("Writing backup object failed: " + tmpFile.getAbsolutePath(), ex);
+		}
+		IO.move(tmpFile, file, true);
+		return file.length();
+	}
+
+	private void appendToManifest(String line) {
+		Date today = Date.today();
+		try {
+			if (manifestWriter == null || !today.equals(manifestDate)) {
+				closeManifest();
+				IO.createDirectory(manifestsDir);
+				manifestWriter = new OutputStreamWriter(new FileOutputStream(getManifestFile(today), true), IO.UTF_8);
+				manifestDate = today;
+			}
+			manifestWriter.write(line);
+			manifestWriter.flush();
+		} catch (IOException ex) {
+			throw new RuntimeException("Writing backup manifest failed: " + getManifestFile(today), ex);
+		}
+	}
+
+	private void closeManifest() {
+		if (manifestWriter == null) return;
+		IO.closeQuiet(manifestWriter);
+		manifestWriter = null;
+		manifestDate = null;
+	}
+
+	public synchronized void close() {
+		closeManifest();
+	}
+
+	/**
+	 * Returns the backups recorded on the given day, in the order they were made.
+	 */
+	public synchronized List<Entry> getEntries(Date date) {
+		List<Entry> entries = new ArrayList<Entry>();
+		File file = getManifestFile(date);
+		if (!file.exists()) return entries;
+		BufferedReader in = null;
+		try {
+			in = new BufferedReader(new InputStreamReader(new FileInputStream(file), IO.UTF_8));
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] fields = line.split("\t");
+				if (fields.length != 4) continue;
+				entries.add(new Entry(Long.parseLong(fields[0]), fields[1], fields[2], fields[3]));
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException("Reading backup manifest failed: " + file.getAbsolutePath(), ex);
+		} finally {
+			IO.closeQuiet(in);
+		}
+		return entries;
+	}
+
+	/**
+	 * Opens the backed up content with the given hash.
+	 */
+	public synchronized InputStream open(String hash) {
+		File file = getObjectFile(hash);
+		if (file == null) throw new RuntimeException("Backup object does not exist: " + hash);
+		byte[] data = IO.readFileToByteArray(file);
+		InputStream in = new ByteArrayInputStream(data);
+		if (!file.getName().endsWith(COMPRESSED_SUFFIX)) return in;
+		try {
+			return new GZIPInputStream(in);
+		} catch (IOException ex) {
+			throw new RuntimeException("Reading backup object failed: " + file.getAbsolutePath(), ex);
+		}
+	}
+
+	/**
+	 * Deletes the manifests of days before the deadline and the objects referenced only by them.
+	 */
+	public synchronized void deleteOlderThan(Date deadline) {
+		File[] manifests = manifestsDir.listFiles();
+		if (manifests == null) return;
+		boolean deleted = false;
+		for (File manifest : manifests) {
+			Date date = getManifestDate(manifest);
+			if (date == null || !date.isBefore(deadline)) continue;
+			if (date.equals(manifestDate)) closeManifest();
+			LOG.info("Deleting backup manifest:", manifest.getName());
+			IO.delete(manifest);
+			deleted = true;
+		}
+		if (deleted) deleteUnreferencedObjects();
+	}
+
+	private void deleteUnreferencedObjects() {
+		Set<String> referenced = new HashSet<String>();
+		File[] manifests = manifestsDir.listFiles();
+		if (manifests != null) {
+			for (File manifest : manifests) {
+				Date date = getManifestDate(manifest);
+				if (date == null) continue;
+				for (Entry entry : getEntries(date)) {
+					referenced.add(entry.getHash());
+				}
+			}
+		}
+		File[] buckets = objectsDir.listFiles();
+		if (buckets == null) return;
+		int count = 0;
+		for (File bucket : buckets) {
+			String[] names = bucket.list();
+			if (names == null) continue;
+			for (String name : names) {
+				String hash = Str.removeSuffix(name, COMPRESSED_SUFFIX);
+				if (referenced.contains(hash)) continue;
+				IO.delete(new File(bucket, name));
+				count++;
+			}
+		}
+		LOG.info("Deleted", count, "unreferenced backup objects");
+	}
+
+	private File getObjectFile(String hash) {
+		File bucket = new File(objectsDir, hash.substring(0, 2));
+		File file = new File(bucket, hash + COMPRESSED_SUFFIX);
+		if (file.exists()) return file;
+		file = new File(bucket, hash);
+		if (file.exists()) return file;
+		return null;
+	}
+
+	private File getManifestFile(Date date) {
+		return new File(manifestsDir, date + MANIFEST_SUFFIX);
+	}
+
+	private static Date getManifestDate(File manifest) {
+		String name = manifest.getName();
+		if (!name.endsWith(MANIFEST_SUFFIX)) return null;
+		try {
+			return new Date(Str.removeSuffix(name, MANIFEST_SUFFIX));
+		} catch (RuntimeException ex) {
+			return null;
+		}
+	}
+
+	public File getDir() {
+		return dir;
+	}
+
+	public boolean isCompress() {
+		return compress;
+	}
+
+	@Override
+	public String toString() {
+		return dir.getPath();
+	}
+
+	public static class Entry {
+
+		private final long time;
+		private final String type;
+		private final String fileName;
+		private final String hash;
+
+		public Entry(long time, String type, String fileName, String hash) {
+			this.time = time;
+			this.type = type;
+			this.fileName = fileName;
+			this.hash = hash;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public String getFileName() {
+			return fileName;
+		}
+
+		public String getHash() {
+			return hash;
+		}
+
+		@Override
+		public String toString() {
+			return type + "/" + fileName + "@" + hash;
+		}
+
+	}
+
+}
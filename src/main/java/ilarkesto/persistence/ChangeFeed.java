@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sequenced log of committed saves and deletes. Consumers remember the last sequence number they have seen and
+ * fetch only the changes since then, so polling costs depend on the change rate, not on the amount of data.
+ * Only the most recent changes are retained; consumers which fall behind have to resynchronize completely.
+ */
+public class ChangeFeed {
+
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	private Change[] changes;
+	private long lastSequence;
+
+	public ChangeFeed(int capacity) {
+		changes = new Change[capacity];
+	}
+
+	public ChangeFeed() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	synchronized void append(Collection<AEntity> saved, Collection<AEntity> deleted) {
+		for (AEntity entity : saved) {
+			add(entity, false);
+		}
+		for (AEntity entity : deleted) {
+			add(entity, true);
+		}
+	}
+
+	private void add(AEntity entity, boolean deleted) {
+		lastSequence++;
+		changes[(int) (lastSequence % changes.length)] = new Change(lastSequence, entity, deleted);
+	}
+
+	public synchronized long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Returns the changes after the given sequence number, only the latest change per entity. Returns
+	 * <code>null</code> if changes are missing because they are not retained anymore.
+	 */
+	public synchronized Collection<Change> getChangesSince(long sequence) {
+		if (sequence > lastSequence) sequence = lastSequence;
+		if (lastSequence - sequence > changes.length) return null;
+		Map<String, Change> ret = new LinkedHashMap<String, Change>();
+		for (long i = sequence + 1; i <= lastSequence; i++) {
+			Change change = changes[(int) (i % changes.length)];
+			ret.remove(change.getEntityId());
+			ret.put(change.getEntityId(), change);
+		}
+		return ret.values();
+	}
+
+	public synchronized List<Change> getChangesSince(long sequence, Class<? extends AEntity> type) {
+		Collection<Change> all = getChangesSince(sequence);
+		if (all == null) return null;
+		List<Change> ret = new ArrayList<Change>();
+		for (Change change : all) {
+			if (change.getEntity().getClass().equals(type)) ret.add(change);
+		}
+		return ret;
+	}
+
+	public static final class Change {
+
+		private long sequence;
+		private AEntity entity;
+		private String entityId;
+		private boolean deleted;
+
+		Change(long sequence, AEntity entity, boolean deleted) {
+			super();
+			this.sequence = sequence;
+			this.entity = entity;
+			this.entityId = entity.getId();
+			this.deleted = deleted;
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		public AEntity getEntity() {
+			return entity;
+		}
+
+		public String getEntityId() {
+			return entityId;
+		}
+
+		public boolean isDeleted() {
+			return deleted;
+		}
+
+		@Override
+		public String toString() {
+			return sequence + (deleted ? " DELETE " : " SAVE ") + entityId;
+		}
+
+	}
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.persistence;
+
+import ilarkesto.concurrent.DeamonThreadFactory;
+import ilarkesto.fp.Predicate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Query on the entities of a dao, created by <code>ADao.query()</code>. Works on a snapshot of the entity
+ * references including the pending changes of the current transaction and evaluates the filter lazily, so
+ * iteration can stop early and no result set is built for counting or for the first page.
+ */
+public class EntityQuery<E extends AEntity> {
+
+	private static final int PARALLEL_THRESHOLD = 10000;
+
+	private static ExecutorService parallelExecutor;
+
+	private ADao<E> dao;
+	private Predicate<E> filter;
+	private Comparator<? super E> comparator;
+	private int limit = -1;
+	private boolean parallel;
+
+	EntityQuery(ADao<E> dao) {
+		this.dao = dao;
+	}
+
+	public EntityQuery<E> filter(Predicate<E> filter) {
+		this.filter = filter;
+		return this;
+	}
+
+	public EntityQuery<E> orderBy(Comparator<? super E> comparator) {
+		this.comparator = comparator;
+		return this;
+	}
+
+	public EntityQuery<E> limit(int limit) {
+		this.limit = limit;
+		return this;
+	}
+
+	/**
+	 * Evaluates the filter on all cores. The filter must not depend on the current thread, for example on the
+	 * current transaction or context.
+	 */
+	public EntityQuery<E> parallel() {
+		this.parallel = true;
+		return this;
+	}
+
+	/**
+	 * Passes the matching entities to the visitor until it returns <code>false</code> or the limit is reached.
+	 * Ignores the order.
+	 */
+	public void forEach(Visitor<? super E> visitor) {
+		List<E> entities = getCandidates();
+		if (isParallel(entities)) {
+			entities = filterParallel(entities);
+			int count = 0;
+			for (E entity : entities) {
+				if (limit >= 0 && count++ >= limit) return;
+				if (!visitor.visit(entity)) return;
+			}
+			return;
+		}
+		int count = 0;
+		for (E entity : entities) {
+			if (limit >= 0 && count >= limit) return;
+			if (filter != null && !filter.test(entity)) continue;
+			count++;
+			if (!visitor.visit(entity)) return;
+		}
+	}
+
+	/**
+	 * Returns the matching entities, sorted if a comparator is set. With a comparator and a limit only the top
+	 * entities are kept while iterating.
+	 */
+	public List<E> list() {
+		if (comparator == null) {
+			final List<E> ret = new ArrayList<E>();
+			forEach(new Visitor<E>() {
+
+				@Override
+				public boolean visit(E entity) {
+					ret.add(entity);
+					return true;
+				}
+			});
+			return ret;
+		}
+
+		List<E> entities = getCandidates();
+		if (isParallel(entities)) {
+			entities = filterParallel(entities);
+		} else if (filter != null) {
+			List<E> filtered = new ArrayList<E>();
+			for (E entity : entities) {
+				if (filter.test(entity)) filtered.add(entity);
+			}
+			entities = filtered;
+		}
+
+		if (limit < 0 || limit >= entities.size()) {
+			Collections.sort(entities, comparator);
+			return entities;
+		}
+		if (limit == 0) return new ArrayList<E>(0);
+
+		// bounded heap with the worst of the top entities at its head
+		PriorityQueue<E> top = new PriorityQueue<E>(limit + 1, Collections.reverseOrder(comparator));
+		for (E entity : entities) {
+			if (top.size() < limit) {
+				top.add(entity);
+			} else if (comparator.compare(entity, top.peek()) < 0) {
+				top.poll();
+				top.add(entity);
+			}
+		}
+		List<E> ret = new ArrayList<E>(top);
+		Collections.sort(ret, comparator);
+		return ret;
+	}
+
+	public E first() {
+		if (comparator != null) {
+			int oldLimit = limit;
+			limit = 1;
+			List<E> result = list();
+			limit = oldLimit;
+			return result.isEmpty() ? null : result.get(0);
+		}
+		final List<E> ret = new ArrayList<E>(1);
+		forEach(new Visitor<E>() {
+
+			@Override
+			public boolean visit(E entity) {
+				ret.add(entity);
+				return false;
+			}
+		});
+		return ret.isEmpty() ? null : ret.get(0);
+	}
+
+	public boolean exists() {
+		return first() != null;
+	}
+
+	public int count() {
+		final int[] count = new int[1];
+		forEach(new Visitor<E>() {
+
+			@Override
+			public boolean visit(E entity) {
+				count[0]++;
+				return true;
+			}
+		});
+		return count[0];
+	}
+
+	private List<E> getCandidates() {
+		return (List<E>) dao.getTransactionService().getEntities(dao.getEntityTypeFilter());
+	}
+
+	private boolean isParallel(List<E> entities) {
+		return parallel && filter != null && entities.size() >= PARALLEL_THRESHOLD;
+	}
+
+	private List<E> filterParallel(final List<E> entities) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int chunkSize = (entities.size() + threads - 1) / threads;
+		List<Future<List<E>>> futures = new ArrayList<Future<List<E>>>(threads);
+		for (int from = 0; from < entities.size(); from += chunkSize) {
+			final List<E> chunk = entities.subList(from, Math.min(from + chunkSize, entities.size()));
+			futures.add(getParallelExecutor().submit(new Callable<List<E>>() {
+
+				@Override
+				public List<E> call() {
+					List<E> ret = new ArrayList<E>();
+					for (E entity : chunk) {
+						if (filter.test(entity)) ret.add(entity);
+					}
+					return ret;
+				}
+			}));
+		}
+		List<E> ret = new ArrayList<E>();
+		for (Future<List<E>> future : futures) {
+			try {
+				ret.addAll(future.get());
+			} catch (InterruptedException ex) {
+				throw new RuntimeException(ex);
+			} catch (ExecutionException ex) {
+				throw new RuntimeException(ex.getCause());
+			}
+		}
+		return ret;
+	}
+
+	private static synchronized ExecutorService getParallelExecutor() {
+		if (parallelExecutor == null)
+			parallelExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+				new DeamonThreadFactory());
+		return parallelExecutor;
+	}
+
+	public static interface Visitor<E> {
+
+		/**
+		 * @return <code>false</code> to stop the iteration
+		 */
+		boolean visit(E entity);
+
+	}
+
+}
@@ -17,6 +17,7 @@ package ilarkesto.persistence;
 import ilarkesto.fp.Predicate;
 import ilarkesto.id.IdentifiableResolver;
 
+import java.util.List;
 import java.util.Set;
 
 public interface EntityStore extends IdentifiableResolver<AEntity> {
@@ -33,6 +34,11 @@ public interface EntityStore extends IdentifiableResolver<AEntity> {
 
 	Set<AEntity> getEntities(Predicate<Class> typeFilter, Predicate<AEntity> entityFilter);
 
+	/**
+	 * Returns a snapshot of all entities of the matching types, without filtering.
+	 */
+	List<AEntity> getEntities(Predicate<Class> typeFilter);
+
 	void save(AEntity entity);
 
 	void delete(AEntity entity);
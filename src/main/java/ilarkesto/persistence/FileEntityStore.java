@@ -76,64 +76,95 @@ public class FileEntityStore implements EntityStore {
 		this.backupDir = backupDir;
 	}
 
+	private BackupStore backupStore;
+
+	/**
+	 * Stores backups content addressed instead of copying every version to the backup directory.
+	 */
+	public void setBackupStore(BackupStore backupStore) {
+		this.backupStore = backupStore;
+	}
+
+	private PersistenceMetrics metrics;
+
+	public void setPersistenceMetrics(PersistenceMetrics persistenceMetrics) {
+		this.metrics = persistenceMetrics;
+	}
+
 	// --- ---
 
 	@Override
-	public synchronized void save(AEntity entity) {
-		if (!versionSaved) saveVersion();
+	public void save(AEntity entity) {
+		long start = lockRequested();
+		synchronized (this) {
+			lockAcquired(start);
+			if (!versionSaved) saveVersion();
 
-		String alias = aliases.get(entity.getClass());
-		File tmpFile = new File(dir + "/tmp/" + entity.getId() + ".xml");
+			String alias = aliases.get(entity.getClass());
+			File tmpFile = new File(dir + "/tmp/" + entity.getId() + ".xml");
 
-		if (!tmpFile.getParentFile().exists()) {
-			tmpFile.getParentFile().mkdirs();
-		}
+			if (!tmpFile.getParentFile().exists()) {
+				tmpFile.getParentFile().mkdirs();
+			}
 
-		// save
-		BufferedOutputStream out;
-		try {
-			out = new BufferedOutputStream(new FileOutputStream(tmpFile));
-		} catch (IOException ex) {
-			throw new RuntimeException(ex);
-		}
-		beanSerializer.serialize(entity, out);
-		try {
-			out.close();
-		} catch (IOException ex) {
-			throw new RuntimeException(ex);
-		}
+			// save
+			BufferedOutputStream out;
+			try {
+				out = new BufferedOutputStream(new FileOutputStream(tmpFile));
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			beanSerializer.serialize(entity, out);
+			try {
+				out.close();
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
 
-		File file = new File(dir + "/" + alias + "/" + entity.getId() + ".xml");
+			File file = new File(dir + "/" + alias + "/" + entity.getId() + ".xml");
 
-		// backup
-		if (file.exists() && !(entity instanceof BackupHostile)) {
-			backup(file, entity.getDao().getEntityName());
-		}
+			// backup
+			if (file.exists() && !(entity instanceof BackupHostile)) {
+				backup(file, entity.getDao().getEntityName());
+			}
 
-		IO.move(tmpFile, file, true);
+			IO.move(tmpFile, file, true);
 
-		getDao(entity.getClass()).put(entity.getId(), entity);
+			getDao(entity.getClass()).put(entity.getId(), entity);
 
-		LOG.debug("Entity saved:", entity, "->", file.getPath());
+			LOG.debug("Entity saved:", entity, "->", file.getPath());
+		}
 	}
 
 	@Override
-	public synchronized void delete(AEntity entity) {
-		String alias = aliases.get(entity.getClass());
-		File file = new File(dir + "/" + alias + "/" + entity.getId() + ".xml");
+	public void delete(AEntity entity) {
+		long start = lockRequested();
+		synchronized (this) {
+			lockAcquired(start);
+			String alias = aliases.get(entity.getClass());
+			File file = new File(dir + "/" + alias + "/" + entity.getId() + ".xml");
+
+			// backup
+			if (file.exists() && !(entity instanceof BackupHostile)) {
+				backup(file, entity.getDao().getEntityName());
+			}
 
-		// backup
-		if (file.exists() && !(entity instanceof BackupHostile)) {
-			backup(file, entity.getDao().getEntityName());
-		}
+			// delete
+			if (!file.delete() && file.exists())
+				throw new RuntimeException("Deleting entity file failed: " + file.getAbsolutePath());
+
+			getDao(entity.getClass()).remove(entity.getId());
 
-		// delete
-		if (!file.delete() && file.exists())
-			throw new RuntimeException("Deleting entity file failed: " + file.getAbsolutePath());
+			LOG.debug("Entity deleted:", file.getPath(), entity.getClass().getSimpleName(), entity);
+		}
+	}
 
-		getDao(entity.getClass()).remove(entity.getId());
+	private long lockRequested() {
+		return metrics == null ? 0 : metrics.start();
+	}
 
-		LOG.debug("Entity deleted:", file.getPath(), entity.getClass().getSimpleName(), entity);
+	private void lockAcquired(long start) {
+		if (metrics != null) metrics.storeLockAcquired(start);
 	}
 
 	private Map<String, AEntity> getDao(Class<? extends AEntity> type) {
@@ -152,14 +183,18 @@ public class FileEntityStore implements EntityStore {
 	}
 
 	@Override
-	public synchronized AEntity getEntity(Predicate<Class> typeFilter, Predicate<AEntity> entityFilter) {
-		for (Map.Entry<Class<AEntity>, Map<String, AEntity>> daoEntry : data.entrySet()) {
-			if (typeFilter != null && !typeFilter.test(daoEntry.getKey())) continue;
-			for (AEntity entity : daoEntry.getValue().values()) {
-				if (entityFilter.test(entity)) return entity;
+	public AEntity getEntity(Predicate<Class> typeFilter, Predicate<AEntity> entityFilter) {
+		long start = lockRequested();
+		synchronized (this) {
+			lockAcquired(start);
+			for (Map.Entry<Class<AEntity>, Map<String, AEntity>> daoEntry : data.entrySet()) {
+				if (typeFilter != null && !typeFilter.test(daoEntry.getKey())) continue;
+				for (AEntity entity : daoEntry.getValue().values()) {
+					if (entityFilter.test(entity)) return entity;
+				}
 			}
+			return null;
 		}
-		return null;
 	}
 
 	@Override
@@ -176,35 +211,62 @@ public class FileEntityStore implements EntityStore {
 	}
 
 	@Override
-	public synchronized Set<AEntity> getEntities(Predicate<Class> typeFilter, Predicate<AEntity> entityFilter) {
-		Set<AEntity> result = new HashSet<AEntity>();
-		for (Map.Entry<Class<AEntity>, Map<String, AEntity>> entry : data.entrySet()) {
-			if (typeFilter != null && !typeFilter.test(entry.getKey())) continue;
-			if (entityFilter == null) {
-				result.addAll(entry.getValue().values());
-			} else {
-				for (AEntity entity : entry.getValue().values()) {
-					if (entityFilter.test(entity)) result.add(entity);
+	public Set<AEntity> getEntities(Predicate<Class> typeFilter, Predicate<AEntity> entityFilter) {
+		long start = lockRequested();
+		synchronized (this) {
+			lockAcquired(start);
+			Set<AEntity> result = new HashSet<AEntity>();
+			for (Map.Entry<Class<AEntity>, Map<String, AEntity>> entry : data.entrySet()) {
+				if (typeFilter != null && !typeFilter.test(entry.getKey())) continue;
+				if (entityFilter == null) {
+					result.addAll(entry.getValue().values());
+				} else {
+					for (AEntity entity : entry.getValue().values()) {
+						if (entityFilter.test(entity)) result.add(entity);
+					}
 				}
 			}
+			return result;
 		}
-		return result;
 	}
 
 	@Override
-	public synchronized int getEntitiesCount(Predicate<Class> typeFilter, Predicate<AEntity> entityFilter) {
-		int result = 0;
-		for (Map.Entry<Class<AEntity>, Map<String, AEntity>> entry : data.entrySet()) {
-			if (typeFilter != null && !typeFilter.test(entry.getKey())) continue;
-			if (entityFilter == null) {
-				result += entry.getValue().size();
-			} else {
-				for (AEntity entity : entry.getValue().values()) {
-					if (entityFilter.test(entity)) result++;
+	public List<AEntity> getEntities(Predicate<Class> typeFilter) {
+		long start = lockRequested();
+		synchronized (this) {
+			lockAcquired(start);
+			int size = 0;
+			for (Map.Entry<Class<AEntity>, Map<String, AEntity>> entry : data.entrySet()) {
+				if (typeFilter != null && !typeFilter.test(entry.getKey())) continue;
+				size += entry.getValue().size();
+			}
+			List<AEntity> result = new ArrayList<AEntity>(size);
+			for (Map.Entry<Class<AEntity>, Map<String, AEntity>> entry : data.entrySet()) {
+				if (typeFilter != null && !typeFilter.test(entry.getKey())) continue;
+				result.addAll(entry.getValue().values());
+			}
+			return result;
+		}
+	}
+
+	@Override
+	public int getEntitiesCount(Predicate<Class> typeFilter, Predicate<AEntity> entityFilter) {
+		long start = lockRequested();
+		synchronized (this) {
+			lockAcquired(start);
+			int result = 0;
+			for (Map.Entry<Class<AEntity>, Map<String, AEntity>> entry : data.entrySet()) {
+				if (typeFilter != null && !typeFilter.test(entry.getKey())) continue;
+				if (entityFilter == null) {
+					result += entry.getValue().size();
+				} else {
+					for (AEntity entity : entry.getValue().values()) {
+						if (entityFilter.test(entity)) result++;
+					}
 				}
 			}
+			return result;
 		}
-		return result;
 	}
 
 	private Map<Class, String> aliases = new HashMap<Class, String>();
@@ -230,6 +292,7 @@ public class FileEntityStore implements EntityStore {
 
 		File f = new File(dir + "/" + alias);
 		LOG.info("Loading entities:", alias);
+		long start = metrics == null ? 0 : metrics.start();
 		// if (!f.exists()) {
 		// LOG.warn("Store directory does not exist. creating:", dir);
 		// if (!f.mkdirs()) throw new RuntimeException("Creating store directory failed: " + dir);
@@ -245,6 +308,7 @@ public class FileEntityStore implements EntityStore {
 				}
 			}
 		}
+		if (metrics != null) metrics.loadCompleted(start, alias, count);
 		// LOG.info(" Loaded entities:", alias, count);
 	}
 
@@ -276,6 +340,12 @@ public class FileEntityStore implements EntityStore {
 	private void backup(File src, String type) {
 		if (src.isDirectory()) throw new RuntimeException("sorry, backing up directories is not implemented yet.");
 
+		if (backupStore != null) {
+			long written = backupStore.store(type, src);
+			if (metrics != null) metrics.backupWritten(written);
+			return;
+		}
+
 		String destinationPath = backupDir + "/" + Date.today() + "/" + type + "/";
 		File dst = new File(destinationPath + src.getName());
 		for (int i = 2; dst.exists(); i++) {
@@ -284,6 +354,7 @@ public class FileEntityStore implements EntityStore {
 
 		// LOG.debug("Backing up", src.getPath(), "to", dst.getPath());
 		IO.copyFile(src.getPath(), dst.getPath());
+		if (metrics != null) metrics.backupWritten(dst.length());
 	}
 
 	private synchronized void checkVersion() {
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.persistence;
+
+import ilarkesto.core.logging.Log;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.ObjectName;
+
+/**
+ * Instrumentation of the persistence layer. Disabled by default, then recording costs a single flag check.
+ * Enable with the system property <code>ilarkesto.persistence.metrics</code>, <code>setEnabled()</code> or via
+ * JMX.
+ */
+public class PersistenceMetrics implements PersistenceMetricsMBean {
+
+	private static final Log LOG = Log.get(PersistenceMetrics.class);
+
+	public static final String OBJECT_NAME = "ilarkesto:type=PersistenceMetrics";
+
+	private volatile boolean enabled = Boolean.getBoolean("ilarkesto.persistence.metrics");
+
+	private boolean registered;
+
+	private Histogram commitTimes = new Histogram();
+	private AtomicLong entitiesSaved = new AtomicLong();
+	private AtomicLong entitiesDeleted = new AtomicLong();
+	private AtomicLong storeLockWaitNanos = new AtomicLong();
+	private AtomicLong storeLockAcquisitions = new AtomicLong();
+	private AtomicLong backupBytesWritten = new AtomicLong();
+	private ConcurrentMap<String, Stat> scans = new ConcurrentHashMap<String, Stat>();
+	private ConcurrentMap<String, Stat> loads = new ConcurrentHashMap<String, Stat>();
+
+	// --- recording ---
+
+	/**
+	 * Returns the start time for one of the recording methods, <code>0</code> when disabled.
+	 */
+	public long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	void commitCompleted(long start, int saved, int deleted) {
+		if (start == 0) return;
+		commitTimes.add(System.nanoTime() - start);
+		entitiesSaved.addAndGet(saved);
+		entitiesDeleted.addAndGet(deleted);
+	}
+
+	void storeLockAcquired(long start) {
+		if (start == 0) return;
+		storeLockWaitNanos.addAndGet(System.nanoTime() - start);
+		storeLockAcquisitions.incrementAndGet();
+	}
+
+	void scanCompleted(long start, String entityName, Object predicate) {
+		if (start == 0) return;
+		String key = entityName + " " + (predicate == null ? "-" : predicate.getClass().getName());
+		getStat(scans, key).add(System.nanoTime() - start, 0);
+	}
+
+	void loadCompleted(long start, String alias, int count) {
+		if (start == 0) return;
+		getStat(loads, alias).add(System.nanoTime() - start, count);
+	}
+
+	void backupWritten(long bytes) {
+		if (!enabled) return;
+		backupBytesWritten.addAndGet(bytes);
+	}
+
+	private static Stat getStat(ConcurrentMap<String, Stat> stats, String key) {
+		Stat stat = stats.get(key);
+		if (stat == null) {
+			stat = new Stat();
+			Stat existing = stats.putIfAbsent(key, stat);
+			if (existing != null) stat = existing;
+		}
+		return stat;
+	}
+
+	// --- reading ---
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public void reset() {
+		commitTimes = new Histogram();
+		entitiesSaved.set(0);
+		entitiesDeleted.set(0);
+		storeLockWaitNanos.set(0);
+		storeLockAcquisitions.set(0);
+		backupBytesWritten.set(0);
+		scans.clear();
+		loads.clear();
+	}
+
+	@Override
+	public long getCommitCount() {
+		return commitTimes.getCount();
+	}
+
+	@Override
+	public long getCommitTimeAverageMicros() {
+		long count = commitTimes.getCount();
+		return count == 0 ? 0 : commitTimes.getSum() / count / 1000;
+	}
+
+	@Override
+	public long getCommitTimeP99Micros() {
+		return commitTimes.getPercentile(0.99) / 1000;
+	}
+
+	@Override
+	public long getCommitTimeMaxMicros() {
+		return commitTimes.getMax() / 1000;
+	}
+
+	@Override
+	public String getCommitTimeHistogram() {
+		return commitTimes.toString();
+	}
+
+	@Override
+	public long getEntitiesSaved() {
+		return entitiesSaved.get();
+	}
+
+	@Override
+	public long getEntitiesDeleted() {
+		return entitiesDeleted.get();
+	}
+
+	@Override
+	public long getStoreLockWaitMicros() {
+		return storeLockWaitNanos.get() / 1000;
+	}
+
+	@Override
+	public long getStoreLockAcquisitions() {
+		return storeLockAcquisitions.get();
+	}
+
+	@Override
+	public long getBackupBytesWritten() {
+		return backupBytesWritten.get();
+	}
+
+	@Override
+	public String[] getScanStatistics() {
+		return toStrings(scans);
+	}
+
+	@Override
+	public String[] getLoadStatistics() {
+		return toStrings(loads);
+	}
+
+	@Override
+	public Map<String, Object> getSnapshot() {
+		Map<String, Object> ret = new LinkedHashMap<String, Object>();
+		ret.put("enabled", enabled);
+		ret.put("commitCount", getCommitCount());
+		ret.put("commitTimeAverageMicros", getCommitTimeAverageMicros());
+		ret.put("commitTimeP99Micros", getCommitTimeP99Micros());
+		ret.put("commitTimeMaxMicros", getCommitTimeMaxMicros());
+		ret.put("commitTimeHistogram", getCommitTimeHistogram());
+		ret.put("entitiesSaved", getEntitiesSaved());
+		ret.put("entitiesDeleted", getEntitiesDeleted());
+		ret.put("storeLockWaitMicros", getStoreLockWaitMicros());
+		ret.put("storeLockAcquisitions", getStoreLockAcquisitions());
+		ret.put("backupBytesWritten", getBackupBytesWritten());
+		ret.put("scans", Arrays.asList(getScanStatistics()));
+		ret.put("loads", Arrays.asList(getLoadStatistics()));
+		return ret;
+	}
+
+	private static String[] toStrings(Map<String, Stat> stats) {
+		List<String> ret = new ArrayList<String>(stats.size());
+		for (Map.Entry<String, Stat> entry : new TreeMap<String, Stat>(stats).entrySet()) {
+			ret.add(entry.getKey() + ": " + entry.getValue());
+		}
+		return ret.toArray(new String[ret.size()]);
+	}
+
+	public synchronized void registerMBean() {
+		if (registered) return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+			registered = true;
+		} catch (Exception ex) {
+			LOG.warn("Registering MBean failed:", OBJECT_NAME, ex);
+		}
+	}
+
+	/**
+	 * Removes the MBean registered by <code>registerMBean()</code>, so the platform MBean server does not keep this
+	 * instance and its class loader after shutdown.
+	 */
+	public synchronized void unregisterMBean() {
+		if (!registered) return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+		} catch (Exception ex) {
+			LOG.warn("Unregistering MBean failed:", OBJECT_NAME, ex);
+		}
+		registered = false;
+	}
+
+	@Override
+	public String toString() {
+		return getSnapshot().toString();
+	}
+
+	private static class Stat {
+
+		private AtomicLong count = new AtomicLong();
+		private AtomicLong nanos = new AtomicLong();
+		private AtomicLong entities = new AtomicLong();
+
+		void add(long time, int entityCount) {
+			count.incrementAndGet();
+			nanos.addAndGet(time);
+			entities.addAndGet(entityCount);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(count.get()).append("x ").append(nanos.get() / 1000000).append(" ms");
+			if (entities.get() > 0) sb.append(", ").append(entities.get()).append(" entities");
+			return sb.toString();
+		}
+
+	}
+
+	/**
+	 * Latency histogram with power of two buckets in microseconds.
+	 */
+	static class Histogram {
+
+		private static final int BUCKETS = 32;
+
+		private AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private AtomicLong count = new AtomicLong();
+		private AtomicLong sum = new AtomicLong();
+		private AtomicLong max = new AtomicLong();
+
+		void add(long nanos) {
+			long micros = nanos / 1000;
+			int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+			buckets.incrementAndGet(bucket);
+			count.incrementAndGet();
+			sum.addAndGet(nanos);
+			long currentMax;
+			while (nanos > (currentMax = max.get())) {
+				if (max.compareAndSet(currentMax, nanos)) break;
+			}
+		}
+
+		long getCount() {
+			return count.get();
+		}
+
+		long getSum() {
+			return sum.get();
+		}
+
+		long getMax() {
+			return max.get();
+		}
+
+		/**
+		 * Upper bound of the bucket containing the percentile, in nanoseconds.
+		 */
+		long getPercentile(double percentile) {
+			long total = count.get();
+			if (total == 0) return 0;
+			long threshold = Math.max(1, Math.round(total * percentile));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += buckets.get(i);
+				if (seen >= threshold) return Math.min(getUpperBoundMicros(i) * 1000, max.get());
+			}
+			return max.get();
+		}
+
+		private static long getUpperBoundMicros(int bucket) {
+			return 1L << bucket;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < BUCKETS; i++) {
+				long value = buckets.get(i);
+				if (value == 0) continue;
+				if (sb.length() > 0) sb.append(", ");
+				sb.append("<").append(getUpperBoundMicros(i)).append("us: ").append(value);
+			}
+			return sb.toString();
+		}
+
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.persistence;
+
+import java.util.Map;
+
+/**
+ * JMX interface of <code>PersistenceMetrics</code>.
+ */
+public interface PersistenceMetricsMBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	void reset();
+
+	long getCommitCount();
+
+	long getCommitTimeAverageMicros();
+
+	long getCommitTimeP99Micros();
+
+	long getCommitTimeMaxMicros();
+
+	String getCommitTimeHistogram();
+
+	long getEntitiesSaved();
+
+	long getEntitiesDeleted();
+
+	long getStoreLockWaitMicros();
+
+	long getStoreLockAcquisitions();
+
+	long getBackupBytesWritten();
+
+	String[] getScanStatistics();
+
+	String[] getLoadStatistics();
+
+	Map<String, Object> getSnapshot();
+
+}
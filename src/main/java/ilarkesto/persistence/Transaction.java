@@ -16,6 +16,7 @@ package ilarkesto.persistence;
 
 import ilarkesto.base.Utl;
 import ilarkesto.core.logging.Log;
+import ilarkesto.di.Context;
 import ilarkesto.fp.Predicate;
 import ilarkesto.id.IdentifiableResolver;
 
@@ -67,6 +68,7 @@ class Transaction implements IdentifiableResolver<AEntity> {
 	synchronized void commit() {
 		if (committed) throw new RuntimeException("Transaction already committed: " + this);
 		committed = true;
+		long start = metrics == null ? 0 : metrics.start();
 
 		if (isEmpty()) {
 			LOG.debug("Committing empty transaction:", this);
@@ -75,6 +77,7 @@ class Transaction implements IdentifiableResolver<AEntity> {
 		}
 
 		Collection<AEntity> savedEntities = new HashSet<AEntity>(entitiesToSave.size());
+		Collection<AEntity> deletedEntities = new HashSet<AEntity>(entitiesToDelete.size());
 
 		while (!isEmpty()) {
 			for (AEntity entity : new ArrayList<AEntity>(entitiesToSave)) {
@@ -86,6 +89,7 @@ class Transaction implements IdentifiableResolver<AEntity> {
 			for (AEntity entity : new ArrayList<AEntity>(entitiesToDelete)) {
 				entityStore.delete(entity);
 				entitiesToDelete.remove(entity);
+				deletedEntities.add(entity);
 			}
 
 			for (AEntity entity : savedEntities) {
@@ -95,6 +99,14 @@ class Transaction implements IdentifiableResolver<AEntity> {
 
 		entitiesRegistered.clear();
 
+		if (metrics != null) metrics.commitCompleted(start, savedEntities.size(), deletedEntities.size());
+
+		savedEntities.removeAll(deletedEntities);
+		if (changeFeed != null) changeFeed.append(savedEntities, deletedEntities);
+		for (CommitListener listener : commitListeners) {
+			listener.onCommitted(savedEntities, deletedEntities);
+		}
+
 		LOG.debug("Transaction committed:", this);
 	}
 
@@ -123,16 +135,48 @@ class Transaction implements IdentifiableResolver<AEntity> {
 
 	public synchronized Set<AEntity> getEntities(Predicate<Class> typeFilter, Predicate<AEntity> entityFilter) {
 		Set<AEntity> result = entityStore.getEntities(typeFilter, entityFilter);
+		applyChanges(result, typeFilter, entityFilter);
+		return result;
+	}
+
+	/**
+	 * Applies the pending changes of this transaction to the committed entities.
+	 */
+	synchronized void applyChanges(Set<AEntity> entities, Predicate<Class> typeFilter, Predicate<AEntity> entityFilter) {
 		for (AEntity entity : entitiesToSave) {
-			if (Persist.test(entity, typeFilter, entityFilter)) result.add(entity);
+			if (Persist.test(entity, typeFilter, entityFilter)) entities.add(entity);
 		}
 		for (AEntity entity : entitiesRegistered) {
-			if (Persist.test(entity, typeFilter, entityFilter)) result.add(entity);
+			if (Persist.test(entity, typeFilter, entityFilter)) entities.add(entity);
+		}
+		entities.removeAll(entitiesToDelete);
+	}
+
+	/**
+	 * Snapshot of the entities of the matching types, including the pending changes of this transaction.
+	 */
+	public synchronized List<AEntity> getEntities(Predicate<Class> typeFilter) {
+		List<AEntity> result = entityStore.getEntities(typeFilter);
+		if (!entitiesToDelete.isEmpty()) result.removeAll(new HashSet<AEntity>(entitiesToDelete));
+		Set<AEntity> added = null;
+		for (AEntity entity : entitiesToSave) {
+			added = addIfNotStored(entity, typeFilter, result, added);
+		}
+		for (AEntity entity : entitiesRegistered) {
+			added = addIfNotStored(entity, typeFilter, result, added);
 		}
-		result.removeAll(entitiesToDelete);
 		return result;
 	}
 
+	private Set<AEntity> addIfNotStored(AEntity entity, Predicate<Class> typeFilter, List<AEntity> result,
+			Set<AEntity> added) {
+		if (typeFilter != null && !typeFilter.test(entity.getClass())) return added;
+		if (entitiesToDelete.contains(entity) || entityStore.getById(entity.getId()) != null) return added;
+		if (added == null) added = new HashSet<AEntity>();
+		if (added.add(entity)) result.add(entity);
+		return added;
+	}
+
 	public int getEntitiesCount(Predicate<Class> typeFilter, Predicate<AEntity> entityFilter) {
 		return entityStore.getEntitiesCount(typeFilter, entityFilter);
 	}
@@ -203,15 +247,22 @@ class Transaction implements IdentifiableResolver<AEntity> {
 	// --- dependencies ---
 
 	private EntityStore entityStore;
+	private ChangeFeed changeFeed;
+	private PersistenceMetrics metrics;
+	private Collection<CommitListener> commitListeners;
 	private int no;
 	private String threadName;
 
-	public Transaction(EntityStore entityStore) {
+	public Transaction(EntityStore entityStore, ChangeFeed changeFeed, PersistenceMetrics metrics,
+			Collection<CommitListener> commitListeners) {
 		synchronized (getClass()) {
 			no = ++count;
 		}
 		this.entityStore = entityStore;
-		threadName = Thread.currentThread().getName();
+		this.changeFeed = changeFeed;
+		this.metrics = metrics;
+		this.commitListeners = commitListeners;
+		threadName = Context.getCurrentThreadContextName();
 	}
 
 }
@@ -19,8 +19,10 @@ import ilarkesto.fp.Predicate;
 import ilarkesto.id.IdentifiableResolver;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class TransactionService implements IdentifiableResolver<AEntity> {
 
@@ -29,7 +31,7 @@ public class TransactionService implements IdentifiableResolver<AEntity> {
 	public TransactionService() {}
 
 	private Transaction createTransaction() {
-		Transaction t = new Transaction(entityStore);
+		Transaction t = new Transaction(entityStore, changeFeed, persistenceMetrics, commitListeners);
 		LOG.debug("Transaction created: " + t);
 		return t;
 	}
@@ -69,6 +71,27 @@ public class TransactionService implements IdentifiableResolver<AEntity> {
 		threadLocalTransaction.set(null);
 	}
 
+	/**
+	 * Registers the listener for the following commits. It is called with the committed entities of the matching
+	 * types as saved entities first, no transaction commits in between. Adding a listener again has no effect.
+	 */
+	public synchronized void addCommitListener(CommitListener listener, Predicate<Class> typeFilter) {
+		if (commitListeners.contains(listener)) return;
+		listener.onCommitted(entityStore.getEntities(typeFilter), Collections.<AEntity> emptyList());
+		commitListeners.add(listener);
+	}
+
+	/**
+	 * Adds the matching entities saved or registered in the current transaction to the committed entities and
+	 * removes the ones deleted in it.
+	 */
+	public <E extends AEntity> void applyCurrentTransaction(Set<E> entities, Predicate<Class> typeFilter,
+			Predicate<AEntity> entityFilter) {
+		Transaction transaction = getCurrentTransaction(false);
+		if (transaction == null) return;
+		transaction.applyChanges((Set<AEntity>) entities, typeFilter, entityFilter);
+	}
+
 	public boolean isPersistent(String id) {
 		return entityStore.getById(id) != null;
 	}
@@ -113,6 +136,15 @@ public class TransactionService implements IdentifiableResolver<AEntity> {
 		}
 	}
 
+	public List<AEntity> getEntities(Predicate<Class> typeFilter) {
+		Transaction transaction = getCurrentTransaction(false);
+		if (transaction == null) {
+			return entityStore.getEntities(typeFilter);
+		} else {
+			return transaction.getEntities(typeFilter);
+		}
+	}
+
 	public int getEntitiesCount(Predicate<Class> typeFilter, Predicate<AEntity> entityFilter) {
 		Transaction transaction = getCurrentTransaction(false);
 		if (transaction == null) {
@@ -142,4 +174,18 @@ public class TransactionService implements IdentifiableResolver<AEntity> {
 		this.entityStore = entityStore;
 	}
 
+	private ChangeFeed changeFeed;
+
+	public void setChangeFeed(ChangeFeed changeFeed) {
+		this.changeFeed = changeFeed;
+	}
+
+	private PersistenceMetrics persistenceMetrics;
+
+	private List<CommitListener> commitListeners = new CopyOnWriteArrayList<CommitListener>();
+
+	public void setPersistenceMetrics(PersistenceMetrics persistenceMetrics) {
+		this.persistenceMetrics = persistenceMetrics;
+	}
+
 }
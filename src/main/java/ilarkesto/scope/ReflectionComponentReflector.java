@@ -14,109 +14,120 @@
  */
 package ilarkesto.scope;
 
-import ilarkesto.base.Reflect;
+import ilarkesto.base.BeanClassInfo;
 import ilarkesto.core.logging.Log;
-import ilarkesto.core.scope.ComponentReflector;
+import ilarkesto.core.scope.DependencyAwareComponentReflector;
 import ilarkesto.core.scope.In;
 import ilarkesto.core.scope.Init;
 import ilarkesto.core.scope.Out;
 import ilarkesto.core.scope.Scope;
 
-import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
-public class ReflectionComponentReflector implements ComponentReflector {
+public class ReflectionComponentReflector implements DependencyAwareComponentReflector {
 
 	private static final Log log = Log.get(ReflectionComponentReflector.class);
 
+	/**
+	 * Weak keys and soft values, the plans must not keep component classes and their class loaders alive.
+	 */
+	private static final Map<Class, SoftReference<InjectionPlan>> PLANS = Collections
+			.synchronizedMap(new WeakHashMap<Class, SoftReference<InjectionPlan>>());
+
 	@Override
 	public void injectComponents(Object component, Scope scope) {
-		Reflect.processAnnotations(component, new DependencyInjector(scope));
+		for (Field field : getPlan(component).inFields) {
+			String dependencyName = field.getName();
+			Object dependency = scope.getComponent(dependencyName);
+			if (dependency == null) continue;
+
+			try {
+				Object value = field.get(component);
+				if (value == dependency) continue;
+				log.debug("Injecting component field:", component.getClass().getSimpleName() + "." + field.getName());
+				field.set(component, dependency);
+			} catch (Throwable ex) {
+				throw new DependencyInjectionFailedException(component, dependencyName, dependency, ex);
+			}
+		}
 	}
 
 	@Override
 	public void callInitializationMethods(Object component) {
-		Reflect.processAnnotations(component, new Initializer());
+		for (Method method : getPlan(component).initMethods) {
+			log.debug("Calling initialization method:", component.getClass().getSimpleName() + "." + method.getName()
+					+ "()");
+			try {
+				method.invoke(component);
+			} catch (Throwable ex) {
+				throw new InitializationFaildException(component, method.getName(), ex);
+			}
+		}
 	}
 
 	@Override
 	public void outjectComponents(Object component, Scope scope) {
-		Reflect.processAnnotations(component, new DependencyOutjector(scope));
-	}
-
-	class DependencyOutjector implements Reflect.FieldAnnotationHandler {
-
-		private Scope scope;
-
-		public DependencyOutjector(Scope scope) {
-			super();
-			this.scope = scope;
-		}
-
-		@Override
-		public void handle(Annotation annotation, Field field, Object component) {
-			if (annotation.annotationType() != Out.class) return;
-
+		for (Field field : getPlan(component).outFields) {
 			String outName = field.getName();
 			Object outComponent;
 
 			try {
-				if (!field.isAccessible()) field.setAccessible(true);
 				outComponent = field.get(component);
 			} catch (Throwable ex) {
 				throw new DependencyOutjectionFailedException(component, outName, ex);
 			}
-			if (outComponent == null) return;
+			if (outComponent == null) continue;
 
 			log.debug("Outjecting component field:", component.getClass().getSimpleName() + "." + field.getName());
 			scope.putComponent(outName, outComponent);
 		}
 	}
 
-	class Initializer implements Reflect.MethodAnnotationHandler {
-
-		@Override
-		public void handle(Annotation annotation, Method method, Object object) {
-			if (annotation.annotationType() != Init.class) return;
-
-			log.debug("Calling initialization method:", object.getClass().getSimpleName() + "." + method.getName()
-					+ "()");
-			try {
-				if (!method.isAccessible()) method.setAccessible(true);
-				method.invoke(object);
-			} catch (Throwable ex) {
-				throw new InitializationFaildException(object, method.getName(), ex);
-			}
-		}
+	@Override
+	public Collection<String> getDependencyNames(Object component) {
+		return getPlan(component).dependencyNames;
 	}
 
-	class DependencyInjector implements Reflect.FieldAnnotationHandler {
-
-		private Scope scope;
-
-		public DependencyInjector(Scope scope) {
-			super();
-			this.scope = scope;
+	private static InjectionPlan getPlan(Object component) {
+		Class type = component.getClass();
+		SoftReference<InjectionPlan> reference = PLANS.get(type);
+		InjectionPlan plan = reference == null ? null : reference.get();
+		if (plan == null) {
+			plan = new InjectionPlan(BeanClassInfo.get(type));
+			PLANS.put(type, new SoftReference<InjectionPlan>(plan));
 		}
+		return plan;
+	}
 
-		@Override
-		public void handle(Annotation annotation, Field field, Object component) {
-			if (annotation.annotationType() != In.class) return;
-
-			String dependencyName = field.getName();
-			Object dependency = scope.getComponent(dependencyName);
-			if (dependency == null) return;
-
-			try {
-				if (!field.isAccessible()) field.setAccessible(true);
-				Object value = field.get(component);
-				if (value == dependency) return;
-				log.debug("Injecting component field:", component.getClass().getSimpleName() + "." + field.getName());
-				field.set(component, dependency);
-			} catch (Throwable ex) {
-				throw new DependencyInjectionFailedException(component, dependencyName, dependency, ex);
+	/**
+	 * The annotated members of a component class, computed once per class.
+	 */
+	static class InjectionPlan {
+
+		private final List<Field> inFields;
+		private final List<Method> initMethods;
+		private final List<Field> outFields;
+		private final Collection<String> dependencyNames;
+
+		InjectionPlan(BeanClassInfo info) {
+			inFields = info.getAnnotatedFields(In.class);
+			initMethods = info.getAnnotatedMethods(Init.class);
+			outFields = info.getAnnotatedFields(Out.class);
+			List<String> names = new ArrayList<String>(inFields.size());
+			for (Field field : inFields) {
+				names.add(field.getName());
 			}
+			dependencyNames = Collections.unmodifiableList(names);
 		}
+
 	}
+
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.search;
+
+import java.util.Collection;
+
+/**
+ * Searchable which provides its searchable texts, so it can be put into a <code>SearchIndex</code>.
+ */
+public interface Indexable extends Searchable {
+
+	/**
+	 * Collects the texts checked by <code>matchesKey()</code>. Returns <code>false</code> if they do not cover
+	 * everything <code>matchesKey()</code> checks, then the object is a candidate for every search.
+	 */
+	boolean collectSearchTexts(Collection<String> texts);
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory inverted index. Texts are split into lowercase words, a search returns the candidates which contain
+ * each of the given keys within a word.
+ */
+public class SearchIndex<T> {
+
+	private Map<String, Set<T>> objectsByToken = new HashMap<String, Set<T>>();
+	private Map<T, Set<String>> tokensByObject = new HashMap<T, Set<String>>();
+	private Set<T> incompleteObjects = new HashSet<T>();
+	private String[] vocabulary;
+
+	public synchronized void put(T object, Collection<String> texts) {
+		put(object, texts, true);
+	}
+
+	/**
+	 * Without <code>complete</code> the texts do not cover everything the object matches, then the object is a
+	 * candidate for every search.
+	 */
+	public synchronized void put(T object, Collection<String> texts, boolean complete) {
+		if (complete) {
+			incompleteObjects.remove(object);
+		} else {
+			incompleteObjects.add(object);
+		}
+
+		Set<String> tokens = new HashSet<String>();
+		for (String text : texts) {
+			tokenize(text, tokens);
+		}
+
+		Set<String> oldTokens = tokensByObject.put(object, tokens);
+		if (oldTokens != null) {
+			for (String token : oldTokens) {
+				if (!tokens.contains(token)) removeToken(token, object);
+			}
+		}
+		for (String token : tokens) {
+			if (oldTokens != null && oldTokens.contains(token)) continue;
+			Set<T> objects = objectsByToken.get(token);
+			if (objects == null) {
+				objects = new HashSet<T>();
+				objectsByToken.put(token, objects);
+				vocabulary = null;
+			}
+			objects.add(object);
+		}
+	}
+
+	public synchronized void remove(T object) {
+		incompleteObjects.remove(object);
+		Set<String> tokens = tokensByObject.remove(object);
+		if (tokens == null) return;
+		for (String token : tokens) {
+			removeToken(token, object);
+		}
+	}
+
+	private void removeToken(String token, T object) {
+		Set<T> objects = objectsByToken.get(token);
+		if (objects == null) return;
+		objects.remove(object);
+		if (objects.isEmpty()) {
+			objectsByToken.remove(token);
+			vocabulary = null;
+		}
+	}
+
+	/**
+	 * Returns the candidates containing all keys as substrings, case insensitive. Keys which are not a single word
+	 * can not be answered from the index and do not restrict the result. Returns <code>null</code> if no key
+	 * restricts the result.
+	 */
+	public synchronized Set<T> search(Collection<String> keys) {
+		List<String> words = new ArrayList<String>();
+		for (String key : keys) {
+			String word = key.toLowerCase();
+			if (isWord(word)) words.add(word);
+		}
+		if (words.isEmpty()) return null;
+
+		// start with the longest word, it is probably the most selective one
+		String longest = words.get(0);
+		for (String word : words) {
+			if (word.length() > longest.length()) longest = word;
+		}
+		Set<T> ret = getByWordPart(longest);
+		if (words.size() > 1) {
+			for (Iterator<T> iterator = ret.iterator(); iterator.hasNext();) {
+				if (!containsWordParts(tokensByObject.get(iterator.next()), words)) iterator.remove();
+			}
+		}
+		ret.addAll(incompleteObjects);
+		return ret;
+	}
+
+	private static boolean isWord(String s) {
+		int len = s.length();
+		if (len == 0) return false;
+		for (int i = 0; i < len; i++) {
+			if (!Character.isLetterOrDigit(s.charAt(i))) return false;
+		}
+		return true;
+	}
+
+	private static boolean containsWordParts(Set<String> tokens, List<String> words) {
+		for (String word : words) {
+			if (tokens.contains(word)) continue;
+			boolean found = false;
+			for (String token : tokens) {
+				if (token.indexOf(word) >= 0) {
+					found = true;
+					break;
+				}
+			}
+			if (!found) return false;
+		}
+		return true;
+	}
+
+	private Set<T> getByWordPart(String word) {
+		Set<T> ret = new HashSet<T>();
+		if (vocabulary == null) vocabulary = objectsByToken.keySet().toArray(new String[objectsByToken.size()]);
+		for (String token : vocabulary) {
+			if (token.indexOf(word) >= 0) ret.addAll(objectsByToken.get(token));
+		}
+		return ret;
+	}
+
+	public synchronized boolean contains(T object) {
+		return tokensByObject.containsKey(object);
+	}
+
+	public synchronized int size() {
+		return tokensByObject.size();
+	}
+
+	public synchronized void clear() {
+		objectsByToken.clear();
+		vocabulary = null;
+		tokensByObject.clear();
+		incompleteObjects.clear();
+	}
+
+	public static void tokenize(String text, Collection<String> tokens) {
+		if (text == null) return;
+		text = text.toLowerCase();
+		int len = text.length();
+		int start = -1;
+		for (int i = 0; i < len; i++) {
+			if (Character.isLetterOrDigit(text.charAt(i))) {
+				if (start < 0) start = i;
+			} else if (start >= 0) {
+				tokens.add(text.substring(start, i));
+				start = -1;
+			}
+		}
+		if (start >= 0) tokens.add(text.substring(start));
+	}
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.sync;
+
+import ilarkesto.core.logging.Log;
+import ilarkesto.io.IO;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Set of synchronized item ids, persisted as a snapshot file plus an append-only journal of changes. The journal is
+ * replayed on load and merged into the snapshot by <code>compact()</code>. Replaying is idempotent, so a crash at any
+ * point loses at most the last unfinished journal line.
+ */
+public class SyncItemsJournal {
+
+	private static final Log LOG = Log.get(SyncItemsJournal.class);
+
+	private static final char ADDED = '+';
+	private static final char REMOVED = '-';
+
+	private File itemsFile;
+	private File journalFile;
+	private File tmpFile;
+	private Set<String> items;
+	private PrintWriter journal;
+
+	public SyncItemsJournal(File itemsFile) {
+		this.itemsFile = itemsFile;
+		this.journalFile = new File(itemsFile.getPath() + ".journal");
+		this.tmpFile = new File(itemsFile.getPath() + ".tmp");
+	}
+
+	public synchronized void load() {
+		items = new HashSet<String>();
+		File snapshot = itemsFile;
+		if (!snapshot.exists() && tmpFile.exists()) snapshot = tmpFile;
+		if (snapshot.exists()) {
+			readSnapshot(snapshot);
+		} else {
+			LOG.info("Items file does not exist. Must be first sync.", itemsFile.getPath());
+		}
+		if (journalFile.exists()) replayJournal();
+	}
+
+	public synchronized boolean contains(String id) {
+		return items.contains(id);
+	}
+
+	public synchronized int size() {
+		return items.size();
+	}
+
+	public synchronized void add(String id) {
+		if (!items.add(id)) return;
+		append(ADDED, id);
+	}
+
+	public synchronized void remove(String id) {
+		if (!items.remove(id)) return;
+		append(REMOVED, id);
+	}
+
+	/**
+	 * Writes all items into the items file and discards the journal.
+	 */
+	public synchronized void compact() {
+		closeJournal();
+		PrintWriter out;
+		try {
+			out = new PrintWriter(new BufferedWriter(new FileWriter(tmpFile)));
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+		for (String id : items) {
+			out.println(id);
+		}
+		IO.close(out);
+		if (out.checkError()) throw new RuntimeException("Writing items file failed: " + tmpFile.getPath());
+
+		if (!tmpFile.renameTo(itemsFile)) {
+			IO.delete(itemsFile);
+			if (!tmpFile.renameTo(itemsFile))
+				throw new RuntimeException("Renaming " + tmpFile.getPath() + " to " + itemsFile.getPath() + " failed");
+		}
+		IO.delete(journalFile);
+	}
+
+	public synchronized void close() {
+		closeJournal();
+	}
+
+	private void append(char op, String id) {
+		if (journal == null) {
+			try {
+				journal = new PrintWriter(new BufferedWriter(new FileWriter(journalFile, true)));
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+		journal.print(op);
+		journal.print(id);
+		journal.print('\n');
+		journal.flush();
+		if (journal.checkError()) throw new RuntimeException("Writing journal failed: " + journalFile.getPath());
+	}
+
+	private void closeJournal() {
+		if (journal == null) return;
+		IO.close(journal);
+		journal = null;
+	}
+
+	private void readSnapshot(File file) {
+		BufferedReader in;
+		try {
+			in = new BufferedReader(new FileReader(file));
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0) continue;
+				items.add(line);
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+		IO.close(in);
+	}
+
+	private void replayJournal() {
+		FileReader in;
+		try {
+			in = new FileReader(journalFile);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+		String content = IO.readToString(in);
+		IO.close(in);
+		int count = 0;
+		int start = 0;
+		while (true) {
+			int end = content.indexOf('\n', start);
+			if (end < 0) break; // last line incomplete or missing
+			if (end - start > 1) {
+				char op = content.charAt(start);
+				String id = content.substring(start + 1, end).trim();
+				if (op == ADDED) {
+					items.add(id);
+				} else if (op == REMOVED) {
+					items.remove(id);
+				}
+				count++;
+			}
+			start = end + 1;
+		}
+		LOG.info("Replayed", count, "journal entries:", journalFile.getPath());
+		if (start < content.length()) truncateIncompleteLine();
+	}
+
+	/**
+	 * Cuts off an incomplete last line, so that following entries are not appended to it.
+	 */
+	private void truncateIncompleteLine() {
+		LOG.warn("Discarding incomplete journal entry:", journalFile.getPath());
+		try {
+			RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+			try {
+				long length = file.length();
+				while (length > 0) {
+					file.seek(length - 1);
+					if (file.read() == '\n') break;
+					length--;
+				}
+				file.setLength(length);
+			} finally {
+				file.close();
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+}
@@ -16,16 +16,11 @@ package ilarkesto.sync;
 
 import ilarkesto.concurrent.ATask;
 import ilarkesto.core.logging.Log;
-import ilarkesto.io.IO;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.PrintWriter;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 public class SyncTask extends ATask {
@@ -33,10 +28,9 @@ public class SyncTask extends ATask {
 	private static final Log LOG = Log.get(SyncTask.class);
 
 	private Set<String> synced;
-	private Processor processor = new Processor();
 	private SyncSource master;
 	private SyncSource slave;
-	private Set<String> lastItems;
+	private SyncItemsJournal lastItems;
 	private SyncItem currentItem;
 	private int totalItemCount;
 
@@ -55,20 +49,50 @@ public class SyncTask extends ATask {
 	// --- ---
 
 	@Override
-	protected void perform() {
-		loadLastItems();
+	protected void perform() throws InterruptedException {
+		lastItems = new SyncItemsJournal(itemsFile);
+		lastItems.load();
 		totalItemCount = lastItems.size();
 		synced = new HashSet<String>();
-		sync(left, right);
-		currentItem = null;
-		sync(right, left);
-		currentItem = null;
+		try {
+			// iterate both sources in parallel, then join the items by id
+			ItemsCollector leftCollector = new ItemsCollector(left);
+			Thread leftThread = leftCollector.createThread();
+			leftThread.setName("sync:" + left);
+			leftThread.start();
+			Map<String, SyncItem> rightItems;
+			try {
+				rightItems = new ItemsCollector(right).collect();
+				leftCollector.waitForFinish();
+			} finally {
+				if (!leftCollector.isFinished()) {
+					leftCollector.abort();
+					leftCollector.waitForFinish();
+				}
+			}
+			Map<String, SyncItem> leftItems = leftCollector.getItems();
+
+			Set<String> ids = new HashSet<String>(leftItems.keySet());
+			ids.addAll(rightItems.keySet());
+			totalItemCount = ids.size();
+
+			sync(left, right, leftItems, rightItems);
+			sync(right, left, rightItems, leftItems);
+			currentItem = null;
+		} finally {
+			lastItems.compact();
+		}
 	}
 
-	private void sync(SyncSource master, SyncSource slave) {
+	private void sync(SyncSource master, SyncSource slave, Map<String, SyncItem> masterItems,
+			Map<String, SyncItem> slaveItems) {
 		this.master = master;
 		this.slave = slave;
-		master.iterate(processor);
+		for (SyncItem m : masterItems.values()) {
+			if (isAbortRequested()) return;
+			currentItem = m;
+			sync(m, slaveItems.get(m.getId()));
+		}
 	}
 
 	private void sync(SyncItem m, SyncItem s) {
@@ -91,11 +115,7 @@ public class SyncTask extends ATask {
 			master.updateSyncItem(m, s);
 		}
 
-		if (!lastItems.contains(id)) {
-			lastItems.add(id);
-			saveLastItems();
-		}
-
+		lastItems.add(id);
 		synced.add(id);
 	}
 
@@ -112,42 +132,6 @@ public class SyncTask extends ATask {
 			slave.updateSyncItem(s, m);
 			lastItems.add(id);
 		}
-		saveLastItems();
-	}
-
-	private void saveLastItems() {
-		PrintWriter out;
-		try {
-			out = new PrintWriter(new BufferedWriter(new FileWriter(itemsFile)));
-		} catch (IOException ex) {
-			throw new RuntimeException(ex);
-		}
-		for (String id : lastItems) {
-			out.println(id);
-		}
-		IO.close(out);
-	}
-
-	private void loadLastItems() {
-		lastItems = new HashSet<String>();
-		if (!itemsFile.exists()) {
-			LOG.info("Items file does not exist. Must be first sync.", itemsFile.getPath());
-			return;
-		}
-		BufferedReader in;
-		try {
-			in = new BufferedReader(new FileReader(itemsFile));
-			String line;
-			while ((line = in.readLine()) != null) {
-				line = line.trim();
-				if (line.length() == 0) continue;
-				lastItems.add(line);
-			}
-		} catch (IOException ex) {
-			throw new RuntimeException(ex);
-		}
-		IO.close(in);
-		return;
 	}
 
 	@Override
@@ -162,13 +146,43 @@ public class SyncTask extends ATask {
 		return (float) count / (float) totalItemCount;
 	}
 
-	private class Processor implements SyncItemProcessor {
+	private static class ItemsCollector extends ATask implements SyncItemProcessor {
+
+		private SyncSource source;
+		private Map<String, SyncItem> items = new HashMap<String, SyncItem>();
+		private volatile RuntimeException failure;
+
+		public ItemsCollector(SyncSource source) {
+			this.source = source;
+		}
 
 		@Override
-		public void process(SyncItem m) {
-			currentItem = m;
-			SyncItem s = slave.getSyncItem(m.getId());
-			sync(m, s);
+		protected void perform() {
+			try {
+				source.iterate(this);
+			} catch (RuntimeException ex) {
+				failure = ex;
+			}
+		}
+
+		/**
+		 * Collects the items in the current thread.
+		 */
+		public Map<String, SyncItem> collect() {
+			run();
+			return getItems();
+		}
+
+		public Map<String, SyncItem> getItems() {
+			if (failure != null) throw new RuntimeException("Iterating items failed: " + source, failure);
+			if (isAbortRequested()) throw new RuntimeException("Iterating items aborted: " + source);
+			return items;
+		}
+
+		@Override
+		public void process(SyncItem item) {
+			if (isAbortRequested()) throw new IllegalStateException("Iterating items aborted: " + source);
+			items.put(item.getId(), item);
 		}
 
 	}
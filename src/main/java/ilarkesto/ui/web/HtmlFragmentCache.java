@@ -0,0 +1,47 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.ui.web;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rendered html of static fragments, shared between <code>HtmlRenderer</code>s.
+ */
+public class HtmlFragmentCache {
+
+	private Map<Object, String> fragments = new ConcurrentHashMap<Object, String>();
+
+	public String get(Object key) {
+		return fragments.get(key);
+	}
+
+	public void put(Object key, String html) {
+		fragments.put(key, html);
+	}
+
+	public void remove(Object key) {
+		fragments.remove(key);
+	}
+
+	public void clear() {
+		fragments.clear();
+	}
+
+	public int size() {
+		return fragments.size();
+	}
+
+}
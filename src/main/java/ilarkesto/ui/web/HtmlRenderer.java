@@ -19,33 +19,68 @@ import ilarkesto.base.Url;
 import ilarkesto.id.CountingIdGenerator;
 import ilarkesto.id.IdGenerator;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
 
 public class HtmlRenderer {
 
-	private PrintWriter out;
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private HtmlWriter out;
 	private String encoding;
+	private HtmlFragmentCache fragmentCache;
 
 	private String startingTag;
 
 	private Tag tag = new Tag();
 
-	public HtmlRenderer(PrintWriter out, String encoding) {
+	/**
+	 * With <code>buffered</code> the output is collected in a buffer, then <code>flush()</code> is required
+	 * before writing to <code>out</code> directly.
+	 */
+	public HtmlRenderer(Writer out, String encoding, boolean buffered) {
 		this.encoding = encoding;
-		this.out = out;
+		this.out = new HtmlWriter(out, buffered);
+	}
+
+	public HtmlRenderer(Writer out, String encoding) {
+		this(out, encoding, false);
+	}
+
+	public HtmlRenderer(PrintWriter out, String encoding) {
+		this(out, encoding, false);
 	}
 
 	public HtmlRenderer(OutputStream out, String encoding) throws UnsupportedEncodingException {
-		this(new PrintWriter(new OutputStreamWriter(out, encoding)), encoding);
+		this(new PrintWriter(new OutputStreamWriter(out, encoding)), encoding, true);
+	}
+
+	/**
+	 * Writes gzip compressed output if <code>gzip</code> is set. Then <code>close()</code> is required to finish
+	 * the compressed stream, and the caller is responsible for the <code>Content-Encoding</code> header.
+	 */
+	public HtmlRenderer(OutputStream out, String encoding, boolean gzip) throws IOException {
+		this(gzip ? new GZIPOutputStream(out) : out, encoding);
 	}
 
 	public void flush() {
 		out.flush();
 	}
 
+	public void close() {
+		out.close();
+	}
+
+	public void setFragmentCache(HtmlFragmentCache fragmentCache) {
+		this.fragmentCache = fragmentCache;
+	}
+
 	public void flattrCompactStatic(String thingUrl) {
 		startA(thingUrl).setTargetBlank();
 		IMG("http://api.flattr.com/button/button-compact-static-100x17.png", "Flattr this", null, null, 100, 17);
@@ -414,12 +449,12 @@ public class HtmlRenderer {
 		// out.println("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\"
 		// \"http://www.w3.org/TR/html4/loose.dtd\">");
 		// out.println("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\">");
-		out.print("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01//EN\">");
+		out.write("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01//EN\">");
 		startTag(HTML);
 	}
 
 	public void startHTMLstandard() {
-		out.print("<!DOCTYPE html>");
+		out.write("<!DOCTYPE html>");
 		startTag(HTML);
 	}
 
@@ -528,7 +563,7 @@ public class HtmlRenderer {
 	public CssRenderer startSTYLEcss() {
 		startTag(STYLE).set("type", "text/css");
 		closeStartingTag();
-		CssRenderer css = new CssRenderer(out);
+		CssRenderer css = new CssRenderer(new PrintWriter(out));
 		return css;
 	}
 
@@ -779,11 +814,11 @@ public class HtmlRenderer {
 
 	public void nbsp() {
 		closeStartingTag();
-		out.print("&nbsp;");
+		out.write("&nbsp;");
 	}
 
 	private void nl() {
-		out.println();
+		out.write(LINE_SEPARATOR);
 	}
 
 	public Tag startTag(String name) {
@@ -804,8 +839,8 @@ public class HtmlRenderer {
 			nl();
 			printPrefix();
 		}
-		out.print('<');
-		out.print(name);
+		out.write('<');
+		out.write(name);
 		depth++;
 		return tag;
 	}
@@ -818,25 +853,50 @@ public class HtmlRenderer {
 		closeStartingTag();
 		if (text != null) {
 			if (text.startsWith("<html>")) {
-				if (text.length() > 6) {
-					text = text.substring(6);
-					if (activateLinks) text = Str.activateLinksInHtml(text);
-					out.print(text);
+				if (activateLinks) {
+					out.write(Str.activateLinksInHtml(text.substring(6)));
+				} else {
+					out.write(text, 6, text.length() - 6);
 				}
 			} else {
-				text = Str.replaceForHtml(text);
 				// text = StringEscapeUtils.escapeHtml(text);
 				// text = text.replace("\n", "<BR/>");
-				if (activateLinks) text = Str.activateLinksInHtml(text);
-				out.print(text);
+				if (activateLinks) {
+					out.write(Str.activateLinksInHtml(Str.replaceForHtml(text)));
+				} else {
+					out.writeEscaped(text);
+				}
 			}
 		}
 	}
 
+	/**
+	 * Renders a static subtree. With a fragment cache the fragment is rendered only once per key, later the
+	 * cached html is written.
+	 */
+	public void fragment(Object key, Fragment fragment) {
+		closeStartingTag();
+		if (fragmentCache == null) {
+			fragment.render(this);
+			return;
+		}
+		String html = fragmentCache.get(key);
+		if (html == null) {
+			StringWriter sw = new StringWriter();
+			HtmlRenderer renderer = new HtmlRenderer(sw, encoding, true);
+			fragment.render(renderer);
+			renderer.closeStartingTag();
+			renderer.flush();
+			html = sw.toString();
+			fragmentCache.put(key, html);
+		}
+		out.write(html);
+	}
+
 	public void html(String html) {
 		closeStartingTag();
 		if (html != null) {
-			out.print(html);
+			out.write(html);
 		}
 	}
 
@@ -850,9 +910,9 @@ public class HtmlRenderer {
 			nl();
 			printPrefix();
 		}
-		out.print("<!-- ");
-		out.print(text);
-		out.print(" -->");
+		out.write("<!-- ");
+		out.write(text);
+		out.write(" -->");
 	}
 
 	public void endTag(String name) {
@@ -862,20 +922,20 @@ public class HtmlRenderer {
 		// nl();
 		// printPrefix();
 
-		out.print("</");
-		out.print(name);
-		out.print(">");
+		out.write("</");
+		out.write(name);
+		out.write(">");
 	}
 
 	public void endShortTag() {
 		depth--;
-		out.print(" />");
+		out.write(" />");
 		startingTag = null;
 	}
 
 	private void closeStartingTag() {
 		if (startingTag != null) {
-			out.print(">");
+			out.write(">");
 			startingTag = null;
 		}
 	}
@@ -930,7 +990,10 @@ public class HtmlRenderer {
 
 		public Tag setHref(String value) {
 			if (value == null) return this;
-			return set("href", value.replace("&", "&amp;"));
+			out.write(" href=\"");
+			out.writeAmpersandEscaped(value);
+			out.write('"');
+			return this;
 		}
 
 		public Tag setAlign(String value) {
@@ -1013,14 +1076,20 @@ public class HtmlRenderer {
 
 		public Tag set(String name, String value) {
 			if (value == null) return this;
-			out.print(" ");
-			out.print(name);
-			out.print("=\"");
-			out.print(value);
-			out.print("\"");
+			out.write(' ');
+			out.write(name);
+			out.write("=\"");
+			out.write(value);
+			out.write('"');
 			return this;
 		}
 
 	}
 
+	public static interface Fragment {
+
+		void render(HtmlRenderer html);
+
+	}
+
 }
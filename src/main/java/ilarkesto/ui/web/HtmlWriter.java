@@ -0,0 +1,154 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.ui.web;
+
+import ilarkesto.core.base.Str;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer for html output. Escapes text in a single pass directly into its reusable buffer, without intermediate
+ * strings. Unless created unbuffered, <code>flush()</code> is required before <code>out</code> contains the
+ * output.
+ */
+public class HtmlWriter extends Writer {
+
+	private Writer out;
+	private char[] buffer;
+	private int length;
+	private boolean writeThrough;
+
+	public HtmlWriter(Writer out, int bufferSize) {
+		this.out = out;
+		this.buffer = new char[bufferSize];
+	}
+
+	public HtmlWriter(Writer out, boolean buffered) {
+		this(out, buffered ? 8192 : 256);
+		this.writeThrough = !buffered;
+	}
+
+	public HtmlWriter(Writer out) {
+		this(out, true);
+	}
+
+	@Override
+	public void write(int c) {
+		if (length == buffer.length) flushBuffer();
+		buffer[length++] = (char) c;
+		if (writeThrough) flushBuffer();
+	}
+
+	@Override
+	public void write(String s) {
+		write(s, 0, s.length());
+	}
+
+	@Override
+	public void write(String s, int offset, int len) {
+		append(s, offset, len);
+		if (writeThrough) flushBuffer();
+	}
+
+	private void append(String s, int offset, int len) {
+		int end = offset + len;
+		while (offset < end) {
+			if (length == buffer.length) flushBuffer();
+			int count = Math.min(end - offset, buffer.length - length);
+			s.getChars(offset, offset + count, buffer, length);
+			length += count;
+			offset += count;
+		}
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int len) {
+		if (writeThrough || len >= buffer.length) {
+			flushBuffer();
+			writeOut(chars, offset, len);
+			return;
+		}
+		if (length + len > buffer.length) flushBuffer();
+		System.arraycopy(chars, offset, buffer, length, len);
+		length += len;
+	}
+
+	/**
+	 * Writes the text escaped like <code>Str.toHtml()</code>.
+	 */
+	public void writeEscaped(String s) {
+		int len = s.length();
+		int copied = 0;
+		for (int i = 0; i < len; i++) {
+			String escape = Str.getHtmlEscape(s.charAt(i));
+			if (escape == null) continue;
+			append(s, copied, i - copied);
+			append(escape, 0, escape.length());
+			copied = i + 1;
+		}
+		append(s, copied, len - copied);
+		if (writeThrough) flushBuffer();
+	}
+
+	/**
+	 * Writes the value with <code>&amp;</code> escaped, as required for urls in attributes.
+	 */
+	public void writeAmpersandEscaped(String s) {
+		int start = 0;
+		int idx;
+		while ((idx = s.indexOf('&', start)) >= 0) {
+			append(s, start, idx - start);
+			append("&amp;", 0, 5);
+			start = idx + 1;
+		}
+		write(s, start, s.length() - start);
+	}
+
+	private void flushBuffer() {
+		if (length == 0) return;
+		writeOut(buffer, 0, length);
+		length = 0;
+	}
+
+	private void writeOut(char[] chars, int offset, int len) {
+		try {
+			out.write(chars, offset, len);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	@Override
+	public void flush() {
+		flushBuffer();
+		try {
+			out.flush();
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	@Override
+	public void close() {
+		flushBuffer();
+		try {
+			out.close();
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+}
@@ -25,6 +25,9 @@ import ilarkesto.logging.DefaultLogDataHandler;
 import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
@@ -41,7 +44,11 @@ public abstract class AWebApplication extends AApplication {
 
 	public abstract Url getHomeUrl();
 
-	private Set<AWebSession> webSessions = new HashSet<AWebSession>();
+	private final ConcurrentMap<Long, AWebSession> webSessions = new ConcurrentHashMap<Long, AWebSession>();
+	private final ExpirationQueue<AWebSession> webSessionExpirations = new ExpirationQueue<AWebSession>();
+	private final ExpirationQueue<AGwtConversation> gwtConversationExpirations = new ExpirationQueue<AGwtConversation>();
+	private final AtomicLong createdWebSessionCount = new AtomicLong();
+	private final AtomicLong expiredWebSessionCount = new AtomicLong();
 
 	private String applicationName;
 
@@ -84,58 +91,82 @@ public abstract class AWebApplication extends AApplication {
 		if (webSession == null) {
 			webSession = createWebSession(httpRequest);
 			httpSession.setAttribute(WEB_SESSION_SESSION_ATTRIBUTE, webSession);
-			synchronized (webSessions) {
-				webSessions.add(webSession);
-			}
+			webSession.setWebApplication(this);
+			webSessions.put(webSession.getId(), webSession);
+			webSessionExpirations.add(webSession);
+			createdWebSessionCount.incrementAndGet();
 		} else {
 			webSession.touch();
 		}
 		return webSession;
 	}
 
+	/**
+	 * Destroys sessions whose deadline has passed. Only the due entries of the expiration queue are examined.
+	 */
 	public final void destroyTimeoutedSessions() {
-		for (AWebSession session : getWebSessions()) {
-			if (session.isTimeouted() || session.isSessionInvalidated()) {
-				LOG.info("Destroying invalid/timeouted session:", session);
-				destroyWebSession(session, null);
-			}
+		for (AWebSession session : webSessionExpirations.pollExpired(System.currentTimeMillis())) {
+			if (webSessions.get(session.getId()) != session) continue;
+			LOG.info("Destroying invalid/timeouted session:", session);
+			expiredWebSessionCount.incrementAndGet();
+			destroyWebSession(session, null);
 		}
 	}
 
 	public final void destroyTimeoutedGwtConversations() {
-		for (AGwtConversation conversation : getGwtConversations()) {
-			if (conversation.isTimeouted()) {
-				AWebSession session = conversation.getSession();
-				LOG.info("Destroying invalid/timeouted GwtConversation:", conversation);
-				session.destroyGwtConversation(conversation);
-			}
+		for (AGwtConversation conversation : gwtConversationExpirations.pollExpired(System.currentTimeMillis())) {
+			AWebSession session = conversation.getSession();
+			if (!session.containsGwtConversation(conversation)) continue;
+			LOG.info("Destroying invalid/timeouted GwtConversation:", conversation);
+			session.destroyGwtConversation(conversation);
 		}
 	}
 
 	public final void destroyWebSession(AWebSession webSession, HttpSession httpSession) {
-		synchronized (webSessions) {
-			webSessions.remove(webSession);
-			webSession.destroy();
-			if (httpSession != null) {
-				try {
-					httpSession.removeAttribute(WEB_SESSION_SESSION_ATTRIBUTE);
-				} catch (Throwable t) {}
-				try {
-					httpSession.invalidate();
-				} catch (Throwable t) {}
-			}
+		webSessions.remove(webSession.getId(), webSession);
+		webSession.destroy();
+		if (httpSession != null) {
+			try {
+				httpSession.removeAttribute(WEB_SESSION_SESSION_ATTRIBUTE);
+			} catch (Throwable t) {}
+			try {
+				httpSession.invalidate();
+			} catch (Throwable t) {}
 		}
 	}
 
+	void onWebSessionInvalidated(AWebSession webSession) {
+		webSessionExpirations.add(webSession);
+	}
+
+	void onGwtConversationCreated(AGwtConversation conversation) {
+		conversation.trackChanges(getChangeFeed());
+		gwtConversationExpirations.add(conversation);
+	}
+
+	public final AWebSession getWebSession(long id) {
+		return webSessions.get(id);
+	}
+
 	public final Set<AWebSession> getWebSessions() {
-		synchronized (webSessions) {
-			return new HashSet<AWebSession>(webSessions);
-		}
+		return new HashSet<AWebSession>(webSessions.values());
+	}
+
+	public final int getWebSessionCount() {
+		return webSessions.size();
+	}
+
+	public final long getCreatedWebSessionCount() {
+		return createdWebSessionCount.get();
+	}
+
+	public final long getExpiredWebSessionCount() {
+		return expiredWebSessionCount.get();
 	}
 
 	public Set<AGwtConversation> getGwtConversations() {
 		Set<AGwtConversation> ret = new HashSet<AGwtConversation>();
-		for (AWebSession session : getWebSessions()) {
+		for (AWebSession session : webSessions.values()) {
 			ret.addAll(session.getGwtConversations());
 		}
 		return ret;
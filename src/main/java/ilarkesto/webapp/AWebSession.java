@@ -21,23 +21,30 @@ import ilarkesto.di.Context;
 import ilarkesto.gwt.server.AGwtConversation;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.http.HttpServletRequest;
 
-public abstract class AWebSession {
+public abstract class AWebSession implements ExpirationQueue.Expiring {
 
 	private static final Log LOG = Log.get(AWebSession.class);
 	private static final TimePeriod DEFAULT_TIMEOUT = TimePeriod.minutes(30);
+	private static final AtomicLong lastId = new AtomicLong();
 
+	private final long id = lastId.incrementAndGet();
+	private AWebApplication webApplication;
 	private Context context;
 	private String userAgent;
 	private boolean shitBrowser;
 	private String initialRemoteHost;
-	private boolean sessionInvalidated;
-	private DateAndTime lastTouched;
-	private Set<AGwtConversation> gwtConversations = new HashSet<AGwtConversation>();
-	private int lastGwtConversationNumber = 0;
+	private volatile boolean sessionInvalidated;
+	private volatile long lastTouched;
+	private Map<Integer, AGwtConversation> gwtConversations = new ConcurrentHashMap<Integer, AGwtConversation>();
+	private AtomicInteger lastGwtConversationNumber = new AtomicInteger();
 
 	public AWebSession(Context parentContext, HttpServletRequest initialRequest) {
 		this.initialRemoteHost = initialRequest == null ? "localhost" : initialRequest.getRemoteHost();
@@ -54,16 +61,15 @@ public abstract class AWebSession {
 	public synchronized AGwtConversation getGwtConversation(int conversationNumber) {
 		if (conversationNumber == -1) {
 			AGwtConversation conversation = createGwtConversation();
-			gwtConversations.add(conversation);
+			gwtConversations.put(conversation.getNumber(), conversation);
+			if (webApplication != null) webApplication.onGwtConversationCreated(conversation);
 			return conversation;
 		}
-		for (AGwtConversation conversation : gwtConversations) {
-			if (conversation.getNumber() == conversationNumber) {
-				conversation.touch();
-				return conversation;
-			}
-		}
-		throw new RuntimeException("GwtConversation does not exist: " + conversationNumber);
+		AGwtConversation conversation = gwtConversations.get(conversationNumber);
+		if (conversation == null)
+			throw new RuntimeException("GwtConversation does not exist: " + conversationNumber);
+		conversation.touch();
+		return conversation;
 	}
 
 	public AGwtConversation createGwtConversation() {
@@ -72,18 +78,29 @@ public abstract class AWebSession {
 
 	public synchronized void destroyGwtConversation(AGwtConversation conversation) {
 		conversation.invalidate();
-		gwtConversations.remove(conversation);
+		gwtConversations.remove(conversation.getNumber());
+	}
+
+	public final boolean containsGwtConversation(AGwtConversation conversation) {
+		return gwtConversations.get(conversation.getNumber()) == conversation;
 	}
 
 	public Set<AGwtConversation> getGwtConversations() {
-		return gwtConversations;
+		return new HashSet<AGwtConversation>(gwtConversations.values());
 	}
 
 	// --- ---
 
+	final void setWebApplication(AWebApplication webApplication) {
+		this.webApplication = webApplication;
+	}
+
+	public final long getId() {
+		return id;
+	}
+
 	public int nextGwtConversationNumber() {
-		lastGwtConversationNumber++;
-		return lastGwtConversationNumber;
+		return lastGwtConversationNumber.incrementAndGet();
 	}
 
 	public final String getInitialRemoteHost() {
@@ -91,7 +108,7 @@ public abstract class AWebSession {
 	}
 
 	final void touch() {
-		lastTouched = DateAndTime.now();
+		lastTouched = System.currentTimeMillis();
 	}
 
 	protected TimePeriod getTimeout() {
@@ -99,11 +116,17 @@ public abstract class AWebSession {
 	}
 
 	final boolean isTimeouted() {
-		return lastTouched.getPeriodToNow().isGreaterThen(getTimeout());
+		return System.currentTimeMillis() - lastTouched > getTimeout().toMillis();
+	}
+
+	@Override
+	public final long getExpirationTime() {
+		if (sessionInvalidated) return 0;
+		return lastTouched + getTimeout().toMillis() + 1;
 	}
 
 	public final DateAndTime getLastTouched() {
-		return lastTouched;
+		return new DateAndTime(lastTouched);
 	}
 
 	public final String getUserAgent() {
@@ -127,16 +150,17 @@ public abstract class AWebSession {
 	}
 
 	protected void onInvalidate() {
-		for (AGwtConversation conversation : gwtConversations) {
+		for (AGwtConversation conversation : gwtConversations.values()) {
 			conversation.invalidate();
 		}
-		gwtConversations = new HashSet<AGwtConversation>();
+		gwtConversations.clear();
 	}
 
 	public final void invalidate() {
 		LOG.info("Invalidating session:", this);
 		sessionInvalidated = true;
 		onInvalidate();
+		if (webApplication != null) webApplication.onWebSessionInvalidated(this);
 	}
 
 	final void destroy() {
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.webapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Deadline queue for objects which expire after a period of inactivity. Touching an object only moves its
+ * expiration time, the queue reschedules it lazily when the old deadline is reached. Polling costs
+ * O(log n) per due entry, not a scan over all objects.
+ */
+public class ExpirationQueue<T extends ExpirationQueue.Expiring> {
+
+	public static interface Expiring {
+
+		/**
+		 * Point in time (millis) when the object expires. Usually last touch plus timeout.
+		 */
+		long getExpirationTime();
+
+	}
+
+	private PriorityQueue<Entry<T>> queue = new PriorityQueue<Entry<T>>();
+
+	public synchronized void add(T object) {
+		queue.add(new Entry<T>(object, object.getExpirationTime()));
+	}
+
+	/**
+	 * Removes and returns all objects which are expired at the given time. May return objects which have been
+	 * added more than once multiple times.
+	 */
+	public synchronized List<T> pollExpired(long now) {
+		List<T> ret = new ArrayList<T>();
+		while (!queue.isEmpty() && queue.peek().deadline <= now) {
+			Entry<T> entry = queue.poll();
+			long expirationTime = entry.object.getExpirationTime();
+			if (expirationTime <= now) {
+				ret.add(entry.object);
+			} else {
+				entry.deadline = expirationTime;
+				queue.add(entry);
+			}
+		}
+		return ret;
+	}
+
+	public synchronized int size() {
+		return queue.size();
+	}
+
+	private static class Entry<T> implements Comparable<Entry<T>> {
+
+		private T object;
+		private long deadline;
+
+		public Entry(T object, long deadline) {
+			super();
+			this.object = object;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public int compareTo(Entry<T> o) {
+			return deadline < o.deadline ? -1 : (deadline == o.deadline ? 0 : 1);
+		}
+
+	}
+
+}
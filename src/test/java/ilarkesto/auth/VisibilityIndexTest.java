@@ -0,0 +1,244 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.auth;
+
+import ilarkesto.core.logging.Log;
+import ilarkesto.persistence.ADao;
+import ilarkesto.persistence.AEntity;
+import ilarkesto.persistence.DaoService;
+import ilarkesto.persistence.EntityQueryTest;
+import ilarkesto.persistence.TransactionService;
+import ilarkesto.testng.ATest;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+public class VisibilityIndexTest extends ATest {
+
+	private static final Log LOG = Log.get(VisibilityIndexTest.class);
+
+	private static final VisibilityKeys<Item, AUser> OWNER_KEYS = new VisibilityKeys<Item, AUser>() {
+
+		@Override
+		public Collection<String> getEntityKeys(Item item) {
+			if (item.ownerId == null) return null;
+			return Collections.singleton(item.ownerId);
+		}
+
+		@Override
+		public Collection<String> getUserKeys(AUser user) {
+			return Collections.singleton(user.getId());
+		}
+	};
+
+	@Test
+	public void candidates() {
+		TestUser alice = new TestUser();
+		TestUser bob = new TestUser();
+		Item a = new Item(alice);
+		Item b = new Item(bob);
+		Item shared = new Item(null);
+
+		VisibilityIndex<Item, AUser> index = new VisibilityIndex<Item, AUser>(OWNER_KEYS);
+		index.put(a);
+		index.put(b);
+		index.put(shared);
+
+		Set<Item> candidates = index.getCandidates(alice);
+		assertEquals(candidates.size(), 2);
+		assertTrue(candidates.contains(a));
+		assertTrue(candidates.contains(shared));
+
+		b.ownerId = alice.getId();
+		index.put(b);
+		assertTrue(index.getCandidates(alice).contains(b));
+		assertFalse(index.getCandidates(bob).contains(b));
+
+		index.remove(a);
+		assertFalse(index.getCandidates(alice).contains(a));
+		assertEquals(index.size(), 2);
+	}
+
+	@Test
+	public void daoIndexHasCommittedChanges() {
+		TestUser alice = new TestUser();
+		Item a = new Item(alice);
+		Item b = new Item(alice);
+		EntityQueryTest.MemoryEntityStore store = new EntityQueryTest.MemoryEntityStore();
+		store.save(a);
+		store.save(b);
+		TransactionService transactionService = new TransactionService();
+		transactionService.setEntityStore(store);
+		final ItemDao dao = new ItemDao();
+		dao.setTransactionService(transactionService);
+		dao.setDaoService(new DaoService());
+		assertEquals(dao.getEntitiesVisibleForUser(alice), set(a, b));
+
+		// the own changes are visible, the other threads see the committed entities only
+		Item c = new Item(alice);
+		dao.saveEntity(c);
+		dao.deleteEntity(b);
+		assertEquals(dao.getEntitiesVisibleForUser(alice), set(a, c));
+		assertEquals(getVisibleInOtherThread(dao, alice), set(a, b));
+
+		// a cancelled delete does not remove the entity from the index
+		transactionService.cancel();
+		assertEquals(dao.getEntitiesVisibleForUser(alice), set(a, b));
+
+		dao.saveEntity(c);
+		dao.deleteEntity(b);
+		transactionService.commit();
+		assertEquals(getVisibleInOtherThread(dao, alice), set(a, c));
+	}
+
+	private static Set<Item> getVisibleInOtherThread(final ItemDao dao, final AUser user) {
+		final Set<Item> ret = new HashSet<Item>();
+		Thread thread = new Thread() {
+
+			@Override
+			public void run() {
+				ret.addAll(dao.getEntitiesVisibleForUser(user));
+			}
+		};
+		thread.start();
+		try {
+			thread.join();
+		} catch (InterruptedException ex) {
+			throw new RuntimeException(ex);
+		}
+		return ret;
+	}
+
+	private static Set<Item> set(Item... items) {
+		Set<Item> ret = new HashSet<Item>();
+		Collections.addAll(ret, items);
+		return ret;
+	}
+
+	@Test
+	public void performance() {
+		int userCount = 1000;
+		TestUser[] users = new TestUser[userCount];
+		for (int i = 0; i < userCount; i++) {
+			users[i] = new TestUser();
+		}
+		VisibilityIndex<Item, AUser> index = new VisibilityIndex<Item, AUser>(OWNER_KEYS);
+		for (int i = 0; i < 200000; i++) {
+			index.put(new Item(users[i % userCount]));
+		}
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < userCount; i++) {
+			assertEquals(index.getCandidates(users[i]).size(), 200);
+		}
+		long time = System.currentTimeMillis() - start;
+		LOG.info("Listing entities for", userCount, "users:", time, "ms");
+		if (time > 1000) fail("Listing visible entities is too slow: " + time + " ms");
+	}
+
+	private static class Item extends AEntity implements Ownable<AUser> {
+
+		private String ownerId;
+
+		public Item(AUser owner) {
+			getId();
+			setOwner(owner);
+		}
+
+		@Override
+		public boolean isOwner(AUser user) {
+			return user.getId().equals(ownerId);
+		}
+
+		@Override
+		public void setOwner(AUser user) {
+			ownerId = user == null ? null : user.getId();
+		}
+
+		@Override
+		public ADao getDao() {
+			return null;
+		}
+
+		@Override
+		public void updateProperties(Map<?, ?> properties) {}
+
+	}
+
+	private static class ItemDao extends ADao<Item> {
+
+		@Override
+		protected VisibilityKeys<Item, AUser> createVisibilityKeys() {
+			return OWNER_KEYS;
+		}
+
+		@Override
+		public String getEntityName() {
+			return "item";
+		}
+
+		@Override
+		public Class getEntityClass() {
+			return Item.class;
+		}
+
+	}
+
+	private static class TestUser extends AUser {
+
+		@Override
+		public String getName() {
+			return getId();
+		}
+
+		@Override
+		public String getRealName() {
+			return getId();
+		}
+
+		@Override
+		public void setPassword(String value) {}
+
+		@Override
+		public boolean matchesPassword(String password) {
+			return false;
+		}
+
+		@Override
+		public boolean isAdmin() {
+			return false;
+		}
+
+		@Override
+		public String getAutoLoginString() {
+			return null;
+		}
+
+		@Override
+		public ADao getDao() {
+			return null;
+		}
+
+		@Override
+		public void updateProperties(Map<?, ?> properties) {}
+
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.base;
+
+import ilarkesto.core.logging.Log;
+import ilarkesto.testng.ATest;
+
+import org.testng.annotations.Test;
+
+public class BeanMapTest extends ATest {
+
+	private static final Log LOG = Log.get(BeanMapTest.class);
+
+	private static final int COUNT = 1000000;
+
+	@Test
+	public void getAndPut() {
+		Person person = new Person();
+		BeanMap<Person> map = new BeanMap<Person>(person);
+		map.put("name", "Witek");
+		map.put("age", "33");
+		assertEquals(person.getName(), "Witek");
+		assertEquals(person.getAge(), 33);
+		assertEquals(map.get("name"), "Witek");
+		assertEquals(map.get("age"), 33);
+		assertTrue(map.containsKey("name"));
+		assertFalse(map.containsKey("unknown"));
+		assertEquals(map.getType("age"), int.class);
+	}
+
+	@Test
+	public void reflectProperties() {
+		Person person = new Person();
+		Reflect.setProperty(person, "name", "Witek");
+		assertEquals(Reflect.getProperty(person, "name"), "Witek");
+		Reflect.setProperty(person, "adult", true);
+		assertEquals(Reflect.getProperty(person, "adult"), Boolean.TRUE);
+	}
+
+	@Test
+	public void performance() {
+		Person person = new Person();
+		person.setName("Witek");
+
+		long begin = System.nanoTime();
+		int length = 0;
+		for (int i = 0; i < COUNT; i++) {
+			person.setAge(i);
+			length += person.getName().length() + person.getAge();
+		}
+		long direct = System.nanoTime() - begin;
+
+		begin = System.nanoTime();
+		for (int i = 0; i < COUNT; i++) {
+			BeanMap<Person> map = new BeanMap<Person>(person);
+			map.put("age", i);
+			length += ((String) map.get("name")).length();
+		}
+		long beanMap = System.nanoTime() - begin;
+
+		begin = System.nanoTime();
+		for (int i = 0; i < COUNT; i++) {
+			Reflect.setProperty(person, "age", i);
+			length += ((String) Reflect.getProperty(person, "name")).length();
+		}
+		long reflect = System.nanoTime() - begin;
+
+		LOG.info("Direct:", direct / COUNT, "ns, BeanMap:", beanMap / COUNT, "ns, Reflect:", reflect / COUNT, "ns",
+			length);
+		if (beanMap / 1000000 > 3000) fail("BeanMap access took longer than 3 seconds: " + beanMap / 1000000 + "ms.");
+	}
+
+	public static class Person {
+
+		private String name;
+		private int age;
+		private boolean adult;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getAge() {
+			return age;
+		}
+
+		public void setAge(int age) {
+			this.age = age;
+		}
+
+		public boolean isAdult() {
+			return adult;
+		}
+
+		public void setAdult(boolean adult) {
+			this.adult = adult;
+		}
+
+	}
+
+}
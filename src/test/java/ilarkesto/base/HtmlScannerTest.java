@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.base;
+
+import ilarkesto.core.logging.Log;
+import ilarkesto.testng.ATest;
+
+import org.testng.annotations.Test;
+
+public class HtmlScannerTest extends ATest {
+
+	private static final Log LOG = Log.get(HtmlScannerTest.class);
+
+	@Test
+	public void tag() {
+		assertEquals(scan("<A HREF='http://x' title=\"t\" checked>x</a><!-- <b> --><script>if (a<b) x();</script>"),
+			"ahttp://xtnull text:x /a other:<!-- <b> --> script other:if (a<b) x(); /script ");
+	}
+
+	@Test
+	public void closingTagName() {
+		assertEquals(scan("<script>s = '</scripts>';</SCRIPT >x"), "script other:s = '</scripts>'; /script text:x ");
+		assertEquals(scan("<script>x</script2></script>"), "script other:x</script2> /script ");
+	}
+
+	private static String scan(String html) {
+		final StringBuilder sb = new StringBuilder();
+		HtmlScanner.scan(html, new HtmlScanner.Handler() {
+
+			@Override
+			public void onText(CharSequence html, int start, int end) {
+				sb.append("text:").append(html, start, end).append(' ');
+			}
+
+			@Override
+			public void onTag(HtmlScanner.Tag tag) {
+				sb.append(tag.isClosing() ? "/" : "").append(tag.is("a") ? "a" : tag.is("script") ? "script" : "?");
+				if (tag.is("a") && !tag.isClosing()) {
+					sb.append(tag.getAttribute("href")).append(tag.getAttribute("title"))
+							.append(tag.getAttribute("checked")).append(tag.getAttribute("alt"));
+				}
+				sb.append(' ');
+			}
+
+			@Override
+			public void onOther(CharSequence html, int start, int end) {
+				sb.append("other:").append(html, start, end).append(' ');
+			}
+		});
+		return sb.toString();
+	}
+
+	@Test
+	public void appendDecoded() {
+		String html = "&lt;b&gt; &amp;lt; &auml;&#228;&#xE4; &unknown; & x";
+		StringBuilder sb = new StringBuilder();
+		HtmlScanner.appendDecoded(sb, html, 0, html.length());
+		assertEquals(sb.toString(), "<b> &lt; \u00E4\u00E4\u00E4 &unknown; & x");
+	}
+
+	@Test
+	public void html2text() {
+		assertEquals(Str.html2text("<h1>Title</h1>\n<p>one  two</p><p></p><p>three<br/>four</p>"),
+			"Title\n\none two\n\nthree\nfour");
+		assertEquals(Str.html2text("<ul><li>a</li><li>b</li></ul>&nbsp;x&amp;y"), "- a\n- b\n x&y");
+		assertEquals(Str.html2text("<a href=\"http://x.org/A\">link</a> <a href=\"http://y\">http://y</a>"),
+			"link [ http://x.org/A ] http://y");
+		assertEquals(Str.html2text("<style>p { color: red; }</style>text<hr>end"), "text\n--------------------\nend");
+	}
+
+	@Test
+	public void removeHtmlTags() {
+		assertEquals(Str.removeHtmlTags("<b>bold</b> &amp;lt; <i>x</i> <unterminated"), "bold &lt; x ");
+	}
+
+	@Test
+	public void activateLinksInHtml() {
+		String s = "<b>www.x.org</b> see http://y.org/a.png\n<a href=\"http://z\">http://z more</a>";
+		assertEquals(Str.activateLinksInHtml(s), "<b><a href=\"http://www.x.org\" target=\"_blank\">x.org</a></b> see "
+				+ "<a href=\"http://y.org/a.png\" target=\"_blank\"><img src=\"http://y.org/a.png\" "
+				+ "style=\"max-width: 640px; max-height: 640px;\" alt=\"img\"></a>\n"
+				+ "<a href=\"http://z\">http://z more</a>");
+		String plain = "<p>no links here</p>";
+		assertSame(Str.activateLinksInHtml(plain), plain);
+	}
+
+	@Test
+	public void performance() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			sb.append("<div class=\"entry\"><a href=\"http://example.com/").append(i).append("\">Entry ").append(i)
+					.append("</a> &amp; more&nbsp;text with www.example.org/").append(i).append("</div>\n");
+		}
+		String html = sb.toString();
+		long start = System.nanoTime();
+		for (int i = 0; i < 5; i++) {
+			Str.html2text(html);
+			Str.removeHtmlTags(html);
+			Str.activateLinksInHtml(html);
+		}
+		long millis = (System.nanoTime() - start) / 1000000;
+		LOG.info("Processed", html.length() / 1000, "KB of HTML 15 times in", millis, "ms");
+		if (millis > 5000) fail("Processing HTML took " + millis + " ms");
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.base.time;
+
+import ilarkesto.base.Tm;
+import ilarkesto.core.logging.Log;
+import ilarkesto.testng.ATest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.testng.annotations.Test;
+
+public class DateAndTimeTest extends ATest {
+
+	private static final Log LOG = Log.get(DateAndTimeTest.class);
+
+	@Test
+	public void componentsAndMillis() {
+		DateAndTime fromComponents = new DateAndTime(2010, 1, 1, 10, 9, 0);
+		DateAndTime fromString = new DateAndTime("2010-01-01 10:09");
+		DateAndTime fromMillis = new DateAndTime(fromComponents.toMillis() + 999);
+		assertEquals(fromString, fromComponents);
+		assertEquals(fromMillis, fromComponents);
+		assertEquals(fromMillis.hashCode(), fromString.hashCode());
+		assertEquals(fromMillis.toString(), "2010-01-01 10:09");
+
+		assertEquals(new DateAndTime(1500).toMillis(), 1000);
+		assertEquals(new DateAndTime(-1500).toMillis(), -2000);
+	}
+
+	@Test
+	public void componentsMatchCalendar() {
+		long start = new DateAndTime(2011, 1, 1, 0, 0, 0).toMillis();
+		for (long millis = start; millis < start + 366 * Tm.DAY; millis += 777777) {
+			GregorianCalendar calendar = new GregorianCalendar();
+			calendar.setTimeInMillis(millis);
+			DateAndTime dateAndTime = new DateAndTime(millis);
+			assertEquals(dateAndTime.getDate(), new Date(calendar));
+			assertEquals(dateAndTime.getTime(), new Time(calendar));
+			long roundtrip = new DateAndTime(dateAndTime.getDate(), dateAndTime.getTime()).toMillis();
+			assertEquals(new DateAndTime(roundtrip).toString(), dateAndTime.toString());
+		}
+	}
+
+	@Test
+	public void componentsInSeveralTimeZones() {
+		String[] timeZoneIds = { "Europe/Berlin", "America/New_York", "Asia/Kolkata", "Australia/Lord_Howe", "UTC" };
+		TimeZone defaultTimeZone = TimeZone.getDefault();
+		try {
+			long start = new DateAndTime(2011, 1, 1, 0, 0, 0).toMillis();
+			for (long millis = start; millis < start + 366 * Tm.DAY; millis += 777777) {
+				// same instant in every zone, a cached hour of the previous zone must not be used
+				for (String timeZoneId : timeZoneIds) {
+					TimeZone timeZone = TimeZone.getTimeZone(timeZoneId);
+					TimeZone.setDefault(timeZone);
+					GregorianCalendar calendar = new GregorianCalendar(timeZone);
+					calendar.setTimeInMillis(millis);
+					DateAndTime dateAndTime = new DateAndTime(millis);
+					assertEquals(dateAndTime.getDate(), new Date(calendar), timeZoneId);
+					assertEquals(dateAndTime.getTime(), new Time(calendar), timeZoneId);
+				}
+			}
+		} finally {
+			TimeZone.setDefault(defaultTimeZone);
+		}
+	}
+
+	@Test
+	public void sortingPerformance() {
+		List<DateAndTime> loaded = new ArrayList<DateAndTime>();
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 100000; i++) {
+			loaded.add(new DateAndTime(new DateAndTime(start - i * 7919L * 1000).toString()));
+		}
+		Collections.shuffle(loaded);
+
+		start = System.currentTimeMillis();
+		Collections.sort(loaded);
+		Collections.shuffle(loaded);
+		Collections.sort(loaded);
+		long time = System.currentTimeMillis() - start;
+
+		LOG.info("Sorting 100000 parsed DateAndTimes twice:", time, "ms");
+		for (int i = 1; i < loaded.size(); i++) {
+			assertTrue(loaded.get(i - 1).isBeforeOrSame(loaded.get(i)));
+		}
+		if (time > 1000) fail("Sorting DateAndTimes too slow: " + time + " ms");
+	}
+
+	@Test
+	public void timeoutCheckPerformance() {
+		DateAndTime lastTouched = DateAndTime.now();
+		TimePeriod timeout = new TimePeriod(Tm.MINUTE);
+		int timeouted = 0;
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 1000000; i++) {
+			if (lastTouched.isOlderThan(timeout)) timeouted++;
+			if (DateAndTime.now().isBefore(lastTouched)) fail("Clock went backwards");
+		}
+		long time = System.currentTimeMillis() - start;
+
+		LOG.info("1000000 timeout checks:", time, "ms");
+		assertEquals(timeouted, 0);
+		if (time > 1000) fail("Timeout checks too slow: " + time + " ms");
+	}
+
+}
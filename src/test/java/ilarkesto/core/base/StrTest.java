@@ -32,4 +32,13 @@ public class StrTest extends Assert {
 		assertEquals(Str.cutFromTo("Hello <em>world</em>!", "<em>", "</em>"), "world");
 	}
 
+	@Test
+	public void toHtml() {
+		assertEquals(Str.toHtml("a < b & \"c\"\n" + Str.ae + Str.EUR), "a &lt; b &amp; &quot;c&quot;<br>&auml;&euro;");
+		String plain = "plain text";
+		assertSame(Str.toHtml(plain), plain);
+		assertEquals(Str.getHtmlEntityChar("&nbsp;", 1, 5), ' ');
+		assertEquals(Str.getHtmlEntityChar("&nbspx;", 1, 6), (char) 0);
+	}
+
 }
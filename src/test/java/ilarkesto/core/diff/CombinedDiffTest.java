@@ -16,6 +16,8 @@ package ilarkesto.core.diff;
 
 import ilarkesto.testng.ATest;
 
+import java.util.List;
+
 import org.testng.annotations.Test;
 
 public class CombinedDiffTest extends ATest {
@@ -313,6 +315,50 @@ public class CombinedDiffTest extends ATest {
 					+ "The models are coded in Java in the <code>ScrumModelApplication</code> class or modeled in the GUI modeller <code>ScrumModeller</code> and saved in <code>model.csv</code>. Executing <code>ScrumModeller</code> and clicking <code>Save & Generate</code> generates the sources.");
 	}
 
+	@Test
+	public void edits() {
+		TokenDiff diff = new TokenDiff("a b c", "a x c d", new TxtDiffMarker(), new WordTokenizer());
+		List<DiffEdit> edits = diff.getEdits();
+		assertEquals(edits.size(), 4);
+		assertEquals(edits.get(0).toString(), "SAME 0-2 0-2");
+		assertEquals(edits.get(1).toString(), "REPLACED 2-3 2-3");
+		assertEquals(edits.get(2).toString(), "SAME 3-5 3-5");
+		assertEquals(edits.get(3).toString(), "ADDED 5-5 5-7");
+	}
+
+	@Test
+	public void streaming() throws Exception {
+		String left = "first line\nsecond <line>\nthird line";
+		String right = "first head line\nsecond <line>\ninbetween line\nthird line at the end";
+		final HtmlDiffMarker html = new HtmlDiffMarker();
+		DiffMarker stringMarker = new DiffMarker() {
+
+			@Override
+			public String same(String s) {
+				return html.same(s);
+			}
+
+			@Override
+			public String added(String s) {
+				return html.added(s);
+			}
+
+			@Override
+			public String removed(String s) {
+				return html.removed(s);
+			}
+
+			@Override
+			public String replaced(String oldS, String newS) {
+				return html.replaced(oldS, newS);
+			}
+		};
+		StringBuilder out = new StringBuilder();
+		TokenDiff.combinedDiff(left, right, html, out);
+		assertEquals(out.toString(), TokenDiff.combinedDiff(left, right, stringMarker));
+		assertStartsWith(out.toString(), "first <span class=\"added\">head </span>line<br>second &lt;line&gt;<br>");
+	}
+
 	private static void assertDiff(String left, String right, String expectedDiff) {
 		long begin = System.currentTimeMillis();
 		TokenDiff diff = new TokenDiff(left, right, new TxtDiffMarker(), new LineTokenizer(), new WordTokenizer());
@@ -364,6 +364,24 @@ public class LineDiffTest extends ATest {
 					+ "The models are coded in Java in the <code>ScrumModelApplication</code> class or modeled in the GUI modeller <code>ScrumModeller</code> and saved in <code>model.csv</code>. Executing <code>ScrumModeller</code> and clicking <code>Save & Generate</code> generates the sources.");
 	}
 
+	@Test
+	public void largeDocument() {
+		StringBuilder left = new StringBuilder();
+		StringBuilder right = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			String line = "line " + i + " of a rather large document\n";
+			if (i % 100 != 0) left.append(line);
+			if (i % 150 != 0) right.append(line);
+			if (i % 1000 == 0) right.append("inserted line " + i + "\n");
+		}
+		long begin = System.currentTimeMillis();
+		String computedDiff = TokenDiff.combinedDiff(left.toString(), right.toString(), new TxtDiffMarker());
+		long duration = System.currentTimeMillis() - begin;
+		if (duration > 1000) fail("Computing diff took longer than a second: " + duration + "ms.");
+		assertStartsWith(computedDiff, "[+inserted line 0\n]line 1 of");
+		assertContains(computedDiff, "line 199 of a rather large document\n[+line 200 of a rather large document\n]");
+	}
+
 	private static void assertDiff(String left, String right, String expectedDiff) {
 		long begin = System.currentTimeMillis();
 		TokenDiff diff = new TokenDiff(left, right, new TxtDiffMarker(), new LineTokenizer());
@@ -1,8 +1,14 @@
 package ilarkesto.core.json;
 
 import ilarkesto.core.base.Utl;
+import ilarkesto.core.json.JsonParser.Event;
+import ilarkesto.io.ReaderJsonInput;
 import ilarkesto.testng.ATest;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.testng.annotations.Test;
 
 public class JsonTest extends ATest {
@@ -81,6 +87,71 @@ public class JsonTest extends ATest {
 		assertEquals(new JsonObject("{\"list\":[[]]}").toString(), "{\"list\":[[]]}");
 	}
 
+	@Test
+	public void parseNumbers() {
+		JsonObject jo = new JsonObject("{\"a\":-5,\"b\":1.5,\"c\":2e3,\"d\":12345678901234567890}");
+		assertEquals(jo.get("a"), Long.valueOf(-5));
+		assertEquals(jo.get("b"), Double.valueOf(1.5));
+		assertEquals(jo.get("c"), Double.valueOf(2000));
+		assertEquals(jo.get("d"), Double.valueOf(12345678901234567890d));
+	}
+
+	@Test
+	public void escapedStrings() {
+		JsonObject jo = new JsonObject();
+		jo.put("a", "quote \" backslash \\ slash / tab \t newline \n");
+		String json = jo.toString();
+		assertEquals(json, "{\"a\":\"quote \\\" backslash \\\\ slash \\/ tab \\t newline \\n\"}");
+		assertEquals(new JsonObject(json).getString("a"), jo.getString("a"));
+		assertEquals(new JsonObject("{\"a\":\"\\u20ac\"}").getString("a"), "\u20ac");
+	}
+
+	@Test
+	public void pullParser() {
+		JsonParser parser = new JsonParser("{\"skip\":{\"x\":[1,{}]},\"list\":[true,null,\"s\"]}");
+		assertEquals(parser.next(), Event.START_OBJECT);
+		assertEquals(parser.next(), Event.NAME);
+		assertTrue(parser.isName("skip"));
+		assertEquals(parser.next(), Event.START_OBJECT);
+		parser.skipValue();
+		assertEquals(parser.next(), Event.NAME);
+		assertTrue(parser.isName("list"));
+		assertEquals(parser.next(), Event.START_ARRAY);
+		assertEquals(parser.next(), Event.TRUE);
+		assertEquals(parser.next(), Event.NULL);
+		assertEquals(parser.next(), Event.STRING);
+		assertEquals(parser.getString(), "s");
+		assertEquals(parser.next(), Event.END_ARRAY);
+		assertEquals(parser.next(), Event.END_OBJECT);
+		assertEquals(parser.next(), Event.END_DOCUMENT);
+	}
+
+	@Test
+	public void parseLargeStream() {
+		JsonObject jo = new JsonObject();
+		List<JsonObject> items = new ArrayList<JsonObject>();
+		for (int i = 0; i < 50000; i++) {
+			JsonObject item = new JsonObject();
+			item.put("id", i);
+			item.put("name", "item \"" + i + "\"");
+			item.put("tags", Utl.toList("a", "b", "c"));
+			items.add(item);
+		}
+		jo.put("items", items);
+		String json = jo.toString();
+
+		long begin = System.currentTimeMillis();
+		JsonParser parser = ReaderJsonInput.createParser(new StringReader(json));
+		JsonObject parsed = new JsonObject(parser);
+		long duration = System.currentTimeMillis() - begin;
+		if (duration > 3000) fail("Parsing " + json.length() + " chars took longer than 3 seconds: " + duration + "ms.");
+
+		List<JsonObject> parsedItems = parsed.getArrayOfObjects("items");
+		assertEquals(parsedItems.size(), 50000);
+		assertEquals(parsedItems.get(4711).getString("name"), "item \"4711\"");
+		assertEquals(parsed.toString(), json);
+	}
+
 	// --- helper ---
 
 }
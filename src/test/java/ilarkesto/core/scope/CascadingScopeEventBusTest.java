@@ -0,0 +1,167 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.core.scope;
+
+import ilarkesto.core.event.AEvent;
+import ilarkesto.core.event.AEventBus;
+import ilarkesto.core.event.Quiet;
+import ilarkesto.core.event.TypedEvent;
+import ilarkesto.testng.ATest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class CascadingScopeEventBusTest extends ATest {
+
+	@Test
+	public void typedDispatch() {
+		CascadingScope scope = createScope();
+		PingHandler a = scope.putComponent("a", new PingHandler());
+		scope.putComponent("other", new Object());
+		AEventBus eventBus = getEventBus(scope);
+
+		eventBus.fireEvent(new PingEvent());
+		assertEquals(a.count, 1);
+
+		PingHandler b = scope.putComponent("b", new PingHandler());
+		eventBus.fireEvent(new PingEvent());
+		assertEquals(a.count, 2);
+		assertEquals(b.count, 1);
+	}
+
+	@Test
+	public void parentScopeChanges() {
+		CascadingScope scope = createScope();
+		CascadingScope subScope = scope.createScope("sub");
+		PingHandler sub = subScope.putComponent("sub", new PingHandler());
+		AEventBus eventBus = getEventBus(subScope);
+		eventBus.fireEvent(new PingEvent());
+		assertEquals(sub.count, 1);
+
+		PingHandler parent = scope.putComponent("parent", new PingHandler());
+		eventBus.fireEvent(new PingEvent());
+		assertEquals(sub.count, 2);
+		assertEquals(parent.count, 1);
+	}
+
+	@Test
+	public void uncachedBus() {
+		final List<Object> handlers = new ArrayList<Object>();
+		AEventBus eventBus = new AEventBus() {
+
+			@Override
+			protected Collection getPotentialEventHandlers() {
+				return handlers;
+			}
+		};
+		PingHandler a = new PingHandler();
+		handlers.add(a);
+		eventBus.fireEvent(new PingEvent());
+		PingHandler b = new PingHandler();
+		handlers.add(b);
+		eventBus.fireEvent(new PingEvent());
+		assertEquals(a.count, 2);
+		assertEquals(b.count, 1);
+	}
+
+	@Test
+	public void quietEventsBatched() {
+		CascadingScope scope = createScope();
+		PingHandler handler = scope.putComponent("handler", new PingHandler());
+		AEventBus eventBus = getEventBus(scope);
+		final List<Runnable> batches = new ArrayList<Runnable>();
+		eventBus.setQuietEventDispatcher(new AEventBus.QuietEventDispatcher() {
+
+			@Override
+			public void dispatchLater(Runnable batch) {
+				batches.add(batch);
+			}
+		});
+
+		eventBus.fireEvent(new QuietPingEvent());
+		eventBus.fireEvent(new QuietPingEvent());
+		eventBus.fireEvent(new PingEvent());
+		assertEquals(handler.count, 1);
+		assertEquals(batches.size(), 1);
+
+		batches.get(0).run();
+		assertEquals(handler.count, 3);
+	}
+
+	@Test
+	public void performance() {
+		CascadingScope scope = createScope();
+		List<PingHandler> handlers = new ArrayList<PingHandler>();
+		for (int i = 0; i < 500; i++) {
+			scope.putComponent("component" + i, new Object());
+			if (i % 50 == 0) handlers.add(scope.putComponent("handler" + i, new PingHandler()));
+		}
+		AEventBus eventBus = getEventBus(scope);
+
+		long begin = System.currentTimeMillis();
+		for (int i = 0; i < 100000; i++) {
+			eventBus.fireEvent(new QuietPingEvent());
+		}
+		long duration = System.currentTimeMillis() - begin;
+		if (duration > 1000) fail("Firing 100000 events took longer than a second: " + duration + "ms.");
+		assertEquals(handlers.get(0).count, 100000);
+	}
+
+	// --- helper ---
+
+	private static CascadingScope createScope() {
+		return new CascadingScope(null, "test", new ComponentReflector() {
+
+			@Override
+			public void injectComponents(Object component, Scope scope) {}
+
+			@Override
+			public void callInitializationMethods(Object component) {}
+
+			@Override
+			public void outjectComponents(Object component, Scope scope) {}
+		});
+	}
+
+	private static AEventBus getEventBus(CascadingScope scope) {
+		return (AEventBus) scope.getComponent(AEventBus.DEFAULT_COMPONENT_NAME);
+	}
+
+	static class PingHandler {
+
+		int count;
+
+	}
+
+	static class PingEvent extends AEvent implements TypedEvent {
+
+		@Override
+		public boolean isHandler(Object handler) {
+			return handler instanceof PingHandler;
+		}
+
+		@Override
+		public void tryToGetHandled(Object handler) {
+			if (handler instanceof PingHandler) ((PingHandler) handler).count++;
+		}
+
+	}
+
+	static class QuietPingEvent extends PingEvent implements Quiet {}
+
+}
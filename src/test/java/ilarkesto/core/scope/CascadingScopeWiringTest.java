@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.core.scope;
+
+import ilarkesto.core.logging.Log;
+import ilarkesto.scope.ReflectionComponentReflector;
+import ilarkesto.testng.ATest;
+
+import org.testng.annotations.Test;
+
+public class CascadingScopeWiringTest extends ATest {
+
+	private static final Log LOG = Log.get(CascadingScopeWiringTest.class);
+
+	@Test
+	public void wiring() {
+		CascadingScope scope = new CascadingScope(null, "test", new ReflectionComponentReflector());
+		Consumer consumer = scope.putComponent("consumer", new Consumer());
+		Service service = scope.putComponent("service", new Service());
+		scope.wireComponents();
+		assertSame(consumer.service, service);
+		assertEquals(consumer.initCount, 1);
+		assertSame(scope.getComponent("product"), consumer.product);
+
+		scope.putComponent("unrelated", new Service());
+		scope.wireComponents();
+		assertEquals(consumer.initCount, 1);
+
+		Service newService = scope.putComponent("service", new Service());
+		scope.wireComponents();
+		assertSame(consumer.service, newService);
+		assertEquals(consumer.initCount, 2);
+	}
+
+	@Test
+	public void performance() {
+		CascadingScope scope = new CascadingScope(null, "test", new ReflectionComponentReflector());
+		scope.putComponent("service", new Service());
+		long begin = System.currentTimeMillis();
+		for (int i = 0; i < 2000; i++) {
+			scope.putComponent("consumer" + i, new Consumer());
+			scope.getComponent("service");
+		}
+		long duration = System.currentTimeMillis() - begin;
+		LOG.info("Wiring 2000 components took", duration, "ms");
+		if (duration > 5000) fail("Wiring 2000 components took longer than 5 seconds: " + duration + "ms.");
+		assertEquals(((Consumer) scope.getComponent("consumer0")).initCount, 1);
+	}
+
+	static class Service {}
+
+	static class Consumer {
+
+		@In
+		Service service;
+
+		@Out
+		Service product = new Service();
+
+		int initCount;
+
+		@Init
+		void init() {
+			initCount++;
+		}
+
+	}
+
+}
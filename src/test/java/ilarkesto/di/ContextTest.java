@@ -0,0 +1,89 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.di;
+
+import ilarkesto.core.logging.Log;
+import ilarkesto.testng.ATest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+public class ContextTest extends ATest {
+
+	private static final Log LOG = Log.get(ContextTest.class);
+
+	@Test
+	public void beansAndNames() {
+		Context root = getRootContext();
+		root.addBeanProvider(beans("rootBean", "root"));
+
+		Context sub = root.createSubContext("sub");
+		assertEquals(sub.getBean("rootBean"), "root");
+		assertSame(sub.getBeanProvider(), root.getBeanProvider());
+
+		sub.addBeanProvider(beans("subBean", "sub"));
+		assertEquals(sub.getBean("rootBean"), "root");
+		assertEquals(sub.getBean("subBean"), "sub");
+		assertFalse(root.getBeanNames().contains("subBean"));
+
+		Context subSub = sub.createSubContext("subSub");
+		assertEquals(subSub.getBean("subBean"), "sub");
+		assertEquals(subSub.toString(), root.getName() + " > sub > subSub");
+		sub.setName("renamed");
+		assertEquals(subSub.toString(), root.getName() + " > renamed > subSub");
+		assertEquals(Context.getCurrentThreadContextName(), subSub.toString());
+
+		subSub.destroy();
+		sub.destroy();
+	}
+
+	@Test
+	public void performance() {
+		Context root = getRootContext();
+		root.addBeanProvider(beans("performanceBean", "value"));
+		Context session = root.createSubContext("session");
+		session.addBeanProvider(beans("sessionBean", "value"));
+
+		int count = 100000;
+		long begin = System.currentTimeMillis();
+		for (int i = 0; i < count; i++) {
+			Context context = session.createSubContext("gwt-srv");
+			context.getBean("performanceBean");
+			context.getBean("sessionBean");
+			context.destroy();
+		}
+		long duration = Math.max(1, System.currentTimeMillis() - begin);
+		LOG.info("Contexts per second:", count * 1000L / duration);
+		session.destroy();
+		if (duration > 1000) fail("Creating " + count + " contexts took longer than a second: " + duration + "ms.");
+	}
+
+	private static Context getRootContext() {
+		try {
+			return Context.getRootContext();
+		} catch (RuntimeException ex) {
+			return Context.createRootContext("test");
+		}
+	}
+
+	private static Map<String, Object> beans(String name, Object bean) {
+		Map<String, Object> beans = new HashMap<String, Object>();
+		beans.put(name, bean);
+		return beans;
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.gwt.server;
+
+import ilarkesto.base.time.DateAndTime;
+import ilarkesto.gwt.client.ADataTransferObject;
+import ilarkesto.persistence.ADao;
+import ilarkesto.persistence.AEntity;
+import ilarkesto.persistence.ChangeFeed;
+import ilarkesto.testng.ATest;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+public class AGwtConversationTest extends ATest {
+
+	@Test
+	public void createDelta() {
+		Map oldProperties = properties("label", "a", "description", "b", "tag", "c");
+		Map newProperties = properties("label", "a", "description", "x", "owner", "y");
+
+		Map delta = AGwtConversation.createDelta(oldProperties, newProperties);
+		assertEquals(delta.get("id"), "1");
+		assertEquals(delta.get("@type"), "task");
+		assertFalse(delta.containsKey("label"));
+		assertEquals(delta.get("description"), "x");
+		assertEquals(delta.get("owner"), "y");
+		assertTrue(delta.containsKey("tag"));
+		assertNull(delta.get("tag"));
+		assertEquals(delta.size(), 5);
+
+		assertNull(AGwtConversation.createDelta(newProperties, properties("label", "a", "description", "x", "owner",
+			"y")));
+	}
+
+	@Test
+	public void collectionChangedInPlace() throws Exception {
+		TestConversation conversation = new TestConversation();
+		TestEntity entity = new TestEntity();
+		entity.tags.add("a");
+		setLastModified(entity, 1000);
+		conversation.sendToClient(entity);
+		assertEquals(getEntity(conversation.popNextData()).get("tags"), entity.tags);
+
+		entity.tags.add("b");
+		setLastModified(entity, 2000);
+		conversation.sendToClient(entity);
+		Map delta = getEntity(conversation.popNextData());
+		assertEquals(delta.get("tags"), new HashSet(Arrays.asList("a", "b")));
+		assertFalse(delta.containsKey("label"));
+
+		setLastModified(entity, 3000);
+		conversation.sendToClient(entity);
+		assertFalse(conversation.popNextData().containsEntities());
+	}
+
+	@Test
+	public void changesAfterFirstSend() throws Exception {
+		ChangeFeed changeFeed = new ChangeFeed();
+		TestConversation conversation = new TestConversation();
+		conversation.trackChanges(changeFeed);
+		TestEntity entity = new TestEntity();
+		setLastModified(entity, 1000);
+		conversation.sendToClient(entity);
+		conversation.popNextData();
+
+		entity.tags.add("a");
+		setLastModified(entity, 2000);
+		appendChange(changeFeed, entity);
+		assertTrue(conversation.sendChangesToClient(changeFeed));
+		assertEquals(getEntity(conversation.popNextData()).get("tags"), entity.tags);
+	}
+
+	private static void appendChange(ChangeFeed changeFeed, AEntity entity) throws Exception {
+		Method method = ChangeFeed.class.getDeclaredMethod("append", Collection.class, Collection.class);
+		method.setAccessible(true);
+		method.invoke(changeFeed, Arrays.asList(entity), Collections.emptyList());
+	}
+
+	private static Map getEntity(ADataTransferObject data) {
+		assertEquals(data.getEntities().size(), 1);
+		return data.getEntities().iterator().next();
+	}
+
+	private static void setLastModified(AEntity entity, long millis) throws Exception {
+		Field field = AEntity.class.getDeclaredField("lastModified");
+		field.setAccessible(true);
+		field.set(entity, new DateAndTime(millis));
+	}
+
+	private static class TestConversation extends AGwtConversation {
+
+		public TestConversation() {
+			super(null, 1);
+		}
+
+		@Override
+		protected ADataTransferObject createDataTransferObject() {
+			return new ADataTransferObject() {};
+		}
+
+	}
+
+	private static class TestEntity extends AEntity {
+
+		private Set<String> tags = new HashSet<String>();
+
+		@Override
+		public ADao getDao() {
+			return null;
+		}
+
+		@Override
+		public void updateProperties(Map<?, ?> properties) {}
+
+		@Override
+		protected void storeProperties(Map properties) {
+			properties.put("@type", "test");
+			properties.put("id", getId());
+			properties.put("label", "test");
+			properties.put("tags", tags);
+		}
+
+	}
+
+	private static Map properties(String... keysAndValues) {
+		Map ret = new HashMap();
+		ret.put("id", "1");
+		ret.put("@type", "task");
+		for (int i = 0; i < keysAndValues.length; i += 2) {
+			ret.put(keysAndValues[i], keysAndValues[i + 1]);
+		}
+		return ret;
+	}
+
+}
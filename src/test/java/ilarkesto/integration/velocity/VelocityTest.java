@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.integration.velocity;
+
+import ilarkesto.io.IO;
+import ilarkesto.testng.ATest;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.velocity.VelocityContext;
+import org.testng.annotations.Test;
+
+public class VelocityTest extends ATest {
+
+	@Test
+	public void processDir() {
+		File dir = new File(OUTPUT_DIR + "/velocity");
+		IO.delete(dir);
+		File templateDir = new File(dir, "templates");
+		int count = 20;
+		for (int i = 0; i < count; i++) {
+			IO.writeFile(new File(templateDir, "page" + i + ".html.vm"), "<p>$title " + i + "</p>", IO.UTF_8);
+		}
+		IO.writeFile(new File(templateDir, "style.css"), "p {}", IO.UTF_8);
+		VelocityContext context = Velocity.createContext(Collections.singletonMap("title", "Hello"));
+
+		Velocity velocity = Velocity.get(templateDir);
+		assertSame(Velocity.get(templateDir), velocity);
+
+		File sequentialDir = new File(dir, "sequential");
+		File parallelDir = new File(dir, "parallel");
+		Velocity.processDir(templateDir, sequentialDir, context);
+		velocity.processDir(parallelDir, context, 4);
+		for (int i = 0; i < count; i++) {
+			String name = "page" + i + ".html";
+			String expected = "<p>Hello " + i + "</p>";
+			assertEquals(IO.readFile(new File(sequentialDir, name), IO.UTF_8), expected);
+			assertEquals(IO.readFile(new File(parallelDir, name), IO.UTF_8), expected);
+		}
+		assertEquals(IO.readFile(new File(parallelDir, "style.css"), IO.UTF_8), "p {}");
+
+		// the shared instance knows the written output and skips unchanged files
+		assertFalse(velocity.processTemplate("page0.html.vm", new File(parallelDir, "page0.html"), context));
+	}
+
+	@Test
+	public void libraryChange() {
+		File dir = new File(OUTPUT_DIR + "/velocity-lib");
+		IO.delete(dir);
+		File templateDir = new File(dir, "templates");
+		File libFile = new File(templateDir, Velocity.LIB_TEMPLATE_NAME);
+		IO.writeFile(libFile, "#macro(greeting)Hello#end", IO.UTF_8);
+		IO.writeFile(new File(templateDir, "page.html.vm"), "<p>#greeting()</p>", IO.UTF_8);
+		File outputDir = new File(dir, "output");
+		VelocityContext context = new VelocityContext();
+
+		Velocity.processDir(templateDir, outputDir, context);
+		assertEquals(IO.readFile(new File(outputDir, "page.html"), IO.UTF_8), "<p>Hello</p>");
+
+		IO.writeFile(libFile, "#macro(greeting)Bye#end", IO.UTF_8);
+		libFile.setLastModified(libFile.lastModified() + 2000);
+		Velocity.processDir(templateDir, outputDir, context);
+		assertEquals(IO.readFile(new File(outputDir, "page.html"), IO.UTF_8), "<p>Bye</p>");
+	}
+
+}
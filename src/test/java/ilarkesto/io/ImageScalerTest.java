@@ -0,0 +1,129 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.io;
+
+import ilarkesto.core.logging.Log;
+import ilarkesto.testng.ATest;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.testng.annotations.Test;
+
+public class ImageScalerTest extends ATest {
+
+	private static final Log LOG = Log.get(ImageScalerTest.class);
+
+	@Test
+	public void scaleToFit() {
+		BufferedImage image = createImage(1600, 1200);
+		BufferedImage scaled = ImageScaler.scaleToFit(image, 200, 200);
+		assertEquals(scaled.getWidth(), 200);
+		assertEquals(scaled.getHeight(), 150);
+		assertSame(ImageScaler.scaleToFit(image, 2000, 2000), image);
+		assertEquals(ImageScaler.scaleToHeight(image, 2400).getWidth(), 3200);
+
+		// left half red, right half blue
+		assertEquals(new Color(scaled.getRGB(20, 75)), Color.RED);
+		assertEquals(new Color(scaled.getRGB(180, 75)), Color.BLUE);
+	}
+
+	@Test
+	public void thumbnailCache() throws Exception {
+		File dir = new File(OUTPUT_DIR + "/thumbnails");
+		IO.delete(dir);
+		IO.createDirectory(dir);
+		File source = new File(dir, "source.png");
+		ImageIO.write(createImage(800, 600), "png", source);
+
+		ThumbnailCache cache = new ThumbnailCache(new File(dir, "cache"), 1000000);
+		File thumbnail = cache.getThumbnail(source, 100, 100);
+		assertTrue(thumbnail.exists());
+		assertEquals(IO.loadImage(thumbnail).getWidth(), 100);
+		assertEquals(cache.getThumbnail(source, 100, 100), thumbnail);
+		assertFalse(cache.getThumbnail(source, 50, 50).equals(thumbnail));
+
+		ThumbnailCache tinyCache = new ThumbnailCache(new File(dir, "tiny"), 1);
+		File first = tinyCache.getThumbnail(source, 100, 100);
+		assertTrue(first.exists());
+		File second = tinyCache.getThumbnail(source, 50, 50);
+		assertTrue(second.exists());
+		assertFalse(first.exists());
+		assertEquals(tinyCache.getSize(), second.length());
+	}
+
+	@Test
+	public void saveTransparentAsJpg() throws Exception {
+		File dir = new File(OUTPUT_DIR + "/transparent");
+		IO.delete(dir);
+		IO.createDirectory(dir);
+		BufferedImage source = new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = source.createGraphics();
+		g.setColor(Color.RED);
+		g.fillRect(0, 0, 200, 300);
+		g.dispose();
+		File png = new File(dir, "source.png");
+		ImageIO.write(source, "png", png);
+
+		File jpg = new File(dir, "scaled.jpg");
+		IO.scaleImage(png.getPath(), jpg.getPath(), "jpg", 100, 100);
+		BufferedImage scaled = IO.loadImage(jpg);
+		assertEquals(scaled.getWidth(), 100);
+		assertEquals(scaled.getHeight(), 75);
+
+		File scaledPng = new File(dir, "scaled.png");
+		IO.scaleImage(png.getPath(), scaledPng.getPath(), "png", 100, 100);
+		assertTrue(IO.loadImage(scaledPng).getColorModel().hasAlpha());
+	}
+
+	@Test
+	public void performance() {
+		BufferedImage image = createImage(3000, 2000);
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 5; i++) {
+			ImageScaler.scaleToFit(image, 300, 300);
+		}
+		long scalerTime = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		for (int i = 0; i < 5; i++) {
+			Image scaled = image.getScaledInstance(300, 200, Image.SCALE_SMOOTH);
+			IO.toBufferedImage(scaled, 300, 200);
+		}
+		long smoothTime = System.currentTimeMillis() - start;
+
+		LOG.info("Scaling 3000x2000 to 300x200, 5 times: ImageScaler", scalerTime, "ms, SCALE_SMOOTH", smoothTime,
+			"ms");
+		if (scalerTime > smoothTime) fail("ImageScaler slower than SCALE_SMOOTH: " + scalerTime + " ms");
+	}
+
+	private static BufferedImage createImage(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.RED);
+		g.fillRect(0, 0, width / 2, height);
+		g.setColor(Color.BLUE);
+		g.fillRect(width / 2, 0, width - width / 2, height);
+		g.dispose();
+		return image;
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.locale;
+
+import ilarkesto.core.logging.Log;
+import ilarkesto.testng.ATest;
+
+import java.text.MessageFormat;
+
+import org.testng.annotations.Test;
+
+public class MessageTemplateTest extends ATest {
+
+	private static final Log LOG = Log.get(MessageTemplateTest.class);
+
+	@Test
+	public void sameAsMessageFormat() {
+		Object[] parameters = new Object[] { 12345.5, "a", null };
+		String[] patterns = new String[] { "", "plain", "{0}", "x{0}y{1}z", "{2} and {1} and {0}", "{3} missing",
+				"it''s {0}", "'{0}' quoted", "'it''s {0}'", "}", "{0,number,#.#}",
+				"{0,choice,0#none|1#{0} items}" };
+		for (String pattern : patterns) {
+			assertEquals(MessageTemplate.compile(pattern).format(parameters),
+				new MessageFormat(pattern).format(parameters), pattern);
+		}
+	}
+
+	@Test
+	public void html() {
+		assertEquals(MessageTemplate.compile("<html>{0}").format("<b>"), "<html>&lt;b&gt;");
+		assertEquals(MessageTemplate.compile("{0}").format("<b>"), "<b>");
+	}
+
+	@Test
+	public void unmatchedBraces() {
+		try {
+			MessageTemplate.compile("{0");
+		} catch (IllegalArgumentException ex) {
+			return;
+		}
+		fail("IllegalArgumentException expected");
+	}
+
+	@Test
+	public void performance() {
+		String pattern = "Task {0} was moved to {1} by {2}.";
+		MessageTemplate template = MessageTemplate.compile(pattern);
+		MessageFormat format = new MessageFormat(pattern);
+
+		StringBuilder sb = new StringBuilder();
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 100000; i++) {
+			sb.setLength(0);
+			template.format(sb, "tsk1", "Sprint 5", "duke");
+		}
+		long templateTime = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		for (int i = 0; i < 100000; i++) {
+			format.format(new Object[] { "tsk1", "Sprint 5", "duke" });
+		}
+		long formatTime = System.currentTimeMillis() - start;
+
+		LOG.info("100000 formats, MessageTemplate:", templateTime, "ms, MessageFormat:", formatTime, "ms");
+		if (templateTime > formatTime) fail("MessageTemplate slower than MessageFormat: " + templateTime + " ms");
+	}
+
+}
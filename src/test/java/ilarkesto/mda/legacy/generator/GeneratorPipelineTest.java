@@ -0,0 +1,111 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.mda.legacy.generator;
+
+import ilarkesto.io.IO;
+import ilarkesto.testng.ATest;
+
+import java.io.File;
+
+import org.testng.annotations.Test;
+
+public class GeneratorPipelineTest extends ATest {
+
+	private static final String SOURCE_PATH = OUTPUT_DIR + "/generatorPipeline";
+
+	@Test
+	public void incremental() {
+		IO.delete(new File(SOURCE_PATH));
+		File manifestFile = new File(SOURCE_PATH + "/generator.manifest");
+		TestGenerator generator = new TestGenerator("first");
+
+		run(new GeneratorPipeline(manifestFile), generator);
+		assertEquals(generator.renderCount, 1);
+		assertTrue(generator.getFile().exists());
+
+		// unchanged inputs are skipped
+		run(new GeneratorPipeline(manifestFile), generator);
+		assertEquals(generator.renderCount, 1);
+
+		// changed model
+		generator.label = "second";
+		run(new GeneratorPipeline(manifestFile), generator);
+		assertEquals(generator.renderCount, 2);
+		assertTrue(IO.readFile(generator.getFile(), IO.UTF_8).contains("second"));
+
+		// deleted output
+		IO.delete(generator.getFile());
+		run(new GeneratorPipeline(manifestFile), generator);
+		assertEquals(generator.renderCount, 3);
+		assertTrue(generator.getFile().exists());
+
+		// upgraded library
+		run(new GeneratorPipeline(manifestFile) {
+
+			@Override
+			synchronized byte[] getLibraryHash() {
+				return new byte[] { 42 };
+			}
+		}, generator);
+		assertEquals(generator.renderCount, 4);
+	}
+
+	private static void run(GeneratorPipeline pipeline, AClassGenerator generator) {
+		pipeline.setThreads(1).add(generator).run();
+	}
+
+	static class TestGenerator extends AClassGenerator {
+
+		private String label;
+		private transient int renderCount;
+
+		public TestGenerator(String label) {
+			this.label = label;
+		}
+
+		@Override
+		protected String getName() {
+			return "GeneratedTest";
+		}
+
+		@Override
+		protected String getPackage() {
+			return "test";
+		}
+
+		@Override
+		protected boolean isInterface() {
+			return false;
+		}
+
+		@Override
+		protected boolean isOverwrite() {
+			return true;
+		}
+
+		@Override
+		protected String getSourcePath() {
+			return SOURCE_PATH;
+		}
+
+		@Override
+		protected void writeContent() {
+			renderCount++;
+			ln("    public static final String LABEL = \"" + label + "\";");
+		}
+
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.mda.model;
+
+import ilarkesto.testng.ATest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class ModelTest extends ATest {
+
+	@Test
+	public void getNodeById() {
+		Model model = new Model();
+		Node pkg = model.getRoot().addChild(NodeTypes.Package, "test");
+		Node entity = pkg.addChild(NodeTypes.Entity, "Person");
+		assertSame(model.getNodeById(pkg.getId()), pkg);
+		assertSame(model.getNodeById(entity.getId()), entity);
+
+		pkg.removeChild(entity);
+		assertNull(model.getNodeById(entity.getId()));
+	}
+
+	@Test
+	public void getChildrenByType() {
+		Model model = new Model();
+		Node entity = model.getRoot().addChild(NodeTypes.Entity, "Person");
+		Node firstName = entity.addChild(NodeTypes.TextProperty, "firstName");
+		assertEquals(entity.getChildrenByType(NodeTypes.TextProperty), Arrays.asList(firstName));
+		assertSame(entity.getChildByType(NodeTypes.TextProperty), firstName);
+		assertNull(entity.getChildByType(NodeTypes.Package));
+
+		Node lastName = entity.addChild(NodeTypes.TextProperty, "lastName");
+		assertEquals(entity.getChildrenByType(NodeTypes.TextProperty), Arrays.asList(firstName, lastName));
+		assertSame(entity.getChild(NodeTypes.TextProperty, "lastName"), lastName);
+
+		entity.removeChild(firstName);
+		assertEquals(entity.getChildrenByType(NodeTypes.TextProperty), Arrays.asList(lastName));
+	}
+
+	@Test
+	public void addNodesWithParentAfterChild() {
+		Model model = new Model();
+		List<List<String>> records = new ArrayList<List<String>>();
+		records.add(Arrays.asList("b", "a", NodeTypes.Entity, "Person"));
+		records.add(Arrays.asList("a", "root", NodeTypes.Package, "test"));
+		model.addNodes(records);
+		assertSame(model.getNodeById("b").getParent(), model.getNodeById("a"));
+	}
+
+	@Test
+	public void loadLargeModel() {
+		Model model = createLargeModel(100000);
+		File file = new File(OUTPUT_DIR + "/mda/largeModel.csv");
+		file.getParentFile().mkdirs();
+		CsvFileModelSource source = new CsvFileModelSource(file);
+		source.save(model);
+
+		Model loaded = new Model();
+		long begin = System.currentTimeMillis();
+		source.load(loaded);
+		long duration = System.currentTimeMillis() - begin;
+		if (duration > 5000) fail("Loading large model took longer than 5 seconds: " + duration + "ms.");
+		assertEquals(loaded.getNodeCount(), model.getNodeCount());
+
+		begin = System.currentTimeMillis();
+		int properties = 0;
+		for (Node pkg : loaded.getRoot().getChildrenByType(NodeTypes.Package)) {
+			for (Node entity : pkg.getChildrenByType(NodeTypes.Entity)) {
+				properties += entity.getChildrenByType(NodeTypes.TextProperty).size();
+				assertNotNull(entity.getChild(NodeTypes.TextProperty, "property0"));
+			}
+		}
+		duration = System.currentTimeMillis() - begin;
+		if (duration > 1000) fail("Querying large model took longer than a second: " + duration + "ms.");
+		assertEquals(properties, model.getNodeCount() - 1 - 100 - 100 * 99);
+	}
+
+	private static Model createLargeModel(int nodeCount) {
+		Model model = new Model();
+		int packages = 100;
+		int entitiesPerPackage = 99;
+		int propertiesPerEntity = (nodeCount - packages - packages * entitiesPerPackage) / (packages * entitiesPerPackage);
+		for (int p = 0; p < packages; p++) {
+			Node pkg = model.getRoot().addChild(NodeTypes.Package, "package" + p);
+			for (int e = 0; e < entitiesPerPackage; e++) {
+				Node entity = pkg.addChild(NodeTypes.Entity, "Entity" + e);
+				for (int i = 0; i < propertiesPerEntity; i++) {
+					entity.addChild(NodeTypes.TextProperty, "property" + i);
+				}
+			}
+		}
+		return model;
+	}
+
+}
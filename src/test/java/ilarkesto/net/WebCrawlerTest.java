@@ -17,9 +17,17 @@ package ilarkesto.net;
 import ilarkesto.testng.ATest;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
 
 import org.testng.annotations.Test;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
 public class WebCrawlerTest extends ATest {
 
 	public static void main(String[] args) {
@@ -65,6 +73,49 @@ public class WebCrawlerTest extends ATest {
 		assertFalse(WebCrawler.isProbablyHtml("http://koczewski.de/image.png"));
 	}
 
+	@Test
+	public void extractLinks() {
+		assertEquals(HtmlLinkExtractor.extract("<a href=\"a.html\">a</a><img src='b.png'><A HREF = c.html>"),
+			Arrays.asList("a.html", "b.png", "c.html"));
+		assertEquals(HtmlLinkExtractor.extract("<p>no links, just a reference</p>"), Arrays.asList());
+	}
+
+	@Test
+	public void crawlLocalServer() throws IOException {
+		final int pageCount = 300;
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String path = exchange.getRequestURI().getPath();
+				int page = Integer.parseInt(path.substring(path.indexOf("page") + 4, path.indexOf(".html")));
+				StringBuilder html = new StringBuilder("<html><head><meta charset=\"UTF-8\"></head><body>");
+				for (int child = page * 2; child <= page * 2 + 1 && child <= pageCount; child++) {
+					html.append("<a href=\"page").append(child).append(".html\">").append(child).append("</a>");
+				}
+				html.append("<a href=\"page1.html#top\">top</a><a href=\"http://example.invalid/\">external</a>");
+				html.append("</body></html>");
+				byte[] data = html.toString().getBytes("UTF-8");
+				exchange.getResponseHeaders().set("Content-Type", "text/html");
+				exchange.sendResponseHeaders(200, data.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(data);
+				out.close();
+			}
+		});
+		server.start();
+		try {
+			WebCrawler wc = new WebCrawler();
+			wc.setThreads(8);
+			wc.setMaxConnectionsPerHost(4);
+			wc.crawl("http://localhost:" + server.getAddress().getPort() + "/page1.html");
+			assertEquals(wc.getCrawledUrls().size(), pageCount);
+		} finally {
+			server.stop(0);
+		}
+	}
+
 	@Test
 	public void crawl() {
 		WebCrawler wc = new WebCrawler();
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.persistence;
+
+import ilarkesto.auth.AUser;
+import ilarkesto.search.Indexable;
+import ilarkesto.search.SearchResultsConsumer;
+import ilarkesto.testng.ATest;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+public class ADaoSearchTest extends ATest {
+
+	@Test
+	public void sameResultsAsScan() {
+		Project apollo = new Project("Apollo Program");
+		Project gemini = new Project("Gemini");
+		List<Task> tasks = Arrays.asList(new Task("Build rocket", apollo), new Task("Launch-Pad setup", gemini),
+			new Task("Moonwalk", null), new Task("Rocket test", gemini));
+		TaskDao dao = createDao(tasks);
+
+		assertEquals(search(dao, "ocke"), set(tasks.get(0), tasks.get(3)));
+		assertEquals(search(dao, "pollo"), set(tasks.get(0)));
+		assertEquals(search(dao, "gram", "rocket"), set(tasks.get(0)));
+		assertEquals(search(dao, "launch-pad"), set(tasks.get(1)));
+		assertNotNull(dao.getSearchIndex());
+
+		String[][] keysList = { { "rocket" }, { "walk" }, { "gemini" }, { "ini", "test" }, { "d s" }, { "Rocket" },
+				{ "xyz" }, { "" } };
+		for (String[] keys : keysList) {
+			assertEquals(search(dao, keys), scan(tasks, keys), Arrays.toString(keys));
+		}
+
+		// the referenced entity changes without the tasks being saved
+		gemini.label = "Mercury";
+		assertEquals(search(dao, "cury"), set(tasks.get(1), tasks.get(3)));
+		assertEquals(search(dao, "cury"), scan(tasks, "cury"));
+	}
+
+	@Test
+	public void indexHasCommittedChanges() {
+		Task rocket = new Task("Build rocket", null);
+		Task launch = new Task("Rocket launch", null);
+		TaskDao dao = createDao(Arrays.asList(rocket, launch));
+		TransactionService transactionService = dao.getTransactionService();
+		assertEquals(search(dao, "rocket"), set(rocket, launch));
+
+		// the own changes are visible, the other threads see the committed entities only
+		Task test = new Task("Rocket test", null);
+		dao.saveEntity(test);
+		dao.deleteEntity(launch);
+		assertEquals(search(dao, "rocket"), set(rocket, test));
+		assertEquals(searchInOtherThread(dao, "rocket"), set(rocket, launch));
+
+		// a cancelled delete does not remove the entity from the index
+		transactionService.cancel();
+		assertEquals(search(dao, "rocket"), set(rocket, launch));
+
+		dao.saveEntity(test);
+		dao.deleteEntity(launch);
+		transactionService.commit();
+		assertEquals(searchInOtherThread(dao, "rocket"), set(rocket, test));
+
+		test.label = "Moonwalk";
+		dao.saveEntity(test);
+		transactionService.commit();
+		assertEquals(searchInOtherThread(dao, "moon"), set(test));
+		assertEquals(searchInOtherThread(dao, "rocket"), set(rocket));
+	}
+
+	private static Set<AEntity> searchInOtherThread(final TaskDao dao, final String... keys) {
+		final Set<AEntity> ret = new HashSet<AEntity>();
+		Thread thread = new Thread() {
+
+			@Override
+			public void run() {
+				ret.addAll(search(dao, keys));
+			}
+		};
+		thread.start();
+		try {
+			thread.join();
+		} catch (InterruptedException ex) {
+			throw new RuntimeException(ex);
+		}
+		return ret;
+	}
+
+	private static Set<AEntity> search(TaskDao dao, String... keys) {
+		final Set<String> keySet = new HashSet<String>(Arrays.asList(keys));
+		final Set<AEntity> ret = new HashSet<AEntity>();
+		dao.feed(new SearchResultsConsumer() {
+
+			@Override
+			public AUser getSearcher() {
+				return null;
+			}
+
+			@Override
+			public Set<String> getKeys() {
+				return keySet;
+			}
+
+			@Override
+			public void addEntity(AEntity entity) {
+				ret.add(entity);
+			}
+		});
+		return ret;
+	}
+
+	private static Set<AEntity> scan(Collection<Task> tasks, String... keys) {
+		Set<AEntity> ret = new HashSet<AEntity>();
+		for (Task task : tasks) {
+			if (Persist.matchesKeys(task, Arrays.asList(keys))) ret.add(task);
+		}
+		return ret;
+	}
+
+	private static Set<AEntity> set(AEntity... entities) {
+		return new HashSet<AEntity>(Arrays.asList(entities));
+	}
+
+	private static TaskDao createDao(Collection<Task> tasks) {
+		EntityQueryTest.MemoryEntityStore store = new EntityQueryTest.MemoryEntityStore();
+		for (Task task : tasks) {
+			store.save(task);
+		}
+		TransactionService transactionService = new TransactionService();
+		transactionService.setEntityStore(store);
+		TaskDao dao = new TaskDao();
+		dao.setTransactionService(transactionService);
+		dao.setDaoService(new DaoService());
+		return dao;
+	}
+
+	private static class Project extends AEntity {
+
+		private String label;
+
+		public Project(String label) {
+			this.label = label;
+		}
+
+		@Override
+		public boolean matchesKey(String key) {
+			if (super.matchesKey(key)) return true;
+			if (matchesKey(label, key)) return true;
+			return false;
+		}
+
+		@Override
+		public ADao getDao() {
+			return null;
+		}
+
+		@Override
+		public void updateProperties(Map<?, ?> properties) {}
+
+	}
+
+	private static class Task extends AEntity implements Indexable {
+
+		private String label;
+		private Project project;
+
+		public Task(String label, Project project) {
+			this.label = label;
+			this.project = project;
+		}
+
+		@Override
+		public boolean matchesKey(String key) {
+			if (super.matchesKey(key)) return true;
+			if (matchesKey(label, key)) return true;
+			if (matchesKey(project, key)) return true;
+			return false;
+		}
+
+		@Override
+		public boolean collectSearchTexts(Collection<String> texts) {
+			boolean complete = super.collectSearchTexts(texts);
+			if (!collectSearchTexts(label, texts)) complete = false;
+			if (!collectSearchTexts(project, texts)) complete = false;
+			return complete;
+		}
+
+		@Override
+		public ADao getDao() {
+			return null;
+		}
+
+		@Override
+		public void updateProperties(Map<?, ?> properties) {}
+
+	}
+
+	private static class TaskDao extends ADao<Task> {
+
+		@Override
+		public String getEntityName() {
+			return "task";
+		}
+
+		@Override
+		public Class getEntityClass() {
+			return Task.class;
+		}
+
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.persistence;
+
+import ilarkesto.base.time.Date;
+import ilarkesto.io.IO;
+import ilarkesto.testng.ATest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class BackupStoreTest extends ATest {
+
+	@Test
+	public void deduplication() {
+		File dir = new File(OUTPUT_DIR + "/backupStore");
+		IO.delete(dir);
+		File entityFile = new File(dir, "entity.xml");
+		String xml = "<entity id=\"e1\"><label>some label</label></entity>";
+
+		BackupStore store = new BackupStore(new File(dir, "store"), true);
+		IO.writeFile(entityFile, xml, IO.UTF_8);
+		assertTrue(store.store("entity", entityFile) > 0);
+		assertEquals(store.store("entity", entityFile), 0);
+		IO.writeFile(entityFile, xml + " ", IO.UTF_8);
+		assertTrue(store.store("entity", entityFile) > 0);
+
+		List<BackupStore.Entry> entries = store.getEntries(Date.today());
+		assertEquals(entries.size(), 3);
+		assertEquals(entries.get(0).getType(), "entity");
+		assertEquals(entries.get(0).getFileName(), "entity.xml");
+		assertEquals(entries.get(0).getHash(), entries.get(1).getHash());
+		assertFalse(entries.get(1).getHash().equals(entries.get(2).getHash()));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IO.copyData(store.open(entries.get(0).getHash()), out);
+		assertEquals(new String(out.toByteArray()), xml);
+
+		store.deleteOlderThan(Date.today());
+		assertEquals(store.getEntries(Date.today()).size(), 3);
+		store.deleteOlderThan(Date.today().addDays(1));
+		assertTrue(store.getEntries(Date.today()).isEmpty());
+		for (File bucket : new File(dir, "store/objects").listFiles()) {
+			assertEquals(bucket.list().length, 0);
+		}
+		store.close();
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.persistence;
+
+import ilarkesto.testng.ATest;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+public class ChangeFeedTest extends ATest {
+
+	@Test
+	public void changesSince() {
+		ChangeFeed feed = new ChangeFeed(10);
+		AEntity a = new TestEntity();
+		AEntity b = new TestEntity();
+		AEntity c = new TestEntity();
+
+		feed.append(Arrays.asList(a, b), Collections.<AEntity> emptyList());
+		long sequence = feed.getLastSequence();
+		assertEquals(sequence, 2);
+
+		feed.append(Arrays.asList(a), Collections.<AEntity> emptyList());
+		feed.append(Arrays.asList(c), Arrays.asList(a));
+
+		Collection<ChangeFeed.Change> changes = feed.getChangesSince(sequence);
+		assertEquals(changes.size(), 2);
+		Iterator<ChangeFeed.Change> iterator = changes.iterator();
+		ChangeFeed.Change change = iterator.next();
+		assertSame(change.getEntity(), c);
+		assertFalse(change.isDeleted());
+		change = iterator.next();
+		assertSame(change.getEntity(), a);
+		assertTrue(change.isDeleted());
+		assertEquals(change.getSequence(), 5);
+
+		assertTrue(feed.getChangesSince(feed.getLastSequence()).isEmpty());
+	}
+
+	@Test
+	public void overrun() {
+		ChangeFeed feed = new ChangeFeed(3);
+		AEntity a = new TestEntity();
+		for (int i = 0; i < 5; i++) {
+			feed.append(Arrays.asList(a), Collections.<AEntity> emptyList());
+		}
+		assertNull(feed.getChangesSince(1));
+		assertEquals(feed.getChangesSince(2).size(), 1);
+	}
+
+	private static class TestEntity extends AEntity {
+
+		@Override
+		public ADao getDao() {
+			return null;
+		}
+
+		@Override
+		public void updateProperties(Map<?, ?> properties) {}
+
+	}
+
+}
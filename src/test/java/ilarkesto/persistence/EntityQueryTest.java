@@ -0,0 +1,238 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.persistence;
+
+import ilarkesto.core.logging.Log;
+import ilarkesto.fp.Predicate;
+import ilarkesto.testng.ATest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+public class EntityQueryTest extends ATest {
+
+	private static final Log LOG = Log.get(EntityQueryTest.class);
+
+	private static final Comparator<TestEntity> BY_NUMBER = new Comparator<TestEntity>() {
+
+		@Override
+		public int compare(TestEntity a, TestEntity b) {
+			return a.number - b.number;
+		}
+	};
+
+	private static final Predicate<TestEntity> EVEN = new Predicate<TestEntity>() {
+
+		@Override
+		public boolean test(TestEntity e) {
+			return e.number % 2 == 0;
+		}
+	};
+
+	@Test
+	public void query() {
+		TestDao dao = createDao(100);
+
+		assertEquals(dao.query().count(), 100);
+		assertEquals(dao.query(EVEN).count(), 50);
+
+		List<TestEntity> top = dao.query(EVEN).orderBy(BY_NUMBER).limit(3).list();
+		assertEquals(top.size(), 3);
+		assertEquals(top.get(0).number, 0);
+		assertEquals(top.get(2).number, 4);
+
+		final int[] visited = new int[1];
+		dao.query().forEach(new EntityQuery.Visitor<TestEntity>() {
+
+			@Override
+			public boolean visit(TestEntity entity) {
+				return ++visited[0] < 5;
+			}
+		});
+		assertEquals(visited[0], 5);
+		assertEquals(dao.query().limit(7).list().size(), 7);
+	}
+
+	@Test
+	public void transactionOverlay() {
+		TestDao dao = createDao(10);
+		TestEntity first = dao.query().orderBy(BY_NUMBER).first();
+		assertEquals(first.number, 0);
+
+		TestEntity created = new TestEntity(-1);
+		dao.getTransactionService().saveEntity(created);
+		dao.getTransactionService().deleteEntity(first);
+
+		assertSame(dao.query().orderBy(BY_NUMBER).first(), created);
+		assertEquals(dao.query().count(), 10);
+		assertFalse(dao.query().list().contains(first));
+
+		dao.getTransactionService().cancel();
+		assertEquals(dao.query().orderBy(BY_NUMBER).first().number, 0);
+	}
+
+	@Test
+	public void performance() {
+		TestDao dao = createDao(200000);
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 20; i++) {
+			dao.query(EVEN).orderBy(BY_NUMBER).limit(20).list();
+		}
+		long topTime = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		for (int i = 0; i < 20; i++) {
+			dao.query(EVEN).parallel().orderBy(BY_NUMBER).limit(20).list();
+		}
+		long parallelTime = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		for (int i = 0; i < 20; i++) {
+			List<TestEntity> all = new ArrayList<TestEntity>(dao.getEntities(EVEN));
+			Collections.sort(all, BY_NUMBER);
+		}
+		long setTime = System.currentTimeMillis() - start;
+
+		LOG.info("Top 20 of 200000 entities, 20 times:", topTime, "ms, parallel:", parallelTime,
+			"ms, getEntities() and sort:", setTime, "ms");
+		if (topTime > setTime) fail("Top-N query slower than getEntities(): " + topTime + " ms");
+	}
+
+	private TestDao createDao(int count) {
+		MemoryEntityStore store = new MemoryEntityStore();
+		for (int i = 0; i < count; i++) {
+			store.save(new TestEntity(i));
+		}
+		TransactionService transactionService = new TransactionService();
+		transactionService.setEntityStore(store);
+		TestDao dao = new TestDao();
+		dao.setTransactionService(transactionService);
+		return dao;
+	}
+
+	private static class TestEntity extends AEntity {
+
+		private int number;
+
+		public TestEntity(int number) {
+			this.number = number;
+		}
+
+		@Override
+		public ADao getDao() {
+			return null;
+		}
+
+		@Override
+		public void updateProperties(Map<?, ?> properties) {}
+
+	}
+
+	private static class TestDao extends ADao<TestEntity> {
+
+		@Override
+		public String getEntityName() {
+			return "testEntity";
+		}
+
+		@Override
+		public Class getEntityClass() {
+			return TestEntity.class;
+		}
+
+	}
+
+	public static class MemoryEntityStore implements EntityStore {
+
+		private Map<String, AEntity> entities = new LinkedHashMap<String, AEntity>();
+
+		@Override
+		public synchronized AEntity getById(String id) {
+			return entities.get(id);
+		}
+
+		@Override
+		public synchronized List<AEntity> getByIds(Collection<String> ids) {
+			List<AEntity> ret = new ArrayList<AEntity>();
+			for (String id : ids) {
+				AEntity entity = entities.get(id);
+				if (entity != null) ret.add(entity);
+			}
+			return ret;
+		}
+
+		@Override
+		public void setVersion(long version) {}
+
+		@Override
+		public void setAlias(String alias, Class cls) {}
+
+		@Override
+		public void load(Class<? extends AEntity> cls, String alias) {}
+
+		@Override
+		public synchronized AEntity getEntity(Predicate<Class> typeFilter, Predicate<AEntity> entityFilter) {
+			for (AEntity entity : entities.values()) {
+				if (Persist.test(entity, typeFilter, entityFilter)) return entity;
+			}
+			return null;
+		}
+
+		@Override
+		public synchronized int getEntitiesCount(Predicate<Class> typeFilter, Predicate<AEntity> entityFilter) {
+			return getEntities(typeFilter, entityFilter).size();
+		}
+
+		@Override
+		public synchronized Set<AEntity> getEntities(Predicate<Class> typeFilter, Predicate<AEntity> entityFilter) {
+			Set<AEntity> ret = new HashSet<AEntity>();
+			for (AEntity entity : entities.values()) {
+				if (Persist.test(entity, typeFilter, entityFilter)) ret.add(entity);
+			}
+			return ret;
+		}
+
+		@Override
+		public synchronized List<AEntity> getEntities(Predicate<Class> typeFilter) {
+			List<AEntity> ret = new ArrayList<AEntity>(entities.size());
+			for (AEntity entity : entities.values()) {
+				if (typeFilter == null || typeFilter.test(entity.getClass())) ret.add(entity);
+			}
+			return ret;
+		}
+
+		@Override
+		public synchronized void save(AEntity entity) {
+			entities.put(entity.getId(), entity);
+		}
+
+		@Override
+		public synchronized void delete(AEntity entity) {
+			entities.remove(entity.getId());
+		}
+
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.persistence;
+
+import ilarkesto.testng.ATest;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.testng.annotations.Test;
+
+public class PersistenceMetricsTest extends ATest {
+
+	@Test
+	public void disabled() {
+		PersistenceMetrics metrics = new PersistenceMetrics();
+		metrics.setEnabled(false);
+		long start = metrics.start();
+		assertEquals(start, 0);
+		metrics.commitCompleted(start, 3, 1);
+		metrics.backupWritten(100);
+		assertEquals(metrics.getCommitCount(), 0);
+		assertEquals(metrics.getEntitiesSaved(), 0);
+		assertEquals(metrics.getBackupBytesWritten(), 0);
+	}
+
+	@Test
+	public void commits() {
+		PersistenceMetrics metrics = new PersistenceMetrics();
+		metrics.setEnabled(true);
+		for (int i = 0; i < 99; i++) {
+			metrics.commitCompleted(System.nanoTime() - 1000, 2, 0);
+		}
+		metrics.commitCompleted(System.nanoTime() - 100000000, 1, 1);
+		assertEquals(metrics.getCommitCount(), 100);
+		assertEquals(metrics.getEntitiesSaved(), 199);
+		assertEquals(metrics.getEntitiesDeleted(), 1);
+		assertTrue(metrics.getCommitTimeMaxMicros() >= 100000);
+		assertTrue(metrics.getCommitTimeP99Micros() < 50000);
+
+		metrics.scanCompleted(metrics.start(), "task", null);
+		metrics.loadCompleted(metrics.start(), "task", 5);
+		assertEquals(metrics.getScanStatistics().length, 1);
+		assertTrue(metrics.getLoadStatistics()[0].startsWith("task: 1x"));
+
+		metrics.reset();
+		assertEquals(metrics.getCommitCount(), 0);
+		assertEquals(metrics.getScanStatistics().length, 0);
+	}
+
+	@Test
+	public void mbean() throws Exception {
+		ObjectName name = new ObjectName(PersistenceMetrics.OBJECT_NAME);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		PersistenceMetrics metrics = new PersistenceMetrics();
+		metrics.registerMBean();
+		assertTrue(server.isRegistered(name));
+		metrics.unregisterMBean();
+		assertFalse(server.isRegistered(name));
+
+		// a restarted application registers its new instance
+		PersistenceMetrics restarted = new PersistenceMetrics();
+		restarted.registerMBean();
+		assertTrue(server.isRegistered(name));
+		restarted.unregisterMBean();
+		assertFalse(server.isRegistered(name));
+	}
+
+}
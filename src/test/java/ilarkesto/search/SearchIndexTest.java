@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.search;
+
+import ilarkesto.core.logging.Log;
+import ilarkesto.testng.ATest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+public class SearchIndexTest extends ATest {
+
+	private static final Log LOG = Log.get(SearchIndexTest.class);
+
+	@Test
+	public void search() {
+		SearchIndex<String> index = new SearchIndex<String>();
+		index.put("a", Arrays.asList("Implement search index", "Fast"));
+		index.put("b", Arrays.asList("Search-Engine optimization"));
+		index.put("c", Arrays.asList("Other"));
+
+		assertEquals(index.search(Arrays.asList("sea")), set("a", "b"));
+		assertEquals(index.search(Arrays.asList("sea", "ind")), set("a"));
+		assertEquals(index.search(Arrays.asList("arch")), set("a", "b"));
+		assertEquals(index.search(Arrays.asList("ARCH", "search-eng")), set("a", "b"));
+		assertNull(index.search(Arrays.asList("search-eng")));
+		assertNull(index.search(Collections.<String> emptyList()));
+
+		index.put("a", Arrays.asList("Renamed"));
+		assertEquals(index.search(Arrays.asList("sea")), set("b"));
+		assertEquals(index.search(Arrays.asList("ren")), set("a"));
+
+		index.put("d", Arrays.asList("Other"), false);
+		assertEquals(index.search(Arrays.asList("sea")), set("b", "d"));
+
+		index.remove("b");
+		index.remove("d");
+		assertTrue(index.search(Arrays.asList("sea")).isEmpty());
+		assertEquals(index.size(), 2);
+	}
+
+	@Test
+	public void performance() {
+		int count = 200000;
+		SearchIndex<Integer> index = new SearchIndex<Integer>();
+		for (int i = 0; i < count; i++) {
+			index.put(i, Arrays.asList("Entity number " + i, "Description word" + (i % 1000)));
+		}
+
+		long start = System.currentTimeMillis();
+		Set<Integer> result = null;
+		for (int i = 0; i < 100; i++) {
+			result = index.search(Arrays.asList("word42", "number"));
+		}
+		long time = System.currentTimeMillis() - start;
+		LOG.info("100 searches over", count, "entries:", time, "ms");
+		assertEquals(result.size(), 11 * count / 1000);
+		if (time > 2000) fail("Searching the index is too slow: " + time + " ms");
+	}
+
+	private static Set<String> set(String... elements) {
+		return new HashSet<String>(Arrays.asList(elements));
+	}
+
+}
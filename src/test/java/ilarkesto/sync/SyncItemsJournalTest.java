@@ -0,0 +1,78 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.sync;
+
+import ilarkesto.io.IO;
+import ilarkesto.testng.ATest;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.testng.annotations.Test;
+
+public class SyncItemsJournalTest extends ATest {
+
+	@Test
+	public void replayAfterCrash() throws IOException {
+		File dir = new File(OUTPUT_DIR + "/syncItemsJournal");
+		IO.delete(dir);
+		IO.createDirectory(dir);
+		File itemsFile = new File(dir, "items");
+
+		SyncItemsJournal journal = new SyncItemsJournal(itemsFile);
+		journal.load();
+		journal.add("a");
+		journal.add("b");
+		journal.add("c");
+		journal.compact();
+
+		journal.add("d");
+		journal.remove("a");
+		// crash while writing the next entry, without compact() or close()
+		FileWriter out = new FileWriter(new File(dir, "items.journal"), true);
+		out.write("+e");
+		out.close();
+
+		journal = new SyncItemsJournal(itemsFile);
+		journal.load();
+		assertItems(journal, "b", "c", "d");
+		assertFalse(journal.contains("a"));
+		assertFalse(journal.contains("e"));
+
+		// crash in compact() after the items file was removed, before the new one was renamed
+		journal.add("f");
+		journal.close();
+		assertTrue(itemsFile.renameTo(new File(dir, "items.tmp")));
+
+		journal = new SyncItemsJournal(itemsFile);
+		journal.load();
+		assertItems(journal, "b", "c", "d", "f");
+
+		journal.compact();
+		assertFalse(new File(dir, "items.journal").exists());
+		journal = new SyncItemsJournal(itemsFile);
+		journal.load();
+		assertItems(journal, "b", "c", "d", "f");
+	}
+
+	private static void assertItems(SyncItemsJournal journal, String... ids) {
+		assertEquals(journal.size(), ids.length);
+		for (String id : ids) {
+			assertTrue(journal.contains(id), id);
+		}
+	}
+
+}
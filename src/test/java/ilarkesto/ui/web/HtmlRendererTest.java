@@ -0,0 +1,151 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.ui.web;
+
+import ilarkesto.base.Str;
+import ilarkesto.core.logging.Log;
+import ilarkesto.testng.ATest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.zip.GZIPInputStream;
+
+import org.testng.annotations.Test;
+
+public class HtmlRendererTest extends ATest {
+
+	private static final Log LOG = Log.get(HtmlRendererTest.class);
+
+	@Test
+	public void escaping() {
+		String text = "a < b && c > \"d\"\n" + Str.ae + Str.OE + Str.sz + Str.EUR;
+		StringWriter sw = new StringWriter();
+		HtmlRenderer html = new HtmlRenderer(sw, "UTF-8");
+		html.text(text);
+		html.startA("/x?a=1&b=2");
+		html.endA();
+		assertEquals(sw.toString(), Str.toHtml(text) + "\n<a href=\"/x?a=1&amp;b=2\"></a>");
+	}
+
+	@Test
+	public void buffered() {
+		StringWriter sw = new StringWriter();
+		HtmlRenderer html = new HtmlRenderer(sw, "UTF-8", true);
+		html.text("a & b");
+		assertEquals(sw.toString(), "");
+		html.flush();
+		assertEquals(sw.toString(), "a &amp; b");
+	}
+
+	@Test
+	public void fragmentCache() {
+		HtmlFragmentCache cache = new HtmlFragmentCache();
+		final int[] renderCount = new int[1];
+		HtmlRenderer.Fragment fragment = new HtmlRenderer.Fragment() {
+
+			@Override
+			public void render(HtmlRenderer html) {
+				renderCount[0]++;
+				html.startDIV("footer");
+				html.text("static");
+				html.endDIV();
+			}
+		};
+
+		String first = null;
+		for (int i = 0; i < 3; i++) {
+			StringWriter sw = new StringWriter();
+			HtmlRenderer html = new HtmlRenderer(sw, "UTF-8");
+			html.setFragmentCache(cache);
+			html.fragment("footer", fragment);
+			html.flush();
+			if (first == null) first = sw.toString();
+			assertEquals(sw.toString(), first);
+		}
+		assertEquals(renderCount[0], 1);
+		assertTrue(first.contains("<div class=\"footer\">static</div>"));
+	}
+
+	@Test
+	public void gzip() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		HtmlRenderer html = new HtmlRenderer(bytes, "UTF-8", true);
+		html.text("compressed");
+		html.close();
+
+		Reader in = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray())), "UTF-8");
+		StringBuilder sb = new StringBuilder();
+		int c;
+		while ((c = in.read()) >= 0) {
+			sb.append((char) c);
+		}
+		assertEquals(sb.toString(), "compressed");
+	}
+
+	@Test
+	public void performance() {
+		renderTable(new NullWriter(), 1000);
+
+		long start = System.currentTimeMillis();
+		int rows = 10000;
+		NullWriter out = new NullWriter();
+		renderTable(out, rows);
+		long time = System.currentTimeMillis() - start;
+		LOG.info("Rendering a table with", rows, "rows:", time, "ms,", out.count, "chars");
+		if (time > 1000) fail("Rendering a table with " + rows + " rows took " + time + " ms");
+	}
+
+	private void renderTable(Writer out, int rows) {
+		HtmlRenderer html = new HtmlRenderer(out, "UTF-8", true);
+		html.startHTMLstandard();
+		html.startBODY();
+		html.startTABLE("data");
+		for (int i = 0; i < rows; i++) {
+			html.startTR();
+			html.TD(String.valueOf(i));
+			html.startTD("name");
+			html.A("/item?id=" + i + "&view=detail", "Item <" + i + "> & more");
+			html.endTD();
+			html.TD("Description of item " + i + " with \"quotes\" and\nline breaks");
+			html.endTR();
+		}
+		html.endTABLE();
+		html.endBODY();
+		html.endHTML();
+		html.flush();
+	}
+
+	private static class NullWriter extends Writer {
+
+		private long count;
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			count += len;
+		}
+
+		@Override
+		public void flush() {}
+
+		@Override
+		public void close() {}
+
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2011 Witoslaw Koczewsi <wi@koczewski.de>, Artjom Kochtchi
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package ilarkesto.webapp;
+
+import ilarkesto.core.logging.Log;
+import ilarkesto.testng.ATest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class ExpirationQueueTest extends ATest {
+
+	private static final Log LOG = Log.get(ExpirationQueueTest.class);
+
+	@Test
+	public void rescheduleTouched() {
+		ExpirationQueue<Item> queue = new ExpirationQueue<Item>();
+		Item a = new Item(100);
+		Item b = new Item(200);
+		queue.add(a);
+		queue.add(b);
+
+		assertTrue(queue.pollExpired(99).isEmpty());
+
+		a.expirationTime = 300;
+		assertTrue(queue.pollExpired(250).contains(b));
+		assertEquals(queue.size(), 1);
+
+		List<Item> expired = queue.pollExpired(300);
+		assertEquals(expired.size(), 1);
+		assertSame(expired.get(0), a);
+		assertEquals(queue.size(), 0);
+	}
+
+	@Test
+	public void performance() {
+		int count = 100000;
+		ExpirationQueue<Item> queue = new ExpirationQueue<Item>();
+		List<Item> items = new ArrayList<Item>(count);
+		for (int i = 0; i < count; i++) {
+			Item item = new Item(i % 10000);
+			items.add(item);
+			queue.add(item);
+		}
+		// every other item is touched and outlives the run
+		int touched = 0;
+		for (int i = 0; i < count; i += 2) {
+			items.get(i).expirationTime += 20000;
+			touched++;
+		}
+
+		int expired = 0;
+		long start = System.currentTimeMillis();
+		for (int now = 10; now <= 10000; now += 10) {
+			expired += queue.pollExpired(now).size();
+		}
+		long time = System.currentTimeMillis() - start;
+		LOG.info("1000 expiration checks over", count, "entries:", time, "ms");
+		if (time > 1000) fail("Polling the expiration queue is too slow: " + time + " ms");
+		assertEquals(expired, count - touched);
+		assertEquals(queue.size(), touched);
+	}
+
+	private static class Item implements ExpirationQueue.Expiring {
+
+		private long expirationTime;
+
+		public Item(long expirationTime) {
+			super();
+			this.expirationTime = expirationTime;
+		}
+
+		@Override
+		public long getExpirationTime() {
+			return expirationTime;
+		}
+
+	}
+
+}